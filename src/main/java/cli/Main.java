@@ -3,10 +3,13 @@ package cli;
 import repo.*;
 import service.*;
 import model.*;
+import util.DistanceCalculator;
+import util.Geocoder;
 import util.ValidationException;
 
 import java.io.File;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.InputMismatchException;
 import java.util.Scanner;
 
@@ -15,6 +18,27 @@ public class Main {
     private static final String VEHICLE_DB = DATA_DIR + "vehicles.db";
     private static final String RIDE_DB = DATA_DIR + "rides.db";
     private static final String HISTORY_DB = DATA_DIR + "ride_history.db";
+    // Janela (ms) da atribuição de motoristas em lote; ausente ou 0 = atribuição imediata.
+    private static final String BATCH_WINDOW_PROPERTY = "uberpb.matching.batchWindowMillis";
+    // Intervalo (ms) de recálculo da tarifa dinâmica por zona; ausente ou 0 desliga.
+    // Só tem efeito com o gazetteer: sem coordenadas não há zonas de grade.
+    private static final String SURGE_PERIOD_PROPERTY = "uberpb.surge.recomputeMillis";
+    private static final long DEFAULT_SURGE_PERIOD_MILLIS = 0;
+    // Gazetteer local (endereço;latitude;longitude) para geocodificação offline; ausente = distância simulada.
+    private static final String GAZETTEER_PROPERTY = "uberpb.geo.gazetteer";
+    private static final String GEO_CACHE_FILE = DATA_DIR + "geocache.bin";
+    // Máximo de registros do histórico de corridas em memória (os 3 meses mais recentes ficam sempre).
+    private static final String HISTORY_BUDGET_PROPERTY = "uberpb.history.maxResidentRecords";
+    // Fila cheia de notificações: drop_oldest, block ou spill (padrão); "off" entrega de forma síncrona.
+    private static final String NOTIFICATION_BACKPRESSURE_PROPERTY = "uberpb.notifications.backpressure";
+    private static final String NOTIFICATION_SPILL_DIR = DATA_DIR + "notifications";
+    private static final String NOTIFICATION_DB = DATA_DIR + "notifications.db";
+    // Retenção de notificações: idade máxima (h), limite por destinatário e prazo após a leitura (min); 0 desliga.
+    private static final String NOTIFICATION_MAX_AGE_PROPERTY = "uberpb.notifications.maxAgeHours";
+    private static final String NOTIFICATION_MAX_PER_RECIPIENT_PROPERTY = "uberpb.notifications.maxPerRecipient";
+    private static final String NOTIFICATION_READ_TTL_PROPERTY = "uberpb.notifications.readTtlMinutes";
+    private static final long NOTIFICATION_SWEEP_MILLIS = 60_000;
+    private static Geocoder geocoder;
     private static UserRepository userRepo;
     private static VehicleRepository vehicleRepo;
     private static RideRepository rideRepo;
@@ -44,11 +68,15 @@ public class Main {
             dataDir.mkdirs();
         vehicleRepo = new VehicleRepository(VEHICLE_DB);
         rideRepo = new RideRepository(RIDE_DB);
-        historyRepo = new RideHistoryRepository(HISTORY_DB);
+        historyRepo = openHistory();
         auth = new AuthService(userRepo, vehicleRepo);
+        configureGeocoder();
         pricingService = new PricingService();
+        configureSurgePricing();
         rideService = new RideService(rideRepo, userRepo, pricingService);
+        rideService.setGeocoder(geocoder);
         rideService.setHistoryRepository(historyRepo);
+        configureBatchMatching();
         ratingService = new RatingService(userRepo, rideRepo);
         historyService = new RideHistoryService(historyRepo, userRepo);
         sc = new Scanner(System.in);
@@ -61,7 +89,8 @@ public class Main {
         restaurantService = new RestaurantService(restaurantRepo);
         orderService = new OrderService(orderRepo, restaurantRepo, restaurantService);
         avaliacaoService = new AvaliacaoService(avaliacaoRepo, orderRepo);
-        notificationService = new NotificationService();
+        notificationService = new NotificationService(new NotificationRepository(NOTIFICATION_DB));
+        configureNotifications();
         assignmentService = new DeliveryAssignmentService(deliveryRepo, notificationService);
         orderService.setNotificationService(notificationService);
 
@@ -113,6 +142,8 @@ public class Main {
                         break;
                     case "0":
                         System.out.println("Saindo...");
+                        // entrega (e grava) as notificações ainda na fila antes de encerrar o armazenamento
+                        notificationService.stopAsyncDelivery();
                         sc.close();
                         return;
                     default:
@@ -388,6 +419,101 @@ public class Main {
         }
     }
 
+    private static RideHistoryRepository openHistory() {
+        int budget;
+        try {
+            budget = Integer.parseInt(System.getProperty(HISTORY_BUDGET_PROPERTY,
+                    String.valueOf(RideHistoryRepository.DEFAULT_MAX_RESIDENT_RECORDS)).trim());
+        } catch (NumberFormatException e) {
+            budget = RideHistoryRepository.DEFAULT_MAX_RESIDENT_RECORDS;
+        }
+        return new RideHistoryRepository(HISTORY_DB, RideHistoryRepository.DEFAULT_PINNED_MONTHS,
+                Math.max(0, budget));
+    }
+
+    private static void configureGeocoder() {
+        String gazetteer = System.getProperty(GAZETTEER_PROPERTY, "").trim();
+        if (gazetteer.isEmpty()) {
+            return;
+        }
+        try {
+            geocoder = new Geocoder(new File(gazetteer), new File(GEO_CACHE_FILE));
+            DistanceCalculator.setDistanceProvider(geocoder.asDistanceProvider(DistanceCalculator.SIMULATED));
+        } catch (IOException e) {
+            System.err.println("Geocodificação desativada: " + e.getMessage());
+            geocoder = null;
+        }
+    }
+
+    private static void configureSurgePricing() {
+        long period;
+        try {
+            period = Long.parseLong(System.getProperty(SURGE_PERIOD_PROPERTY,
+                    String.valueOf(DEFAULT_SURGE_PERIOD_MILLIS)).trim());
+        } catch (NumberFormatException e) {
+            period = DEFAULT_SURGE_PERIOD_MILLIS;
+        }
+        if (period <= 0) {
+            return;
+        }
+        SurgeEngine surgeEngine = new SurgeEngine(userRepo);
+        surgeEngine.setGeocoder(geocoder);
+        pricingService.setSurgeEngine(surgeEngine);
+        surgeEngine.start(period);
+    }
+
+    private static void configureBatchMatching() {
+        long window;
+        try {
+            window = Long.parseLong(System.getProperty(BATCH_WINDOW_PROPERTY, "0").trim());
+        } catch (NumberFormatException e) {
+            window = 0;
+        }
+        if (window <= 0) {
+            return;
+        }
+        BatchMatchingService batchMatcher = new BatchMatchingService(rideRepo, userRepo);
+        rideService.setBatchMatcher(batchMatcher);
+        batchMatcher.start(window);
+    }
+
+    private static void configureNotifications() {
+        long maxAgeHours = longProperty(NOTIFICATION_MAX_AGE_PROPERTY,
+                NotificationService.DEFAULT_MAX_AGE.toHours());
+        long maxPerRecipient = longProperty(NOTIFICATION_MAX_PER_RECIPIENT_PROPERTY,
+                NotificationService.DEFAULT_MAX_PER_RECIPIENT);
+        long readTtlMinutes = longProperty(NOTIFICATION_READ_TTL_PROPERTY,
+                NotificationService.DEFAULT_READ_TTL.toMinutes());
+        notificationService.setRetention(Duration.ofHours(maxAgeHours),
+                (int) Math.min(Integer.MAX_VALUE, maxPerRecipient), Duration.ofMinutes(readTtlMinutes));
+        notificationService.startSweeper(NOTIFICATION_SWEEP_MILLIS);
+
+        String mode = System.getProperty(NOTIFICATION_BACKPRESSURE_PROPERTY, "spill").trim();
+        if (mode.equalsIgnoreCase("off")) {
+            return;
+        }
+        NotificationPipeline.Backpressure backpressure;
+        try {
+            backpressure = NotificationPipeline.Backpressure.parse(mode);
+        } catch (IllegalArgumentException e) {
+            backpressure = NotificationPipeline.Backpressure.SPILL;
+        }
+        notificationService.startAsyncDelivery(NotificationPipeline.DEFAULT_PARTITIONS,
+                NotificationPipeline.DEFAULT_QUEUE_CAPACITY, NotificationPipeline.DEFAULT_BATCH_SIZE,
+                backpressure, new File(NOTIFICATION_SPILL_DIR));
+        // saídas fora do menu (Ctrl+C, fim da entrada): as threads de entrega são daemon
+        Runtime.getRuntime().addShutdownHook(
+                new Thread(notificationService::stopAsyncDelivery, "notification-shutdown"));
+    }
+
+    private static long longProperty(String name, long defaultValue) {
+        try {
+            return Long.parseLong(System.getProperty(name, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
     private static void listUsers() {
         System.out.println("\n=== Lista de Usuários ===");
         for (User u : userRepo.findAll()) {
@@ -406,6 +532,7 @@ public class Main {
 
     private static void adjustDynamicFare() {
         System.out.println("\n=== Ajustar Tarifa Dinâmica ===");
+        System.out.println("(fator global, aplicado junto com a tarifa dinâmica por zona)");
         System.out.print("Digite o novo fator de tarifa dinâmica (ex: 1.5): ");
         try {
             double factor = Double.parseDouble(sc.nextLine().trim());
@@ -138,7 +138,7 @@ public class PassengerMenu {
 
             PricingInfo selectedPricing = pricingList.get(optionIndex);
             Ride ride = context.getRideService().createRideRequest(passenger.getEmail(), origin, destination,
-                    selectedPricing.getCategory(), selectedPaymentMethod);
+                    selectedPricing.getCategory(), selectedPaymentMethod, selectedPricing);
 
             System.out.println("\n=== Corrida Solicitada com Sucesso! ===");
             System.out.println("Categoria escolhida: " + selectedPricing.getCategory());
@@ -0,0 +1,54 @@
+package model;
+
+/**
+ * Totais do histórico de corridas de uma categoria em um instante: quantidade,
+ * receita e somas das avaliações (só as corridas avaliadas entram na média).
+ */
+public final class CategoryStatistics {
+    private final String category;
+    private final long rides;
+    private final double revenue;
+    private final long driverRatingSum;
+    private final long driverRatingCount;
+    private final long passengerRatingSum;
+    private final long passengerRatingCount;
+
+    public CategoryStatistics(String category, long rides, double revenue, long driverRatingSum,
+            long driverRatingCount, long passengerRatingSum, long passengerRatingCount) {
+        this.category = category;
+        this.rides = rides;
+        this.revenue = revenue;
+        this.driverRatingSum = driverRatingSum;
+        this.driverRatingCount = driverRatingCount;
+        this.passengerRatingSum = passengerRatingSum;
+        this.passengerRatingCount = passengerRatingCount;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public long getRides() {
+        return rides;
+    }
+
+    public double getRevenue() {
+        return revenue;
+    }
+
+    public double getAverageDriverRating() {
+        return driverRatingCount == 0 ? 0.0 : (double) driverRatingSum / driverRatingCount;
+    }
+
+    public double getAveragePassengerRating() {
+        return passengerRatingCount == 0 ? 0.0 : (double) passengerRatingSum / passengerRatingCount;
+    }
+
+    public long getDriverRatingCount() {
+        return driverRatingCount;
+    }
+
+    public long getPassengerRatingCount() {
+        return passengerRatingCount;
+    }
+}
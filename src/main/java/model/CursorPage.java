@@ -0,0 +1,35 @@
+package model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Uma página de resultados navegada por cursor: {@link #getNextCursor()} é
+ * passado de volta para buscar a página seguinte e fica null na última. O
+ * cursor é opaco para quem chama.
+ */
+public final class CursorPage<T> {
+    private final List<T> items;
+    private final String nextCursor;
+
+    public CursorPage(List<T> items, String nextCursor) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+}
@@ -2,6 +2,7 @@ package model;
 
 import java.io.Serializable;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public class Delivery implements Serializable {
 
@@ -23,6 +24,9 @@ public class Delivery implements Serializable {
     // RF22 - Localização para seleção de entregador mais próximo
     private Location currentLocation;
 
+    // Avisado quando localização, atividade ou validação mudam (índice espacial do repositório).
+    private transient Consumer<Delivery> changeListener;
+
     public Delivery(String name, String email, String document, String phone,
             String cnh, String vehicleDocument) {
         this.name = name;
@@ -69,6 +73,7 @@ public class Delivery implements Serializable {
 
     public void setValidationStatus(DeliveryStatus validationStatus) {
         this.validationStatus = validationStatus;
+        notifyChange();
     }
 
     public boolean isActive() {
@@ -77,14 +82,17 @@ public class Delivery implements Serializable {
 
     public void deactivate() {
         this.active = false;
+        notifyChange();
     }
 
     public void activate() {
         this.active = true;
+        notifyChange();
     }
 
     public void setActive(boolean active) {
         this.active = active;
+        notifyChange();
     }
 
     public Location getCurrentLocation() {
@@ -93,5 +101,17 @@ public class Delivery implements Serializable {
 
     public void setCurrentLocation(Location currentLocation) {
         this.currentLocation = currentLocation;
+        notifyChange();
+    }
+
+    public void setChangeListener(Consumer<Delivery> changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    private void notifyChange() {
+        Consumer<Delivery> listener = changeListener;
+        if (listener != null) {
+            listener.accept(this);
+        }
     }
 }
\ No newline at end of file
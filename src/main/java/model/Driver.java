@@ -1,14 +1,31 @@
 package model;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.Consumer;
 
 public class Driver extends User implements Serializable {
     private static final long serialVersionUID = 1L;
+    public static final String ROLE = "Motorista";
+
+    private static final VarHandle AVAILABLE;
+
+    static {
+        try {
+            AVAILABLE = MethodHandles.lookup().findVarHandle(Driver.class, "isAvailable", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
     
     private String licenseDoc;
     private Vehicle vehicle; 
     private Location currentLocation; 
-    private boolean isAvailable;
+    private volatile boolean isAvailable;
+
+    // Avisado quando disponibilidade ou veículo mudam (mantém o índice do repositório).
+    private transient Consumer<Driver> changeListener;
 
     public Driver(String name, String email, String phone, String password, String licenseDoc, Vehicle vehicle) {
         super(name, email, phone, password);
@@ -18,9 +35,19 @@ public class Driver extends User implements Serializable {
         this.currentLocation = new Location("Garagem"); 
     }
 
+    // Construtor auxiliar para desserialização
+    public Driver(String id, String name, String email, String phone, String password, String licenseDoc,
+            Vehicle vehicle) {
+        super(id, name, email, phone, password);
+        this.licenseDoc = licenseDoc;
+        this.vehicle = vehicle;
+        this.isAvailable = true;
+        this.currentLocation = new Location("Garagem");
+    }
+
     @Override
     public String getRole() {
-        return "Motorista";
+        return ROLE;
     }
     
     public String getLicenseDoc() {
@@ -29,6 +56,7 @@ public class Driver extends User implements Serializable {
 
     public void addVehicle(Vehicle vehicle) {
         this.vehicle = vehicle;
+        notifyChange();
     }
 
     public boolean isAvailable() {
@@ -36,7 +64,33 @@ public class Driver extends User implements Serializable {
     }
 
     public void setAvailable(boolean available) {
-        isAvailable = available;
+        boolean previous = (boolean) AVAILABLE.getAndSet(this, available);
+        if (previous != available) {
+            notifyChange();
+        }
+    }
+
+    /**
+     * Passa de disponível para ocupado com compare-and-set. Retorna false se outro
+     * fluxo já ocupou o motorista.
+     */
+    public boolean tryReserve() {
+        if (!AVAILABLE.compareAndSet(this, true, false)) {
+            return false;
+        }
+        notifyChange();
+        return true;
+    }
+
+    public void setChangeListener(Consumer<Driver> changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    private void notifyChange() {
+        Consumer<Driver> listener = changeListener;
+        if (listener != null) {
+            listener.accept(this);
+        }
     }
 
     public void setCurrentLocation(Location currentLocation) {
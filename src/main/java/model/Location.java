@@ -1,5 +1,7 @@
 package model;
 
+import util.DistanceCalculator;
+
 import java.io.Serializable;
 
 public class Location implements Serializable {
@@ -49,6 +51,19 @@ public class Location implements Serializable {
         return longitude;
     }
 
+    /** Indica se há coordenadas reais (endereços só digitados ficam em 0,0). */
+    public boolean hasCoordinates() {
+        return latitude != 0 || longitude != 0;
+    }
+
+    /**
+     * Distância em km sobre a superfície da Terra (haversine). Diferente de
+     * {@link #distanceTo}, que mede na própria unidade das coordenadas.
+     */
+    public double distanceKmTo(Location other) {
+        return DistanceCalculator.haversineKm(latitude, longitude, other.latitude, other.longitude);
+    }
+
     public double distanceTo(Location other) {
 
         double dx = this.latitude - other.latitude;
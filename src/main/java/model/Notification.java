@@ -1,9 +1,13 @@
 package model;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
-public class Notification {
+public class Notification implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     private final String id;
     private final String recipientId;
@@ -11,20 +15,29 @@ public class Notification {
     private final String orderId;
     private final String message;
     private final LocalDateTime timestamp;
-    private boolean read;
+    private final AtomicBoolean read = new AtomicBoolean();
+    private volatile LocalDateTime readAt;
+
+    // Avisado uma vez, quando a notificação passa a lida (contador de não lidas da caixa).
+    private transient volatile Consumer<Notification> readListener;
 
     public Notification(String recipientId, String recipientType, String message) {
         this(recipientId, recipientType, null, message);
     }
 
     public Notification(String recipientId, String recipientType, String orderId, String message) {
+        this(recipientId, recipientType, orderId, message, LocalDateTime.now());
+    }
+
+    /** Com a hora de criação dada por quem cria (o relógio do serviço). */
+    public Notification(String recipientId, String recipientType, String orderId, String message,
+            LocalDateTime timestamp) {
         this.id = UUID.randomUUID().toString();
         this.recipientId = recipientId;
         this.recipientType = recipientType;
         this.orderId = orderId;
         this.message = message;
-        this.timestamp = LocalDateTime.now();
-        this.read = false;
+        this.timestamp = timestamp;
     }
 
     public String getId() {
@@ -52,10 +65,30 @@ public class Notification {
     }
 
     public boolean isRead() {
-        return read;
+        return read.get();
+    }
+
+    /** Quando a notificação foi lida, ou null se ainda não foi. */
+    public LocalDateTime getReadAt() {
+        return readAt;
     }
 
     public void markAsRead() {
-        this.read = true;
+        markAsRead(LocalDateTime.now());
+    }
+
+    /** Marca como lida em {@code at}; se já estava lida, não muda nada. */
+    public void markAsRead(LocalDateTime at) {
+        if (read.compareAndSet(false, true)) {
+            readAt = at;
+            Consumer<Notification> listener = readListener;
+            if (listener != null) {
+                listener.accept(this);
+            }
+        }
+    }
+
+    public void setReadListener(Consumer<Notification> readListener) {
+        this.readListener = readListener;
     }
 }
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public class Order implements Serializable {
 
@@ -28,6 +29,9 @@ public class Order implements Serializable {
     private OrderType orderType;
     private LocalDateTime scheduledTime;
 
+    // Avisado quando status, entregador ou tipo mudam (índices do repositório).
+    private transient Consumer<Order> changeListener;
+
     public Order(String restaurantId, String customerEmail, List<MenuItem> items) {
         this.id = UUID.randomUUID().toString();
         this.restaurantId = restaurantId;
@@ -135,14 +139,17 @@ public class Order implements Serializable {
 
     public void confirm() {
         this.status = OrderStatus.CONFIRMADO;
+        notifyChange();
     }
 
     public void reject() {
         this.status = OrderStatus.REJEITADO;
+        notifyChange();
     }
 
     public void setStatus(OrderStatus status) {
         this.status = status;
+        notifyChange();
     }
 
     public String getAssignedDeliveryId() {
@@ -159,6 +166,7 @@ public class Order implements Serializable {
 
     public void setAssignedDeliveryId(String assignedDeliveryId) {
         this.assignedDeliveryId = assignedDeliveryId;
+        notifyChange();
     }
 
     public OrderType getOrderType() {
@@ -167,6 +175,7 @@ public class Order implements Serializable {
 
     public void setOrderType(OrderType orderType) {
         this.orderType = orderType;
+        notifyChange();
     }
 
     public LocalDateTime getScheduledTime() {
@@ -184,4 +193,15 @@ public class Order implements Serializable {
     public boolean isImmediate() {
         return orderType == OrderType.IMEDIATO;
     }
-}
\ No newline at end of file
+
+    public void setChangeListener(Consumer<Order> changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    private void notifyChange() {
+        Consumer<Order> listener = changeListener;
+        if (listener != null) {
+            listener.accept(this);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Uma página imutável de resultados, com a posição dela no total.
+ * Páginas são numeradas a partir de 0.
+ */
+public final class Page<T> {
+    private final List<T> items;
+    private final int pageNumber;
+    private final int pageSize;
+    private final int totalItems;
+
+    public Page(List<T> items, int pageNumber, int pageSize, int totalItems) {
+        this.items = Collections.unmodifiableList(items);
+        this.pageNumber = pageNumber;
+        this.pageSize = pageSize;
+        this.totalItems = totalItems;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getTotalItems() {
+        return totalItems;
+    }
+
+    public int getTotalPages() {
+        return pageSize <= 0 ? 0 : (totalItems + pageSize - 1) / pageSize;
+    }
+
+    public boolean hasNext() {
+        return (long) (pageNumber + 1) * pageSize < totalItems;
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+}
@@ -4,6 +4,7 @@ import java.io.Serializable;
 
 public class Passenger extends User implements Serializable {
     private static final long serialVersionUID = 1L;
+    public static final String ROLE = "PASSENGER";
 
     public Passenger(String name, String email, String phone, String password) {
         super(name, email, phone, password);
@@ -16,7 +17,7 @@ public class Passenger extends User implements Serializable {
 
     @Override
     public String getRole() {
-        return "PASSENGER";
+        return ROLE;
     }
 
     @Override
@@ -0,0 +1,62 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tabela imutável de cotações de uma viagem (uma linha por categoria), já
+ * ordenada do menor para o maior preço total.
+ */
+public final class QuoteTable {
+    private final String origin;
+    private final String destination;
+    private final double distanceKm;
+    private final List<PricingInfo> quotes;
+
+    public QuoteTable(String origin, String destination, double distanceKm, PricingInfo[] sortedQuotes) {
+        this.origin = origin;
+        this.destination = destination;
+        this.distanceKm = distanceKm;
+        this.quotes = Collections.unmodifiableList(Arrays.asList(sortedQuotes.clone()));
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public double getDistanceKm() {
+        return distanceKm;
+    }
+
+    /** Cotações em ordem crescente de preço. */
+    public List<PricingInfo> asList() {
+        return quotes;
+    }
+
+    public PricingInfo cheapest() {
+        return quotes.isEmpty() ? null : quotes.get(0);
+    }
+
+    /**
+     * Cotação da categoria, aceitando o nome de exibição ("UberX") ou o nome da
+     * constante de {@link VehicleCategory} ("UBER_X"). Retorna null se não houver.
+     */
+    public PricingInfo forCategory(String category) {
+        if (category == null) {
+            return null;
+        }
+        VehicleCategory vc = VehicleCategory.fromVehicleCategory(category);
+        String displayName = vc != null ? vc.getDisplayName() : category;
+        for (PricingInfo quote : quotes) {
+            if (quote.getCategory().equalsIgnoreCase(displayName)) {
+                return quote;
+            }
+        }
+        return null;
+    }
+}
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public class Restaurant implements Serializable {
 
@@ -19,6 +20,9 @@ public class Restaurant implements Serializable {
     private boolean open;
     private final List<MenuItem> menu = new ArrayList<>();
 
+    // Avisado quando ativo/aberto mudam (índice espacial do repositório).
+    private transient Consumer<Restaurant> changeListener;
+
     public Restaurant(String name, String email, String password, String cnpj, Location location) {
         this.id = UUID.randomUUID().toString();
         this.name = name;
@@ -60,14 +64,17 @@ public class Restaurant implements Serializable {
 
     public void deactivate() {
         this.active = false;
+        notifyChange();
     }
 
     public void activate() {
         this.active = true;
+        notifyChange();
     }
 
     public void setActive(boolean active) {
         this.active = active;
+        notifyChange();
     }
 
     public boolean isOpen() {
@@ -76,10 +83,12 @@ public class Restaurant implements Serializable {
 
     public void open() {
         this.open = true;
+        notifyChange();
     }
 
     public void close() {
         this.open = false;
+        notifyChange();
     }
 
     public void addMenuItem(MenuItem item) {
@@ -89,4 +98,15 @@ public class Restaurant implements Serializable {
     public List<MenuItem> getMenu() {
         return menu;
     }
-}
\ No newline at end of file
+
+    public void setChangeListener(Consumer<Restaurant> changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    private void notifyChange() {
+        Consumer<Restaurant> listener = changeListener;
+        if (listener != null) {
+            listener.accept(this);
+        }
+    }
+}
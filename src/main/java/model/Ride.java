@@ -43,6 +43,8 @@ public class Ride implements Serializable {
     private List<String> optimizedRoute;
     private List<String> refusedDriverIds;
     private PaymentMethod paymentMethod;
+    // cotação mostrada ao passageiro na solicitação; null em corridas antigas
+    private PricingInfo quotedPricing;
 
     private boolean passengerHasRated = false;
     private boolean driverHasRated = false;
@@ -159,6 +161,14 @@ public class Ride implements Serializable {
         this.paymentMethod = paymentMethod;
     }
 
+    public PricingInfo getQuotedPricing() {
+        return quotedPricing;
+    }
+
+    public void setQuotedPricing(PricingInfo quotedPricing) {
+        this.quotedPricing = quotedPricing;
+    }
+
     public boolean hasPassengerRated() {
         return passengerHasRated;
     }
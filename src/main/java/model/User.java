@@ -62,6 +62,17 @@ public abstract class User implements Serializable {
         return this.averageRating;
     }
 
+    public double getTotalRatingSum() {
+        return this.totalRatingSum;
+    }
+
+    // Usado na desserialização para restaurar as avaliações acumuladas
+    public void restoreRatings(double totalRatingSum, int totalRatings) {
+        this.totalRatingSum = totalRatingSum;
+        this.totalRatings = totalRatings;
+        this.averageRating = totalRatings > 0 ? totalRatingSum / totalRatings : 0.0;
+    }
+
  
     public int getTotalRatings() {
         return this.totalRatings;
@@ -22,6 +22,16 @@ public class Vehicle implements Serializable {
         this.category = "UNASSIGNED"; // Categoria inicial, será definida pelo validador
     }
 
+    // Construtor auxiliar para desserialização
+    public Vehicle(String id, String plate, String model, int year, String color, String category) {
+        this.id = id;
+        this.plate = plate;
+        this.model = model;
+        this.year = year;
+        this.color = color;
+        this.category = category;
+    }
+
     // Getters
     public String getId() { return id; }
     public String getPlate() { return plate; }
@@ -29,6 +29,23 @@ public enum VehicleCategory {
         return isPremium;
     }
 
+    /**
+     * Categoria correspondente ao valor gravado em {@link Vehicle#getCategory()},
+     * que pode ser o nome da constante ("UBER_X") ou o nome de exibição ("UberX").
+     * Retorna null para categorias desconhecidas ou ainda não atribuídas.
+     */
+    public static VehicleCategory fromVehicleCategory(String category) {
+        if (category == null) {
+            return null;
+        }
+        for (VehicleCategory vc : values()) {
+            if (vc.name().equals(category) || vc.displayName.equalsIgnoreCase(category)) {
+                return vc;
+            }
+        }
+        return null;
+    }
+
     @Override
     public String toString() {
         return displayName + " - " + description;
@@ -4,18 +4,27 @@ import model.Avaliacao;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class AvaliacaoRepository {
+    private final StorageEngine storage = StorageEngine.shared();
     private final File storageFile;
     private Map<String, Avaliacao> avaliacoesById;
 
+    // Soma e quantidade de notas por alvo (tipo + id), mantidas em save() e
+    // refeitas no load: média e total de um alvo saem sem percorrer as avaliações.
+    private final Map<Avaliacao.TipoParte, Map<String, RatingTotal>> totalsByTarget = emptyTotals();
+
+    // (pedido, avaliador, alvo) -> id da avaliação: uma avaliação por alvo em cada pedido.
+    private final Map<RatingKey, String> idsByKey = new HashMap<>();
+
     public AvaliacaoRepository() {
         File dataDir = new File("data");
         if (!dataDir.exists()) {
@@ -39,26 +48,144 @@ public class AvaliacaoRepository {
         try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(storageFile))) {
             Object o = ois.readObject();
             avaliacoesById = (Map<String, Avaliacao>) o;
+            for (Avaliacao avaliacao : avaliacoesById.values()) {
+                account(avaliacao, 1);
+                idsByKey.put(RatingKey.of(avaliacao), avaliacao.getId());
+            }
         } catch (Exception e) {
             System.err.println("Não foi possível carregar avaliações. Inicializando vazio. (" + e.getMessage() + ")");
             avaliacoesById = new HashMap<>();
+            totalsByTarget.values().forEach(Map::clear);
+            idsByKey.clear();
         }
     }
 
     private void persist() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(storageFile))) {
-            oos.writeObject(avaliacoesById);
+        try {
+            storage.overwrite(storageFile, StorageEngine.serialize(avaliacoesById));
         } catch (Exception e) {
             System.err.println("Erro ao salvar avaliações: " + e.getMessage());
         }
     }
 
-    public void save(Avaliacao avaliacao) {
-        avaliacoesById.put(avaliacao.getId(), avaliacao);
+    public synchronized void save(Avaliacao avaliacao) {
+        Avaliacao previous = avaliacoesById.put(avaliacao.getId(), avaliacao);
+        if (previous != null) {
+            account(previous, -1);
+        }
+        account(avaliacao, 1);
+        idsByKey.put(RatingKey.of(avaliacao), avaliacao.getId());
         persist();
     }
 
-    public List<Avaliacao> findAll() {
+    /**
+     * Grava a avaliação se ainda não existe outra do mesmo avaliador para o
+     * mesmo alvo no mesmo pedido. Verificação e gravação acontecem sob a mesma
+     * trava, então envios simultâneos não passam os dois.
+     *
+     * @return false se já havia uma avaliação com essa chave (nada é gravado)
+     */
+    public synchronized boolean saveIfAbsent(Avaliacao avaliacao) {
+        String existing = idsByKey.get(RatingKey.of(avaliacao));
+        if (existing != null && !existing.equals(avaliacao.getId())) {
+            return false;
+        }
+        save(avaliacao);
+        return true;
+    }
+
+    public synchronized List<Avaliacao> findAll() {
         return new ArrayList<>(avaliacoesById.values());
     }
+
+    /** Média das notas recebidas pelo alvo; 0.0 se ele não tem avaliações. */
+    public double averageFor(Avaliacao.TipoParte alvoTipo, String alvoId) {
+        RatingTotal total = totalOf(alvoTipo, alvoId);
+        return total == null ? 0.0 : (double) total.sum / total.count;
+    }
+
+    public int countFor(Avaliacao.TipoParte alvoTipo, String alvoId) {
+        RatingTotal total = totalOf(alvoTipo, alvoId);
+        return total == null ? 0 : total.count;
+    }
+
+    private RatingTotal totalOf(Avaliacao.TipoParte alvoTipo, String alvoId) {
+        if (alvoTipo == null || alvoId == null) {
+            return null;
+        }
+        return totalsByTarget.get(alvoTipo).get(alvoId);
+    }
+
+    private void account(Avaliacao avaliacao, int sign) {
+        if (avaliacao.getAlvoTipo() == null || avaliacao.getAlvoId() == null) {
+            return;
+        }
+        // o total é trocado por inteiro, para a leitura nunca ver soma e quantidade de momentos diferentes
+        totalsByTarget.get(avaliacao.getAlvoTipo()).compute(avaliacao.getAlvoId(), (id, current) -> {
+            int sum = (current == null ? 0 : current.sum) + sign * avaliacao.getNota();
+            int count = (current == null ? 0 : current.count) + sign;
+            return count <= 0 ? null : new RatingTotal(sum, count);
+        });
+    }
+
+    private static Map<Avaliacao.TipoParte, Map<String, RatingTotal>> emptyTotals() {
+        Map<Avaliacao.TipoParte, Map<String, RatingTotal>> totals = new EnumMap<>(Avaliacao.TipoParte.class);
+        for (Avaliacao.TipoParte tipo : Avaliacao.TipoParte.values()) {
+            totals.put(tipo, new ConcurrentHashMap<>());
+        }
+        return totals;
+    }
+
+    private static final class RatingKey {
+        private final String orderId;
+        private final Avaliacao.TipoParte avaliadorTipo;
+        private final String avaliadorId;
+        private final Avaliacao.TipoParte alvoTipo;
+        private final String alvoId;
+
+        private RatingKey(String orderId, Avaliacao.TipoParte avaliadorTipo, String avaliadorId,
+                Avaliacao.TipoParte alvoTipo, String alvoId) {
+            this.orderId = orderId;
+            this.avaliadorTipo = avaliadorTipo;
+            this.avaliadorId = avaliadorId;
+            this.alvoTipo = alvoTipo;
+            this.alvoId = alvoId;
+        }
+
+        static RatingKey of(Avaliacao avaliacao) {
+            return new RatingKey(avaliacao.getOrderId(), avaliacao.getAvaliadorTipo(), avaliacao.getAvaliadorId(),
+                    avaliacao.getAlvoTipo(), avaliacao.getAlvoId());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof RatingKey)) {
+                return false;
+            }
+            RatingKey other = (RatingKey) obj;
+            return avaliadorTipo == other.avaliadorTipo
+                    && alvoTipo == other.alvoTipo
+                    && Objects.equals(orderId, other.orderId)
+                    && Objects.equals(avaliadorId, other.avaliadorId)
+                    && Objects.equals(alvoId, other.alvoId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(orderId, avaliadorTipo, avaliadorId, alvoTipo, alvoId);
+        }
+    }
+
+    private static final class RatingTotal {
+        private final int sum;
+        private final int count;
+
+        private RatingTotal(int sum, int count) {
+            this.sum = sum;
+            this.count = count;
+        }
+    }
 }
@@ -1,6 +1,9 @@
 package repo;
 
 import model.Delivery;
+import model.DeliveryStatus;
+import model.Location;
+import util.SpatialGrid;
 
 import java.io.*;
 import java.util.ArrayList;
@@ -8,12 +11,23 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DeliveryRepository {
 
+    // Lado da célula do índice espacial, na unidade de Location.distanceTo (graus).
+    private static final double GRID_CELL_SIZE = 0.01;
+
+    private final StorageEngine storage = StorageEngine.shared();
     private final File storageFile;
     private Map<String, Delivery> deliveriesByEmail;
 
+    // Índices derivados, refeitos na carga e mantidos em save/update e pelos
+    // avisos de mudança de cada entregador.
+    private final Map<String, Delivery> deliveriesById = new ConcurrentHashMap<>();
+    // Só entregadores disponíveis: ativos, aprovados e com localização.
+    private final SpatialGrid<Delivery> availableGrid = new SpatialGrid<>(GRID_CELL_SIZE);
+
     public DeliveryRepository() {
         File dataDir = new File("data");
         if (!dataDir.exists())
@@ -40,11 +54,33 @@ public class DeliveryRepository {
             System.err.println("Não foi possível carregar entregadores. Inicializando vazio. (" + e.getMessage() + ")");
             deliveriesByEmail = new HashMap<>();
         }
+        for (Delivery delivery : deliveriesByEmail.values()) {
+            index(delivery);
+        }
+    }
+
+    private void index(Delivery delivery) {
+        Delivery previous = deliveriesById.put(delivery.getId(), delivery);
+        if (previous != null && previous != delivery) {
+            previous.setChangeListener(null);
+            availableGrid.remove(previous);
+        }
+        delivery.setChangeListener(this::refreshLocation);
+        refreshLocation(delivery);
+    }
+
+    private void refreshLocation(Delivery delivery) {
+        Location location = delivery.getCurrentLocation();
+        if (delivery.isActive() && delivery.getValidationStatus() == DeliveryStatus.APROVADO && location != null) {
+            availableGrid.put(delivery, location.getLatitude(), location.getLongitude());
+        } else {
+            availableGrid.remove(delivery);
+        }
     }
 
     private void persist() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(storageFile))) {
-            oos.writeObject(deliveriesByEmail);
+        try {
+            storage.overwrite(storageFile, StorageEngine.serialize(deliveriesByEmail));
         } catch (IOException e) {
             System.err.println("Erro ao salvar entregadores: " + e.getMessage());
         }
@@ -52,6 +88,7 @@ public class DeliveryRepository {
 
     public void save(Delivery delivery) {
         deliveriesByEmail.put(delivery.getEmail().toLowerCase(), delivery);
+        index(delivery);
         persist();
     }
 
@@ -66,9 +103,20 @@ public class DeliveryRepository {
     }
 
     public Optional<Delivery> findById(String id) {
-        return deliveriesByEmail.values().stream()
-                .filter(d -> d.getId().equals(id))
-                .findFirst();
+        return id == null ? Optional.empty() : Optional.ofNullable(deliveriesById.get(id));
+    }
+
+    /**
+     * Os até {@code limit} entregadores disponíveis (ativos, aprovados e com
+     * localização) mais próximos, do mais perto para o mais longe.
+     */
+    public List<Delivery> findNearestAvailable(Location location, int limit) {
+        return availableGrid.nearest(location.getLatitude(), location.getLongitude(), limit, null);
+    }
+
+    /** Entregadores disponíveis a no máximo {@code radius} da localização, do mais perto para o mais longe. */
+    public List<Delivery> findAvailableInRadius(Location location, double radius) {
+        return availableGrid.withinRadius(location.getLatitude(), location.getLongitude(), radius, null);
     }
 
     public List<Delivery> findAll() {
@@ -77,6 +125,7 @@ public class DeliveryRepository {
 
     public void update(Delivery delivery) {
         deliveriesByEmail.put(delivery.getEmail().toLowerCase(), delivery);
+        index(delivery);
         persist();
     }
 }
@@ -0,0 +1,297 @@
+package repo;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+/**
+ * Journal append-only para repositórios persistidos como mapa (id -> objeto).
+ *
+ * O estado fica em dois arquivos:
+ * - snapshot ({@code <arquivo>}): o mapa completo serializado, seguido de um
+ *   identificador de época. Arquivos antigos (só o mapa) continuam legíveis.
+ * - log ({@code <arquivo>.journal}): cabeçalho com a mesma época e, em seguida,
+ *   um registro por mutação (tamanho, CRC32 e o objeto serializado, ou só o id
+ *   no caso de uma remoção). No registro, cada classe vai só pelo nome, sem a
+ *   descrição completa dos campos que a serialização padrão repete em todo
+ *   registro; na leitura vale a descrição da classe carregada, e mudanças de
+ *   campos são absorvidas pelo snapshot da próxima compactação.
+ *
+ * Cada escrita custa apenas o tamanho do objeto alterado. Quando o log acumula
+ * registros demais, um novo snapshot é gravado e o log é reiniciado com uma nova
+ * época. As gravações passam pelo {@link StorageEngine}, que grava o snapshot via
+ * arquivo temporário e rename antes de reiniciar o log.
+ *
+ * Na carga, o snapshot é lido e o log da mesma época é reaplicado; um registro
+ * final incompleto (queda no meio da escrita) ou com tamanho ou CRC inválido é
+ * descartado junto com o que vem depois.
+ */
+class MutationJournal<V extends Serializable> {
+    static final int DEFAULT_COMPACTION_THRESHOLD = 500;
+
+    private static final int LOG_MAGIC = 0x55424A31; // "UBJ1"
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_PUT_COMPACT = 3;
+    private static final long LEGACY_EPOCH = 0L;
+
+    private final StorageEngine storage;
+    private final File snapshotFile;
+    private final File logFile;
+    private final int compactionThreshold;
+
+    private long epoch = LEGACY_EPOCH;
+    private int recordsSinceSnapshot;
+
+    MutationJournal(StorageEngine storage, File snapshotFile) {
+        this(storage, snapshotFile, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    MutationJournal(StorageEngine storage, File snapshotFile, int compactionThreshold) {
+        this.storage = storage;
+        this.snapshotFile = snapshotFile;
+        this.logFile = new File(snapshotFile.getPath() + ".journal");
+        this.compactionThreshold = Math.max(1, compactionThreshold);
+    }
+
+    /**
+     * Carrega o último snapshot e reaplica o log. Se não havia snapshot com época
+     * (arquivo inexistente ou formato antigo), grava um imediatamente para que o
+     * log passe a ter uma âncora.
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, V> load() throws IOException, ClassNotFoundException {
+        Map<String, V> state = new HashMap<>();
+        epoch = LEGACY_EPOCH;
+        recordsSinceSnapshot = 0;
+
+        if (snapshotFile.exists()) {
+            try (ObjectInputStream ois = new ObjectInputStream(
+                    new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+                state = new HashMap<>((Map<String, V>) ois.readObject());
+                try {
+                    epoch = ois.readLong();
+                } catch (EOFException legacyFormat) {
+                    epoch = LEGACY_EPOCH;
+                }
+            }
+        }
+
+        if (epoch == LEGACY_EPOCH) {
+            compact(state);
+            return state;
+        }
+
+        replay(state);
+        return state;
+    }
+
+    /** Registra a versão atual de um objeto no final do log. */
+    void append(String id, V value) throws IOException {
+        appendEncoded(encode(id, value), 1);
+    }
+
+    /**
+     * Serializa o registro de um objeto sem gravá-lo; vários registros
+     * concatenados podem ser gravados de uma vez com {@link #appendEncoded}.
+     */
+    byte[] encode(String id, V value) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(body)) {
+            out.writeByte(OP_PUT_COMPACT);
+            out.writeUTF(id);
+            ObjectOutputStream oos = new CompactObjectOutputStream(out);
+            oos.writeObject(value);
+            oos.flush();
+        }
+        return frame(body.toByteArray());
+    }
+
+    // tamanho, CRC32 e o conteúdo do registro
+    private static byte[] frame(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(payload.length + 12);
+        try (DataOutputStream out = new DataOutputStream(record)) {
+            out.writeInt(payload.length);
+            out.writeLong(crc.getValue());
+            out.write(payload);
+        }
+        return record.toByteArray();
+    }
+
+    /** Registra a remoção de um objeto no final do log. */
+    void appendRemoval(String id) throws IOException {
+        appendEncoded(encodeRemoval(id), 1);
+    }
+
+    byte[] encodeRemoval(String id) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(body)) {
+            out.writeByte(OP_REMOVE);
+            out.writeUTF(id);
+        }
+        return frame(body.toByteArray());
+    }
+
+    /** Acrescenta ao log {@code count} registros produzidos por {@link #encode}. */
+    void appendEncoded(byte[] records, int count) throws IOException {
+        storage.append(logFile, records);
+        recordsSinceSnapshot += count;
+    }
+
+    /**
+     * Verdadeiro se ainda não há snapshot com época (o da carga não pôde ser
+     * gravado): registros acrescentados agora seriam ignorados na próxima carga.
+     */
+    boolean needsSnapshot() {
+        return epoch == LEGACY_EPOCH;
+    }
+
+    boolean shouldCompact() {
+        return recordsSinceSnapshot >= compactionThreshold;
+    }
+
+    /** Grava um snapshot completo de {@code state} e reinicia o log. */
+    void compact(Map<String, V> state) throws IOException {
+        long newEpoch = nextEpoch();
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream(8192);
+        try (ObjectOutputStream oos = new ObjectOutputStream(snapshot)) {
+            oos.writeObject(new HashMap<>(state));
+            oos.writeLong(newEpoch);
+        }
+        storage.overwrite(snapshotFile, snapshot.toByteArray());
+
+        // Um log com época antiga que sobreviva a uma queda aqui é ignorado na carga.
+        storage.overwrite(logFile, logHeader(newEpoch));
+        epoch = newEpoch;
+        recordsSinceSnapshot = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void replay(Map<String, V> state) throws IOException, ClassNotFoundException {
+        if (!logFile.exists()) {
+            resetLog();
+            return;
+        }
+
+        long fileLength = logFile.length();
+        long validLength = 0;
+        boolean staleLog = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+            if (in.readInt() != LOG_MAGIC || in.readLong() != epoch) {
+                staleLog = true;
+            } else {
+                validLength = 12;
+                while (true) {
+                    int length;
+                    long checksum;
+                    byte[] payload;
+                    try {
+                        length = in.readInt();
+                        checksum = in.readLong();
+                        // tamanho corrompido: não aloca além do que resta no arquivo
+                        if (length <= 0 || length > fileLength - validLength - 12) {
+                            break;
+                        }
+                        payload = new byte[length];
+                        in.readFully(payload);
+                    } catch (EOFException tornTail) {
+                        break;
+                    }
+                    CRC32 crc = new CRC32();
+                    crc.update(payload);
+                    if (crc.getValue() != checksum) {
+                        break;
+                    }
+
+                    try (DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload))) {
+                        byte op = record.readByte();
+                        String id = record.readUTF();
+                        if (op == OP_PUT_COMPACT) {
+                            ObjectInputStream ois = new CompactObjectInputStream(record);
+                            state.put(id, (V) ois.readObject());
+                        } else if (op == OP_PUT) {
+                            // registros gravados antes do formato compacto
+                            ObjectInputStream ois = new ObjectInputStream(record);
+                            state.put(id, (V) ois.readObject());
+                        } else if (op == OP_REMOVE) {
+                            state.remove(id);
+                        }
+                    }
+                    validLength += 12 + length;
+                    recordsSinceSnapshot++;
+                }
+            }
+        } catch (EOFException truncatedHeader) {
+            staleLog = true;
+        }
+
+        if (staleLog) {
+            resetLog();
+            return;
+        }
+        if (validLength < logFile.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(logFile, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+    }
+
+    private void resetLog() throws IOException {
+        storage.overwrite(logFile, logHeader(epoch));
+        recordsSinceSnapshot = 0;
+    }
+
+    private static byte[] logHeader(long epoch) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream(12);
+        try (DataOutputStream out = new DataOutputStream(header)) {
+            out.writeInt(LOG_MAGIC);
+            out.writeLong(epoch);
+        }
+        return header.toByteArray();
+    }
+
+    private static long nextEpoch() {
+        long value;
+        do {
+            value = ThreadLocalRandom.current().nextLong();
+        } while (value == LEGACY_EPOCH);
+        return value;
+    }
+
+    // Serialização padrão sem cabeçalho e com as classes gravadas só pelo nome.
+    private static final class CompactObjectOutputStream extends ObjectOutputStream {
+        CompactObjectOutputStream(OutputStream out) throws IOException {
+            super(out);
+        }
+
+        @Override
+        protected void writeStreamHeader() {
+        }
+
+        @Override
+        protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+            writeUTF(desc.getName());
+        }
+    }
+
+    private static final class CompactObjectInputStream extends ObjectInputStream {
+        CompactObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected void readStreamHeader() {
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            String name = readUTF();
+            return ObjectStreamClass.lookupAny(Class.forName(name, false, MutationJournal.class.getClassLoader()));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package repo;
+
+import model.Notification;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Notificações persistidas em journal ({@link MutationJournal}): cada entrega,
+ * leitura ou remoção acrescenta um único registro, e o snapshot periódico só
+ * contém as notificações ainda retidas.
+ */
+public class NotificationRepository {
+    private final File storageFile;
+    private final MutationJournal<Notification> journal;
+    private Map<String, Notification> notificationsById;
+
+    public NotificationRepository(String pathToFile) {
+        this.storageFile = new File(pathToFile);
+        this.journal = new MutationJournal<>(StorageEngine.shared(), storageFile);
+        load();
+    }
+
+    private void load() {
+        try {
+            notificationsById = journal.load();
+        } catch (Exception e) {
+            System.err.println("Não foi possível carregar armazenamento de notificações. Inicializando vazio... ("
+                    + e.getMessage() + ")");
+            notificationsById = new HashMap<>();
+        }
+    }
+
+    /** Notificações gravadas, da mais antiga para a mais nova. */
+    public synchronized List<Notification> findAll() {
+        List<Notification> all = new ArrayList<>(notificationsById.values());
+        all.sort(Comparator.comparing(Notification::getTimestamp));
+        return all;
+    }
+
+    /** Grava a versão atual (nova ou lida). */
+    public synchronized void save(Notification notification) throws IOException {
+        notificationsById.put(notification.getId(), notification);
+        journal.append(notification.getId(), notification);
+        compactIfNeeded();
+    }
+
+    public synchronized void delete(String id) throws IOException {
+        if (notificationsById.remove(id) != null) {
+            journal.appendRemoval(id);
+            compactIfNeeded();
+        }
+    }
+
+    public synchronized void deleteAll() throws IOException {
+        notificationsById.clear();
+        journal.compact(notificationsById);
+    }
+
+    public synchronized int count() {
+        return notificationsById.size();
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (journal.needsSnapshot() || journal.shouldCompact()) {
+            journal.compact(notificationsById);
+        }
+    }
+}
@@ -1,70 +1,449 @@
 package repo;
 
 import model.Order;
+import model.OrderStatus;
+import model.OrderType;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Pedidos em memória, gravados em segundo plano (write-behind).
+ *
+ * save/update só marcam o pedido como sujo e retornam. Uma thread de fundo
+ * grava os pedidos sujos no journal ({@link MutationJournal}, só os pedidos
+ * alterados) a cada {@code flushIntervalMillis} ou assim que houver
+ * {@code maxDirty} pedidos sujos; várias mudanças no mesmo pedido entre duas
+ * gravações viram um registro só. {@link #flush()} grava na hora, e um gancho
+ * de encerramento da JVM grava o que faltar. Depois de {@link #close()}, que
+ * para a thread e tira o gancho, cada save/update grava na hora. Falhas de gravação mantêm os
+ * pedidos sujos para a próxima tentativa e ficam visíveis em
+ * {@link #getFailureCount()} e {@link #getLastFailure()}.
+ */
 public class OrderRepository {
 
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200;
+    public static final int DEFAULT_MAX_DIRTY = 64;
+
     private final File storageFile;
+    private final MutationJournal<Order> journal;
+    private final long flushIntervalMillis;
+    private final int maxDirty;
     private Map<String, Order> ordersById;
 
+    // Pedidos alterados desde a última gravação (sob a trava do repositório).
+    private Map<String, Order> dirty = new LinkedHashMap<>();
+    // Serializa as gravações; o journal só é usado sob esta trava.
+    private final Object flushLock = new Object();
+    private ScheduledExecutorService flusher;
+    private Thread shutdownHook;
+    private boolean flushRequested;
+    private boolean closed;
+
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushedOrders = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private volatile String lastFailure;
+
+    // Índices derivados (id do pedido -> pedido em cada balde), refeitos na carga
+    // e mantidos em save/update e pelos avisos de mudança de cada pedido. Guarda-se
+    // em que baldes cada pedido está, para tirá-lo de lá quando ele muda.
+    private final Map<String, Map<String, Order>> byRestaurant = new HashMap<>();
+    private final Map<String, Map<String, Order>> byCustomer = new HashMap<>();
+    private final Map<String, Map<String, Order>> byDelivery = new HashMap<>();
+    private final Map<OrderStatus, Map<String, Order>> byStatus = new EnumMap<>(OrderStatus.class);
+    private final Map<OrderType, Map<String, Order>> byType = new EnumMap<>(OrderType.class);
+    private final Map<String, IndexKeys> keysById = new HashMap<>();
+
     public OrderRepository() {
         File dataDir = new File("data");
         if (!dataDir.exists())
             dataDir.mkdirs();
         this.storageFile = new File(dataDir, "orders.db");
+        this.journal = new MutationJournal<>(StorageEngine.shared(), storageFile);
+        this.flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+        this.maxDirty = DEFAULT_MAX_DIRTY;
         load();
     }
 
     public OrderRepository(String filePath) {
+        this(filePath, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_MAX_DIRTY);
+    }
+
+    public OrderRepository(String filePath, long flushIntervalMillis, int maxDirty) {
         this.storageFile = new File(filePath);
+        this.journal = new MutationJournal<>(StorageEngine.shared(), storageFile);
+        this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+        this.maxDirty = Math.max(1, maxDirty);
         load();
     }
 
-    @SuppressWarnings("unchecked")
-    private void load() {
-        if (!storageFile.exists()) {
-            ordersById = new HashMap<>();
-            return;
-        }
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(storageFile))) {
-            Object o = ois.readObject();
-            ordersById = (Map<String, Order>) o;
+    private synchronized void load() {
+        try {
+            ordersById = journal.load();
         } catch (Exception e) {
             System.err.println("Não foi possível carregar pedidos. Inicializando vazio. (" + e.getMessage() + ")");
             ordersById = new HashMap<>();
         }
+        for (Order order : ordersById.values()) {
+            order.setChangeListener(this::reindex);
+            reindex(order);
+        }
+    }
+
+    /**
+     * Chamado sob a trava do repositório. Devolve true se o pedido deve ser
+     * gravado já, fora da trava (o repositório foi fechado).
+     */
+    private boolean markDirty(Order order) {
+        dirty.put(order.getId(), order);
+        if (closed) {
+            return true;
+        }
+        if (flusher == null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "order-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+            shutdownHook = new Thread(this::close, "order-flush-shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+        if (dirty.size() >= maxDirty && !flushRequested) {
+            flushRequested = true;
+            flusher.execute(this::flushQuietly);
+        }
+        return false;
+    }
+
+    /**
+     * Grava agora todos os pedidos sujos. Em caso de falha eles continuam
+     * sujos (a próxima gravação tenta de novo) e a exceção é repassada.
+     */
+    public void flush() throws IOException {
+        synchronized (flushLock) {
+            Map<String, Order> pending;
+            byte[] records;
+            synchronized (this) {
+                flushRequested = false;
+                if (dirty.isEmpty()) {
+                    return;
+                }
+                pending = dirty;
+                dirty = new LinkedHashMap<>();
+                // serializa sob a trava: grava o estado de agora, não uma mistura
+                try {
+                    records = encode(pending);
+                } catch (IOException | RuntimeException e) {
+                    requeue(pending);
+                    throw recordFailure(e);
+                }
+            }
+            try {
+                if (!journal.needsSnapshot()) {
+                    journal.appendEncoded(records, pending.size());
+                }
+                if (journal.needsSnapshot() || journal.shouldCompact()) {
+                    Map<String, Order> snapshot;
+                    synchronized (this) {
+                        snapshot = new HashMap<>(ordersById);
+                    }
+                    journal.compact(snapshot);
+                }
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    requeue(pending);
+                }
+                throw recordFailure(e);
+            }
+            flushCount.incrementAndGet();
+            flushedOrders.addAndGet(pending.size());
+        }
+    }
+
+    /**
+     * Para a gravação em segundo plano, tira o gancho de encerramento e grava o
+     * que estiver pendente. Gravações posteriores são feitas na hora.
+     */
+    public void close() {
+        ScheduledExecutorService stopped;
+        Thread hook;
+        synchronized (this) {
+            closed = true;
+            stopped = flusher;
+            hook = shutdownHook;
+            shutdownHook = null;
+        }
+        if (stopped != null) {
+            stopped.shutdown();
+        }
+        if (hook != null && hook != Thread.currentThread()) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(hook);
+            } catch (IllegalStateException shuttingDown) {
+                // a JVM já está encerrando: o gancho roda e só grava o que sobrar
+            }
+        }
+        flushQuietly();
+    }
+
+    public synchronized int getDirtyCount() {
+        return dirty.size();
     }
 
-    private void persist() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(storageFile))) {
-            oos.writeObject(ordersById);
-        } catch (IOException e) {
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    /** Pedidos gravados desde a abertura (cada gravação de um pedido conta uma vez). */
+    public long getFlushedOrderCount() {
+        return flushedOrders.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /** Mensagem da última falha de gravação, ou null se nunca houve. */
+    public String getLastFailure() {
+        return lastFailure;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException | RuntimeException e) {
             System.err.println("Erro ao salvar pedidos: " + e.getMessage());
         }
     }
 
+    private byte[] encode(Map<String, Order> orders) throws IOException {
+        ByteArrayOutputStream records = new ByteArrayOutputStream(orders.size() * 512);
+        for (Map.Entry<String, Order> entry : orders.entrySet()) {
+            records.write(journal.encode(entry.getKey(), entry.getValue()));
+        }
+        return records.toByteArray();
+    }
+
+    // Devolve pedidos que não foram gravados, sem passar por cima de versões mais novas.
+    private void requeue(Map<String, Order> pending) {
+        for (Map.Entry<String, Order> entry : pending.entrySet()) {
+            dirty.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private IOException recordFailure(Exception e) {
+        failureCount.incrementAndGet();
+        lastFailure = e.getMessage();
+        return e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+    }
+
     public void save(Order order) {
-        ordersById.put(order.getId(), order);
-        persist();
+        boolean flushNow;
+        synchronized (this) {
+            store(order);
+            flushNow = markDirty(order);
+        }
+        if (flushNow) {
+            flushQuietly();
+        }
     }
 
-    public Optional<Order> findById(String id) {
+    public synchronized Optional<Order> findById(String id) {
         return Optional.ofNullable(ordersById.get(id));
     }
 
-    public List<Order> findAll() {
+    public synchronized List<Order> findAll() {
         return new ArrayList<>(ordersById.values());
     }
 
+    public synchronized List<Order> findByRestaurant(String restaurantId) {
+        return copyOf(byRestaurant.get(restaurantId));
+    }
+
+    /** Pedidos do cliente; o email é comparado sem diferenciar maiúsculas. */
+    public synchronized List<Order> findByCustomerEmail(String customerEmail) {
+        return copyOf(byCustomer.get(normalizeEmail(customerEmail)));
+    }
+
+    public synchronized List<Order> findByDeliveryId(String deliveryId) {
+        return copyOf(byDelivery.get(deliveryId));
+    }
+
+    public synchronized List<Order> findByStatus(OrderStatus status) {
+        return copyOf(byStatus.get(status));
+    }
+
+    public synchronized List<Order> findByType(OrderType type) {
+        return copyOf(byType.get(type));
+    }
+
+    public synchronized List<Order> findByRestaurantAndStatus(String restaurantId, OrderStatus status) {
+        return withStatus(byRestaurant.get(restaurantId), status);
+    }
+
+    public synchronized List<Order> findByCustomerAndStatus(String customerEmail, OrderStatus status) {
+        return withStatus(byCustomer.get(normalizeEmail(customerEmail)), status);
+    }
+
+    public synchronized List<Order> findByDeliveryAndStatus(String deliveryId, OrderStatus status) {
+        return withStatus(byDelivery.get(deliveryId), status);
+    }
+
     public void update(Order order) {
-        ordersById.put(order.getId(), order);
-        persist();
+        boolean flushNow;
+        synchronized (this) {
+            store(order);
+            flushNow = markDirty(order);
+        }
+        if (flushNow) {
+            flushQuietly();
+        }
+    }
+
+    private void store(Order order) {
+        Order previous = ordersById.put(order.getId(), order);
+        if (previous != null && previous != order) {
+            // outro objeto com o mesmo id: os baldes ainda apontam para o antigo
+            previous.setChangeListener(null);
+            IndexKeys stale = keysById.remove(order.getId());
+            if (stale != null) {
+                unindex(stale, order);
+            }
+        }
+        order.setChangeListener(this::reindex);
+        reindex(order);
+    }
+
+    // Também chamado pelos avisos do pedido, fora de save/update.
+    private synchronized void reindex(Order order) {
+        if (ordersById.get(order.getId()) != order) {
+            return;
+        }
+        IndexKeys current = IndexKeys.of(order);
+        IndexKeys previous = keysById.put(order.getId(), current);
+        if (current.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            unindex(previous, order);
+        }
+        add(byRestaurant, current.restaurantId, order);
+        add(byCustomer, current.customerEmail, order);
+        add(byDelivery, current.deliveryId, order);
+        add(byStatus, current.status, order);
+        add(byType, current.type, order);
+    }
+
+    private void unindex(IndexKeys keys, Order order) {
+        remove(byRestaurant, keys.restaurantId, order);
+        remove(byCustomer, keys.customerEmail, order);
+        remove(byDelivery, keys.deliveryId, order);
+        remove(byStatus, keys.status, order);
+        remove(byType, keys.type, order);
+    }
+
+    private static <K> void add(Map<K, Map<String, Order>> index, K key, Order order) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new LinkedHashMap<>()).put(order.getId(), order);
+        }
+    }
+
+    private static <K> void remove(Map<K, Map<String, Order>> index, K key, Order order) {
+        if (key == null) {
+            return;
+        }
+        Map<String, Order> bucket = index.get(key);
+        if (bucket != null) {
+            bucket.remove(order.getId());
+            if (bucket.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    // Percorre o menor dos dois baldes.
+    private List<Order> withStatus(Map<String, Order> bucket, OrderStatus status) {
+        Map<String, Order> sameStatus = byStatus.get(status);
+        if (bucket == null || sameStatus == null) {
+            return new ArrayList<>();
+        }
+        List<Order> result = new ArrayList<>();
+        if (bucket.size() <= sameStatus.size()) {
+            for (Order order : bucket.values()) {
+                if (order.getStatus() == status) {
+                    result.add(order);
+                }
+            }
+        } else {
+            for (Order order : sameStatus.values()) {
+                if (bucket.containsKey(order.getId())) {
+                    result.add(order);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static List<Order> copyOf(Map<String, Order> bucket) {
+        return bucket == null ? new ArrayList<>() : new ArrayList<>(bucket.values());
+    }
+
+    private static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class IndexKeys {
+        private final String restaurantId;
+        private final String customerEmail;
+        private final String deliveryId;
+        private final OrderStatus status;
+        private final OrderType type;
+
+        private IndexKeys(String restaurantId, String customerEmail, String deliveryId, OrderStatus status,
+                OrderType type) {
+            this.restaurantId = restaurantId;
+            this.customerEmail = customerEmail;
+            this.deliveryId = deliveryId;
+            this.status = status;
+            this.type = type;
+        }
+
+        static IndexKeys of(Order order) {
+            return new IndexKeys(order.getRestaurantId(), normalizeEmail(order.getCustomerEmail()),
+                    order.getAssignedDeliveryId(), order.getStatus(), order.getOrderType());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof IndexKeys)) {
+                return false;
+            }
+            IndexKeys other = (IndexKeys) obj;
+            return status == other.status
+                    && type == other.type
+                    && Objects.equals(restaurantId, other.restaurantId)
+                    && Objects.equals(customerEmail, other.customerEmail)
+                    && Objects.equals(deliveryId, other.deliveryId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(restaurantId, customerEmail, deliveryId, status, type);
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,8 @@
 package repo;
 
+import model.Location;
 import model.Restaurant;
+import util.SpatialGrid;
 
 import java.io.*;
 import java.util.ArrayList;
@@ -8,12 +10,23 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class RestaurantRepository {
 
+    private final StorageEngine storage = StorageEngine.shared();
     private final File storageFile;
     private Map<String, Restaurant> restaurantsByEmail;
 
+    // Lado da célula do índice espacial, na unidade de Location.distanceTo (graus).
+    private static final double GRID_CELL_SIZE = 0.01;
+
+    // Índices derivados, refeitos na carga e mantidos em save/update e pelos
+    // avisos de mudança de cada restaurante.
+    private final Map<String, Restaurant> restaurantsById = new ConcurrentHashMap<>();
+    // Só restaurantes ativos e abertos, com localização.
+    private final SpatialGrid<Restaurant> availableGrid = new SpatialGrid<>(GRID_CELL_SIZE);
+
     public RestaurantRepository() {
         File dataDir = new File("data");
         if (!dataDir.exists())
@@ -40,11 +53,33 @@ public class RestaurantRepository {
             System.err.println("Não foi possível carregar restaurantes. Inicializando vazio. (" + e.getMessage() + ")");
             restaurantsByEmail = new HashMap<>();
         }
+        for (Restaurant restaurant : restaurantsByEmail.values()) {
+            index(restaurant);
+        }
+    }
+
+    private void index(Restaurant restaurant) {
+        Restaurant previous = restaurantsById.put(restaurant.getId(), restaurant);
+        if (previous != null && previous != restaurant) {
+            previous.setChangeListener(null);
+            availableGrid.remove(previous);
+        }
+        restaurant.setChangeListener(this::refreshAvailability);
+        refreshAvailability(restaurant);
+    }
+
+    private void refreshAvailability(Restaurant restaurant) {
+        Location location = restaurant.getLocation();
+        if (restaurant.isActive() && restaurant.isOpen() && location != null) {
+            availableGrid.put(restaurant, location.getLatitude(), location.getLongitude());
+        } else {
+            availableGrid.remove(restaurant);
+        }
     }
 
     private void persist() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(storageFile))) {
-            oos.writeObject(restaurantsByEmail);
+        try {
+            storage.overwrite(storageFile, StorageEngine.serialize(restaurantsByEmail));
         } catch (IOException e) {
             System.err.println("Erro ao salvar restaurantes: " + e.getMessage());
         }
@@ -52,13 +87,20 @@ public class RestaurantRepository {
 
     public void save(Restaurant restaurant) {
         restaurantsByEmail.put(restaurant.getEmail().toLowerCase(), restaurant);
+        index(restaurant);
         persist();
     }
 
     public Optional<Restaurant> findById(String id) {
-        return restaurantsByEmail.values().stream()
-                .filter(r -> r.getId().equals(id))
-                .findFirst();
+        return id == null ? Optional.empty() : Optional.ofNullable(restaurantsById.get(id));
+    }
+
+    /**
+     * Restaurantes ativos e abertos a no máximo {@code radius} da localização,
+     * do mais perto para o mais longe.
+     */
+    public List<Restaurant> findAvailableInRadius(Location location, double radius) {
+        return availableGrid.withinRadius(location.getLatitude(), location.getLongitude(), radius, null);
     }
 
     public Optional<Restaurant> findByEmail(String email) {
@@ -77,6 +119,7 @@ public class RestaurantRepository {
 
     public void update(Restaurant restaurant) {
         restaurantsByEmail.put(restaurant.getEmail().toLowerCase(), restaurant);
+        index(restaurant);
         persist();
     }
 }
\ No newline at end of file
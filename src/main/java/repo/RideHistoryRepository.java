@@ -1,158 +1,656 @@
 package repo;
 
+import model.CategoryStatistics;
+import model.CursorPage;
 import model.RideHistory;
+import util.ValidationException;
 import java.io.*;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Histórico de corridas particionado por mês de solicitação.
+ *
+ * O arquivo principal guarda só o manifesto: os meses existentes, quantos
+ * registros cada um tem e os totais por categoria de cada mês. Os registros
+ * ficam em um arquivo por mês no diretório {@code <arquivo>.segments}. Abrir o
+ * repositório lê apenas o manifesto; um mês é carregado quando uma consulta
+ * precisa dele.
+ *
+ * Os {@code pinnedMonths} meses mais recentes nunca saem da memória. Os demais
+ * ficam em ordem de uso e, quando a soma de registros em memória passa de
+ * {@code maxResidentRecords}, os menos usados são descartados (já estão
+ * gravados). Consultas por período só abrem os meses do intervalo e as
+ * paginadas param no mês em que a página se completa; buscas sem recorte de
+ * tempo (por id, por categoria, histórico completo) percorrem os meses do mais
+ * novo ao mais antigo.
+ *
+ * O formato antigo (um único mapa serializado) é convertido na primeira abertura.
+ */
 public class RideHistoryRepository {
+    public static final int DEFAULT_PINNED_MONTHS = 3;
+    public static final int DEFAULT_MAX_RESIDENT_RECORDS = 50_000;
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final StorageEngine storage = StorageEngine.shared();
     private final File storageFile;
-    private Map<String, RideHistory> historyById;
-    private Map<String, List<RideHistory>> historyByPassenger;
-    private Map<String, List<RideHistory>> historyByDriver;
+    private final File segmentDir;
+    private final int pinnedMonths;
+    private final int maxResidentRecords;
+
+    // mês ("2024-05") -> resumo gravado no manifesto, do mais antigo ao mais novo
+    private final NavigableMap<String, SegmentInfo> manifest = new TreeMap<>();
+    // meses em memória, do uso mais antigo ao mais recente
+    private final LinkedHashMap<String, Segment> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private int residentRecords;
+    private int totalRecords;
+    private long segmentLoads;
+
+    // Totais por categoria: somas dos resumos dos meses, ajustadas a cada mês
+    // regravado. As leituras só somam os contadores e não disputam a trava.
+    private final NavigableMap<String, CategoryCounters> statsByCategory = new ConcurrentSkipListMap<>();
 
     public RideHistoryRepository(String pathToFile) {
+        this(pathToFile, DEFAULT_PINNED_MONTHS, DEFAULT_MAX_RESIDENT_RECORDS);
+    }
+
+    public RideHistoryRepository(String pathToFile, int pinnedMonths, int maxResidentRecords) {
+        if (pinnedMonths < 0 || maxResidentRecords < 0) {
+            throw new IllegalArgumentException("Limites de memória do histórico não podem ser negativos.");
+        }
         this.storageFile = new File(pathToFile);
-        this.historyByPassenger = new HashMap<>();
-        this.historyByDriver = new HashMap<>();
+        this.segmentDir = new File(pathToFile + ".segments");
+        this.pinnedMonths = pinnedMonths;
+        this.maxResidentRecords = maxResidentRecords;
         load();
     }
 
     @SuppressWarnings("unchecked")
     private void load() {
         if (!storageFile.exists()) {
-            historyById = new HashMap<>();
             return;
         }
+        Object o;
         try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(storageFile))) {
-            Object o = ois.readObject();
-            historyById = (Map<String, RideHistory>) o;
-            
-            // Reconstruir índices
-            historyByPassenger.clear();
-            historyByDriver.clear();
-            for (RideHistory history : historyById.values()) {
-                addToPassengerIndex(history);
-                addToDriverIndex(history);
-            }
+            o = ois.readObject();
         } catch (Exception e) {
             System.err.println("Não foi possível carregar histórico de corridas. Inicializando vazio... (" + e.getMessage() + ")");
-            historyById = new HashMap<>();
+            return;
+        }
+        if (o instanceof Manifest) {
+            for (SegmentInfo info : ((Manifest) o).segments) {
+                manifest.put(info.month, info);
+                account(info, 1);
+            }
+        } else if (o instanceof Map) {
+            migrate((Map<String, RideHistory>) o);
+        } else {
+            System.err.println("Formato desconhecido no histórico de corridas. Inicializando vazio...");
         }
     }
 
-    private void save() throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(storageFile))) {
-            oos.writeObject(historyById);
+    // Arquivo do formato antigo: reparte os registros por mês e grava o manifesto no lugar dele.
+    private void migrate(Map<String, RideHistory> legacy) {
+        Map<String, Segment> segments = new TreeMap<>();
+        for (RideHistory history : legacy.values()) {
+            segments.computeIfAbsent(monthOf(history), Segment::new).put(history);
         }
+        try {
+            storage.batch(() -> {
+                for (Segment segment : segments.values()) {
+                    resident.put(segment.month, segment);
+                    residentRecords += segment.size();
+                    persist(segment);
+                }
+                return null;
+            });
+        } catch (IOException e) {
+            System.err.println("Erro ao converter histórico de corridas: " + e.getMessage());
+        }
+        evict(null);
     }
 
-    private void addToPassengerIndex(RideHistory history) {
-        String passengerEmail = history.getPassengerEmail();
-        historyByPassenger.computeIfAbsent(passengerEmail, k -> new ArrayList<>()).add(history);
+    public synchronized void add(RideHistory history) throws IOException {
+        String month = monthOf(history);
+        Segment segment = load(month);
+        if (segment == null) {
+            segment = new Segment(month);
+            resident.put(month, segment);
+        }
+        int before = segment.size();
+        segment.put(history);
+        residentRecords += segment.size() - before;
+        persist(segment);
+        evict(month);
     }
 
-    private void addToDriverIndex(RideHistory history) {
-        String driverId = history.getDriverId();
-        if (driverId != null) {
-            historyByDriver.computeIfAbsent(driverId, k -> new ArrayList<>()).add(history);
+    /**
+     * Procura primeiro nos meses em memória; se não achar, carrega os demais do
+     * mais novo ao mais antigo (o id não diz o mês do registro).
+     */
+    public synchronized RideHistory findById(String id) {
+        if (id == null) {
+            return null;
+        }
+        for (Segment segment : resident.values()) {
+            RideHistory history = segment.byId.get(id);
+            if (history != null) {
+                return history;
+            }
         }
+        for (String month : manifest.descendingKeySet()) {
+            if (resident.containsKey(month)) {
+                continue;
+            }
+            RideHistory history = segment(month).byId.get(id);
+            if (history != null) {
+                return history;
+            }
+        }
+        return null;
     }
 
-    public synchronized void add(RideHistory history) throws IOException {
-        historyById.put(history.getId(), history);
-        addToPassengerIndex(history);
-        addToDriverIndex(history);
-        save();
+    /** Todo o histórico, do mais recente ao mais antigo. Carrega todos os meses. */
+    public synchronized Collection<RideHistory> findAll() {
+        List<RideHistory> all = new ArrayList<>(totalRecords);
+        for (String month : manifest.descendingKeySet()) {
+            all.addAll(segment(month).byTime.descendingMap().values());
+        }
+        return Collections.unmodifiableList(all);
+    }
+
+    /** Histórico do passageiro, do mais recente ao mais antigo. */
+    public synchronized List<RideHistory> findByPassengerEmail(String passengerEmail) {
+        List<RideHistory> result = new ArrayList<>();
+        if (passengerEmail == null) {
+            return result;
+        }
+        for (String month : manifest.descendingKeySet()) {
+            result.addAll(timelineOf(segment(month).byPassenger, passengerEmail).descendingMap().values());
+        }
+        return result;
+    }
+
+    /**
+     * Uma página do histórico do passageiro, do mais recente ao mais antigo.
+     * {@code cursor} null começa do registro mais recente; só são abertos os
+     * meses a partir do cursor até a página se completar.
+     */
+    public synchronized CursorPage<RideHistory> findByPassengerEmail(String passengerEmail, String cursor, int limit) {
+        return page(segment -> timelineOf(segment.byPassenger, passengerEmail), cursor, limit);
+    }
+
+    public synchronized List<RideHistory> findByDriverId(String driverId) {
+        List<RideHistory> result = new ArrayList<>();
+        if (driverId == null) {
+            return result;
+        }
+        for (String month : manifest.descendingKeySet()) {
+            result.addAll(timelineOf(segment(month).byDriver, driverId).descendingMap().values());
+        }
+        return result;
     }
 
-    public RideHistory findById(String id) {
-        return historyById.get(id);
+    public synchronized CursorPage<RideHistory> findByDriverId(String driverId, String cursor, int limit) {
+        return page(segment -> timelineOf(segment.byDriver, driverId), cursor, limit);
     }
 
-    public Collection<RideHistory> findAll() {
-        return Collections.unmodifiableCollection(historyById.values());
+    public synchronized List<RideHistory> findByVehicleCategory(String category) {
+        List<RideHistory> result = new ArrayList<>();
+        for (String month : manifest.descendingKeySet()) {
+            for (RideHistory history : segment(month).byTime.descendingMap().values()) {
+                if (history.getVehicleCategory() != null && history.getVehicleCategory().equalsIgnoreCase(category)) {
+                    result.add(history);
+                }
+            }
+        }
+        return result;
     }
 
-    public List<RideHistory> findByPassengerEmail(String passengerEmail) {
-        return historyByPassenger.getOrDefault(passengerEmail, new ArrayList<>())
-                .stream()
-                .sorted(Comparator.comparing(RideHistory::getRequestTime).reversed())
-                .collect(Collectors.toList());
+    public synchronized List<RideHistory> findByPassengerAndCategory(String passengerEmail, String category) {
+        List<RideHistory> result = new ArrayList<>();
+        for (RideHistory history : findByPassengerEmail(passengerEmail)) {
+            if (history.getVehicleCategory() != null && history.getVehicleCategory().equalsIgnoreCase(category)) {
+                result.add(history);
+            }
+        }
+        return result;
+    }
+
+    /** Registros com solicitação estritamente entre as datas, do mais recente ao mais antigo. */
+    public synchronized List<RideHistory> findByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
+        return between(segment -> segment.byTime, startDate, endDate);
     }
 
-    public List<RideHistory> findByDriverId(String driverId) {
-        return historyByDriver.getOrDefault(driverId, new ArrayList<>())
-                .stream()
-                .sorted(Comparator.comparing(RideHistory::getRequestTime).reversed())
-                .collect(Collectors.toList());
+    public synchronized List<RideHistory> findByPassengerAndDateRange(String passengerEmail, LocalDateTime startDate,
+            LocalDateTime endDate) {
+        return between(segment -> timelineOf(segment.byPassenger, passengerEmail), startDate, endDate);
     }
 
-    public List<RideHistory> findByVehicleCategory(String category) {
-        return historyById.values().stream()
-                .filter(history -> history.getVehicleCategory() != null && 
-                        history.getVehicleCategory().equalsIgnoreCase(category))
-                .sorted(Comparator.comparing(RideHistory::getRequestTime).reversed())
-                .collect(Collectors.toList());
+    public synchronized List<RideHistory> findByDriverAndDateRange(String driverId, LocalDateTime startDate,
+            LocalDateTime endDate) {
+        return between(segment -> timelineOf(segment.byDriver, driverId), startDate, endDate);
     }
 
-    public List<RideHistory> findByPassengerAndCategory(String passengerEmail, String category) {
-        return historyByPassenger.getOrDefault(passengerEmail, new ArrayList<>())
-                .stream()
-                .filter(history -> history.getVehicleCategory() != null && 
-                        history.getVehicleCategory().equalsIgnoreCase(category))
-                .sorted(Comparator.comparing(RideHistory::getRequestTime).reversed())
-                .collect(Collectors.toList());
+    private static NavigableMap<TimeKey, RideHistory> timelineOf(
+            Map<String, NavigableMap<TimeKey, RideHistory>> index, String key) {
+        NavigableMap<TimeKey, RideHistory> timeline = key == null ? null : index.get(key);
+        return timeline == null ? Collections.emptyNavigableMap() : timeline;
     }
 
-    public List<RideHistory> findByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
-        return historyById.values().stream()
-                .filter(history -> history.getRequestTime().isAfter(startDate) && 
-                        history.getRequestTime().isBefore(endDate))
-                .sorted(Comparator.comparing(RideHistory::getRequestTime).reversed())
-                .collect(Collectors.toList());
+    private CursorPage<RideHistory> page(Timeline timelineOf, String cursor, int limit) {
+        if (limit <= 0) {
+            throw new ValidationException("Tamanho de página deve ser positivo.");
+        }
+        TimeKey after = cursor == null ? null : TimeKey.decode(cursor);
+        // meses do cursor para trás; os mais novos não têm nada da página
+        NavigableSet<String> months = after == null
+                ? manifest.descendingKeySet()
+                : manifest.headMap(monthOf(after.time), true).descendingKeySet();
+        List<RideHistory> items = new ArrayList<>(Math.min(limit, 64));
+        TimeKey last = null;
+        for (String month : months) {
+            NavigableMap<TimeKey, RideHistory> timeline = timelineOf.of(segment(month));
+            NavigableMap<TimeKey, RideHistory> older = after == null
+                    ? timeline.descendingMap()
+                    : timeline.headMap(after, false).descendingMap();
+            for (Map.Entry<TimeKey, RideHistory> entry : older.entrySet()) {
+                if (items.size() == limit) {
+                    return new CursorPage<>(items, last.encode());
+                }
+                items.add(entry.getValue());
+                last = entry.getKey();
+            }
+        }
+        return new CursorPage<>(items, null);
     }
 
-    public List<RideHistory> findByPassengerAndDateRange(String passengerEmail, LocalDateTime startDate, LocalDateTime endDate) {
-        return historyByPassenger.getOrDefault(passengerEmail, new ArrayList<>())
-                .stream()
-                .filter(history -> history.getRequestTime().isAfter(startDate) && 
-                        history.getRequestTime().isBefore(endDate))
-                .sorted(Comparator.comparing(RideHistory::getRequestTime).reversed())
-                .collect(Collectors.toList());
+    private List<RideHistory> between(Timeline timelineOf, LocalDateTime startDate, LocalDateTime endDate) {
+        List<RideHistory> result = new ArrayList<>();
+        if (startDate == null || endDate == null || !startDate.isBefore(endDate)) {
+            return result;
+        }
+        // limites exclusivos, como isAfter/isBefore: depois de todos os ids no
+        // início e antes de todos os ids no fim
+        TimeKey from = TimeKey.after(startDate);
+        TimeKey to = TimeKey.before(endDate);
+        for (String month : manifest.subMap(monthOf(startDate), true, monthOf(endDate), true).descendingKeySet()) {
+            NavigableMap<TimeKey, RideHistory> range = timelineOf.of(segment(month)).subMap(from, false, to, false);
+            result.addAll(range.descendingMap().values());
+        }
+        return result;
     }
 
     public synchronized void update(RideHistory history) throws IOException {
-        if (historyById.containsKey(history.getId())) {
-            historyById.put(history.getId(), history);
-            save();
+        // o mês vem do horário de solicitação, que não muda
+        String month = monthOf(history);
+        Segment segment = load(month);
+        if (segment != null && segment.byId.containsKey(history.getId())) {
+            segment.put(history);
+            persist(segment);
+            evict(month);
         }
     }
 
     public boolean existsById(String id) {
-        return historyById.containsKey(id);
+        return findById(id) != null;
+    }
+
+    public synchronized int count() {
+        return totalRecords;
+    }
+
+    /** Meses com registros no disco. */
+    public synchronized int getSegmentCount() {
+        return manifest.size();
+    }
+
+    /** Meses carregados em memória no momento. */
+    public synchronized int getResidentSegmentCount() {
+        return resident.size();
     }
 
-    public int count() {
-        return historyById.size();
+    public synchronized int getResidentRecordCount() {
+        return residentRecords;
     }
 
+    /** Quantas vezes um mês precisou ser lido do disco. */
+    public synchronized long getSegmentLoadCount() {
+        return segmentLoads;
+    }
+
+    /** Categorias com corridas no histórico, em ordem alfabética. */
     public List<String> getAvailableCategories() {
-        return historyById.values().stream()
-                .map(RideHistory::getVehicleCategory)
-                .filter(Objects::nonNull)
-                .distinct()
-                .sorted()
-                .collect(Collectors.toList());
+        List<String> categories = new ArrayList<>();
+        for (Map.Entry<String, CategoryCounters> entry : statsByCategory.entrySet()) {
+            if (entry.getValue().rides.sum() > 0) {
+                categories.add(entry.getKey());
+            }
+        }
+        return categories;
     }
 
     public Map<String, Long> getCategoryStatistics() {
-        return historyById.values().stream()
-                .filter(history -> history.getVehicleCategory() != null)
-                .collect(Collectors.groupingBy(
-                        RideHistory::getVehicleCategory,
-                        Collectors.counting()
-                ));
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Map.Entry<String, CategoryCounters> entry : statsByCategory.entrySet()) {
+            long rides = entry.getValue().rides.sum();
+            if (rides > 0) {
+                counts.put(entry.getKey(), rides);
+            }
+        }
+        return counts;
+    }
+
+    /** Quantidade, receita e avaliações por categoria, em ordem alfabética. */
+    public List<CategoryStatistics> getCategorySummaries() {
+        List<CategoryStatistics> summaries = new ArrayList<>();
+        for (Map.Entry<String, CategoryCounters> entry : statsByCategory.entrySet()) {
+            CategoryStatistics summary = entry.getValue().snapshot(entry.getKey());
+            if (summary.getRides() > 0) {
+                summaries.add(summary);
+            }
+        }
+        return summaries;
+    }
+
+    // --- segmentos ---
+
+    /*
+     * Mês para consulta; null se o mês não existe. Se o arquivo do mês não puder
+     * ser lido, a consulta o vê vazio, mas nada fica em memória: a próxima
+     * consulta tenta de novo.
+     */
+    private Segment segment(String month) {
+        try {
+            return load(month);
+        } catch (IOException e) {
+            System.err.println("Não foi possível carregar o histórico de " + month + " (" + e.getMessage() + ")");
+            return new Segment(month);
+        }
+    }
+
+    /*
+     * Mês em memória, carregando do disco se preciso; null se o mês não existe.
+     * Uma falha de leitura é repassada: gravar sobre um mês que não foi lido
+     * substituiria o arquivo dele por um parcial.
+     */
+    private Segment load(String month) throws IOException {
+        Segment segment = resident.get(month);
+        if (segment != null || !manifest.containsKey(month)) {
+            return segment;
+        }
+        segment = read(month);
+        resident.put(month, segment);
+        residentRecords += segment.size();
+        segmentLoads++;
+        evict(month);
+        return segment;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Segment read(String month) throws IOException {
+        Segment segment = new Segment(month);
+        // o mês pode ter sido descartado com a gravação ainda na fila
+        storage.flush();
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(segmentFile(month)))) {
+            for (RideHistory history : ((Map<String, RideHistory>) ois.readObject()).values()) {
+                segment.put(history);
+            }
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Formato inválido no histórico de " + month, e);
+        }
+        return segment;
+    }
+
+    // Regrava o mês e o manifesto juntos e ajusta os totais por categoria.
+    private void persist(Segment segment) throws IOException {
+        SegmentInfo info = segment.summarize();
+        SegmentInfo previous = manifest.put(segment.month, info);
+        if (previous != null) {
+            account(previous, -1);
+        }
+        account(info, 1);
+        byte[] records = StorageEngine.serialize(new HashMap<>(segment.byId));
+        byte[] summary = StorageEngine.serialize(new Manifest(new ArrayList<>(manifest.values())));
+        storage.batch(() -> {
+            storage.overwrite(segmentFile(segment.month), records);
+            storage.overwrite(storageFile, summary);
+            return null;
+        });
+    }
+
+    private void account(SegmentInfo info, int sign) {
+        totalRecords += sign * info.records;
+        for (Map.Entry<String, CategoryTotals> entry : info.totals.entrySet()) {
+            statsByCategory.computeIfAbsent(entry.getKey(), c -> new CategoryCounters()).apply(entry.getValue(), sign);
+        }
+    }
+
+    // Descarta os meses menos usados até caber no limite; os mais recentes e
+    // {@code keep} (o mês em uso) ficam.
+    private void evict(String keep) {
+        if (residentRecords <= maxResidentRecords) {
+            return;
+        }
+        Set<String> pinned = new HashSet<>();
+        for (String month : manifest.descendingKeySet()) {
+            if (pinned.size() == pinnedMonths) {
+                break;
+            }
+            pinned.add(month);
+        }
+        Iterator<Map.Entry<String, Segment>> it = resident.entrySet().iterator();
+        while (residentRecords > maxResidentRecords && it.hasNext()) {
+            Map.Entry<String, Segment> entry = it.next();
+            if (pinned.contains(entry.getKey()) || entry.getKey().equals(keep)) {
+                continue;
+            }
+            residentRecords -= entry.getValue().size();
+            it.remove();
+        }
+    }
+
+    private File segmentFile(String month) {
+        return new File(segmentDir, month + SEGMENT_SUFFIX);
+    }
+
+    private static String monthOf(RideHistory history) {
+        return monthOf(TimeKey.of(history).time);
+    }
+
+    private static String monthOf(LocalDateTime time) {
+        return YearMonth.from(time).toString();
+    }
+
+    private interface Timeline {
+        NavigableMap<TimeKey, RideHistory> of(Segment segment);
+    }
+
+    /*
+     * Registros de um mês com os índices por horário (global e por
+     * passageiro/motorista). Horário, passageiro e motorista não mudam depois
+     * de criados, então reindexar um registro só troca o objeto guardado.
+     */
+    private static final class Segment {
+        private final String month;
+        private final Map<String, RideHistory> byId = new HashMap<>();
+        private final NavigableMap<TimeKey, RideHistory> byTime = new TreeMap<>();
+        private final Map<String, NavigableMap<TimeKey, RideHistory>> byPassenger = new HashMap<>();
+        private final Map<String, NavigableMap<TimeKey, RideHistory>> byDriver = new HashMap<>();
+
+        private Segment(String month) {
+            this.month = month;
+        }
+
+        void put(RideHistory history) {
+            byId.put(history.getId(), history);
+            TimeKey key = TimeKey.of(history);
+            byTime.put(key, history);
+            if (history.getPassengerEmail() != null) {
+                byPassenger.computeIfAbsent(history.getPassengerEmail(), k -> new TreeMap<>()).put(key, history);
+            }
+            if (history.getDriverId() != null) {
+                byDriver.computeIfAbsent(history.getDriverId(), k -> new TreeMap<>()).put(key, history);
+            }
+        }
+
+        int size() {
+            return byId.size();
+        }
+
+        SegmentInfo summarize() {
+            Map<String, CategoryTotals> totals = new HashMap<>();
+            for (RideHistory history : byId.values()) {
+                if (history.getVehicleCategory() != null) {
+                    totals.computeIfAbsent(history.getVehicleCategory(), c -> new CategoryTotals()).add(history);
+                }
+            }
+            return new SegmentInfo(month, byId.size(), totals);
+        }
+    }
+
+    // Conteúdo do arquivo principal.
+    private static final class Manifest implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final List<SegmentInfo> segments;
+
+        private Manifest(List<SegmentInfo> segments) {
+            this.segments = segments;
+        }
+    }
+
+    private static final class SegmentInfo implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String month;
+        private final int records;
+        private final Map<String, CategoryTotals> totals;
+
+        private SegmentInfo(String month, int records, Map<String, CategoryTotals> totals) {
+            this.month = month;
+            this.records = records;
+            this.totals = totals;
+        }
+    }
+
+    // Totais de uma categoria dentro de um mês.
+    private static final class CategoryTotals implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private long rides;
+        private double revenue;
+        private long driverRatingSum;
+        private long driverRatingCount;
+        private long passengerRatingSum;
+        private long passengerRatingCount;
+
+        void add(RideHistory history) {
+            rides++;
+            revenue += history.getPrice();
+            // avaliação 0 = ainda não avaliada
+            if (history.getDriverRating() > 0) {
+                driverRatingSum += history.getDriverRating();
+                driverRatingCount++;
+            }
+            if (history.getPassengerRating() > 0) {
+                passengerRatingSum += history.getPassengerRating();
+                passengerRatingCount++;
+            }
+        }
+    }
+
+    private static final class CategoryCounters {
+        private final LongAdder rides = new LongAdder();
+        private final DoubleAdder revenue = new DoubleAdder();
+        private final LongAdder driverRatingSum = new LongAdder();
+        private final LongAdder driverRatingCount = new LongAdder();
+        private final LongAdder passengerRatingSum = new LongAdder();
+        private final LongAdder passengerRatingCount = new LongAdder();
+
+        void apply(CategoryTotals t, int sign) {
+            rides.add(sign * t.rides);
+            revenue.add(sign * t.revenue);
+            driverRatingSum.add(sign * t.driverRatingSum);
+            driverRatingCount.add(sign * t.driverRatingCount);
+            passengerRatingSum.add(sign * t.passengerRatingSum);
+            passengerRatingCount.add(sign * t.passengerRatingCount);
+        }
+
+        CategoryStatistics snapshot(String category) {
+            return new CategoryStatistics(category, rides.sum(), revenue.sum(), driverRatingSum.sum(),
+                    driverRatingCount.sum(), passengerRatingSum.sum(), passengerRatingCount.sum());
+        }
+    }
+
+    /*
+     * Chave dos índices por horário: (requestTime, id). Chaves de limite usam
+     * bound -1/+1 para ficar antes/depois de todos os ids do mesmo horário.
+     */
+    private static final class TimeKey implements Comparable<TimeKey> {
+        private final LocalDateTime time;
+        private final String id;
+        private final int bound;
+
+        private TimeKey(LocalDateTime time, String id, int bound) {
+            this.time = time;
+            this.id = id;
+            this.bound = bound;
+        }
+
+        static TimeKey of(RideHistory history) {
+            LocalDateTime time = history.getRequestTime();
+            return new TimeKey(time == null ? LocalDateTime.MIN : time, history.getId(), 0);
+        }
+
+        // cursor: "<requestTime ISO>|<id>"
+        String encode() {
+            return time + "|" + id;
+        }
+
+        static TimeKey decode(String cursor) {
+            int separator = cursor.indexOf('|');
+            if (separator <= 0 || separator == cursor.length() - 1) {
+                throw new ValidationException("Cursor inválido.");
+            }
+            try {
+                return new TimeKey(LocalDateTime.parse(cursor.substring(0, separator)),
+                        cursor.substring(separator + 1), 0);
+            } catch (DateTimeParseException e) {
+                throw new ValidationException("Cursor inválido.");
+            }
+        }
+
+        static TimeKey before(LocalDateTime time) {
+            return new TimeKey(time, null, -1);
+        }
+
+        static TimeKey after(LocalDateTime time) {
+            return new TimeKey(time, null, 1);
+        }
+
+        @Override
+        public int compareTo(TimeKey other) {
+            int byTime = time.compareTo(other.time);
+            if (byTime != 0) {
+                return byTime;
+            }
+            if (bound != 0 || other.bound != 0) {
+                return Integer.compare(bound, other.bound);
+            }
+            return id.compareTo(other.id);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof TimeKey && compareTo((TimeKey) obj) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(time, id, bound);
+        }
     }
 }
@@ -7,37 +7,35 @@ import java.util.stream.Collectors;
 
 public class RideRepository {
     private final File storageFile;
+    private final MutationJournal<Ride> journal;
     private Map<String, Ride> ridesById;
 
     public RideRepository(String pathToFile) {
         this.storageFile = new File(pathToFile);
+        this.journal = new MutationJournal<>(StorageEngine.shared(), storageFile);
         load();
     }
 
-    @SuppressWarnings("unchecked")
     private void load() {
-        if (!storageFile.exists()) {
-            ridesById = new HashMap<>();
-            return;
-        }
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(storageFile))) {
-            Object o = ois.readObject();
-            ridesById = (Map<String, Ride>) o;
+        try {
+            ridesById = journal.load();
         } catch (Exception e) {
             System.err.println("Não foi possível carregar armazenamento de corridas. Inicializando vazio... (" + e.getMessage() + ")");
             ridesById = new HashMap<>();
         }
     }
 
-    private void save() throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(storageFile))) {
-            oos.writeObject(ridesById);
+    // Grava só a corrida alterada no journal; o snapshot completo é refeito periodicamente.
+    private void save(Ride ride) throws IOException {
+        journal.append(ride.getId(), ride);
+        if (journal.shouldCompact()) {
+            journal.compact(ridesById);
         }
     }
 
     public synchronized void add(Ride ride) throws IOException {
         ridesById.put(ride.getId(), ride);
-        save();
+        save(ride);
     }
 
     public Ride findById(String id) {
@@ -63,7 +61,7 @@ public class RideRepository {
     public synchronized void update(Ride ride) throws IOException {
         if (ridesById.containsKey(ride.getId())) {
             ridesById.put(ride.getId(), ride);
-            save();
+            save(ride);
         }
     }
 
@@ -0,0 +1,405 @@
+package repo;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Motor de gravação compartilhado pelos repositórios.
+ *
+ * Os repositórios não abrem mais arquivos diretamente: cada mutação vira um
+ * pedido de substituição ({@link #overwrite}) ou de acréscimo ({@link #append})
+ * de um arquivo. Conforme o {@link DurabilityMode}, os pedidos são gravados na
+ * hora ou agrupados em um commit único, com um fsync por arquivo tocado.
+ * Substituições seguidas do mesmo arquivo dentro de um commit são coalescidas
+ * (só o último conteúdo é gravado).
+ *
+ * O modo do motor compartilhado vem da propriedade de sistema
+ * {@value #MODE_PROPERTY} ({@code sync}, {@code group} ou {@code async}) e a
+ * janela de agrupamento de {@value #WINDOW_PROPERTY}, em milissegundos.
+ */
+public class StorageEngine {
+
+    public enum DurabilityMode {
+        /** Cada gravação é feita e sincronizada antes de retornar. */
+        SYNC_PER_WRITE,
+        /** Gravações de uma janela curta viram um commit; quem grava espera o commit. */
+        GROUP_COMMIT,
+        /** Igual ao GROUP_COMMIT, mas sem esperar o commit; falhas só são contadas. */
+        ASYNC
+    }
+
+    @FunctionalInterface
+    public interface IOAction<T> {
+        T run() throws IOException;
+    }
+
+    public static final String MODE_PROPERTY = "uberpb.storage.durability";
+    public static final String WINDOW_PROPERTY = "uberpb.storage.windowMillis";
+    private static final long DEFAULT_WINDOW_MILLIS = 1;
+
+    private static StorageEngine shared;
+
+    private final DurabilityMode mode;
+    private final long windowMillis;
+
+    private final Object lock = new Object();
+    private final Object commitLock = new Object();
+    private Map<File, PendingWrite> pending = new LinkedHashMap<>();
+    private CompletableFuture<Void> pendingCommit = new CompletableFuture<>();
+    private CompletableFuture<Void> inFlightCommit = CompletableFuture.completedFuture(null);
+    private Thread committer;
+    private boolean closed;
+
+    private final ThreadLocal<Batch> currentBatch = new ThreadLocal<>();
+
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public StorageEngine(DurabilityMode mode, long windowMillis) {
+        this.mode = mode == null ? DurabilityMode.GROUP_COMMIT : mode;
+        this.windowMillis = Math.max(0, windowMillis);
+    }
+
+    public static synchronized StorageEngine shared() {
+        if (shared == null) {
+            shared = new StorageEngine(modeFromProperty(), windowFromProperty());
+        }
+        return shared;
+    }
+
+    /**
+     * Troca o motor compartilhado. Deve ser chamado antes de criar os
+     * repositórios, pois cada um guarda o motor recebido na construção.
+     */
+    public static synchronized void configureShared(DurabilityMode mode, long windowMillis) {
+        StorageEngine previous = shared;
+        shared = new StorageEngine(mode, windowMillis);
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    public DurabilityMode getMode() {
+        return mode;
+    }
+
+    // --- pedidos de gravação ---
+
+    /** Substitui todo o conteúdo do arquivo (grava em temporário e renomeia). */
+    public void overwrite(File file, byte[] content) throws IOException {
+        submit(file, content, true);
+    }
+
+    /** Acrescenta bytes ao final do arquivo. */
+    public void append(File file, byte[] content) throws IOException {
+        submit(file, content, false);
+    }
+
+    /**
+     * Executa {@code action} agrupando todas as gravações feitas nesta thread em
+     * um único commit, disparado ao final (mesmo se a ação lançar exceção, para
+     * não perder o que já foi alterado em memória).
+     */
+    public <T> T batch(IOAction<T> action) throws IOException {
+        Batch batch = currentBatch.get();
+        if (batch != null) {
+            return action.run();
+        }
+
+        batch = new Batch();
+        currentBatch.set(batch);
+        T result;
+        try {
+            result = action.run();
+        } catch (IOException | RuntimeException | Error e) {
+            currentBatch.remove();
+            try {
+                commitBatch(batch);
+            } catch (IOException commitFailure) {
+                e.addSuppressed(commitFailure);
+            }
+            throw e;
+        }
+        currentBatch.remove();
+        commitBatch(batch);
+        return result;
+    }
+
+    /** Aguarda até que tudo o que foi pedido até agora esteja gravado. */
+    public void flush() throws IOException {
+        CompletableFuture<Void> target;
+        synchronized (lock) {
+            target = pending.isEmpty() ? inFlightCommit : pendingCommit;
+        }
+        await(target);
+    }
+
+    /** Grava o que estiver pendente e encerra a thread de commit. */
+    public void close() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar dados pendentes: " + e.getMessage());
+        }
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+    }
+
+    public long getCommitCount() {
+        return commits.get();
+    }
+
+    public long getSyncCount() {
+        return syncs.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    // --- implementação ---
+
+    private void submit(File file, byte[] content, boolean replace) throws IOException {
+        Batch batch = currentBatch.get();
+        if (batch != null) {
+            stage(batch.writes, file, content, replace);
+            return;
+        }
+
+        if (mode == DurabilityMode.SYNC_PER_WRITE || isClosed()) {
+            Map<File, PendingWrite> single = new LinkedHashMap<>();
+            stage(single, file, content, replace);
+            commit(single);
+            return;
+        }
+
+        CompletableFuture<Void> commit;
+        synchronized (lock) {
+            stage(pending, file, content, replace);
+            commit = pendingCommit;
+            ensureCommitter();
+            lock.notifyAll();
+        }
+        if (mode == DurabilityMode.GROUP_COMMIT) {
+            await(commit);
+        }
+    }
+
+    private void commitBatch(Batch batch) throws IOException {
+        if (batch.writes.isEmpty()) {
+            return;
+        }
+        if (mode == DurabilityMode.SYNC_PER_WRITE || isClosed()) {
+            commit(batch.writes);
+            return;
+        }
+
+        CompletableFuture<Void> commit;
+        synchronized (lock) {
+            for (Map.Entry<File, PendingWrite> entry : batch.writes.entrySet()) {
+                PendingWrite write = entry.getValue();
+                if (write.replacement != null) {
+                    stage(pending, entry.getKey(), write.replacement, true);
+                }
+                if (write.appended.size() > 0) {
+                    stage(pending, entry.getKey(), write.appended.toByteArray(), false);
+                }
+            }
+            commit = pendingCommit;
+            ensureCommitter();
+            lock.notifyAll();
+        }
+        if (mode == DurabilityMode.GROUP_COMMIT) {
+            await(commit);
+        }
+    }
+
+    /*
+     * Uma substituição move o arquivo para o fim da ordem do commit: assim o log
+     * de um journal só é reiniciado depois que o snapshot que o substitui foi gravado.
+     */
+    private static void stage(Map<File, PendingWrite> writes, File file, byte[] content, boolean replace) {
+        File key = file.getAbsoluteFile();
+        if (replace) {
+            PendingWrite write = writes.remove(key);
+            if (write == null) {
+                write = new PendingWrite();
+            }
+            write.replacement = content;
+            write.appended.reset();
+            writes.put(key, write);
+        } else {
+            writes.computeIfAbsent(key, k -> new PendingWrite()).appended.write(content, 0, content.length);
+        }
+    }
+
+    private boolean isClosed() {
+        synchronized (lock) {
+            return closed;
+        }
+    }
+
+    private void ensureCommitter() {
+        if (committer != null) {
+            return;
+        }
+        committer = new Thread(this::runCommitter, "storage-committer");
+        committer.setDaemon(true);
+        committer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "storage-shutdown"));
+    }
+
+    private void runCommitter() {
+        while (true) {
+            synchronized (lock) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+            }
+
+            if (windowMillis > 0) {
+                try {
+                    Thread.sleep(windowMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            Map<File, PendingWrite> writes;
+            CompletableFuture<Void> commit;
+            synchronized (lock) {
+                writes = pending;
+                commit = pendingCommit;
+                pending = new LinkedHashMap<>();
+                pendingCommit = new CompletableFuture<>();
+                inFlightCommit = commit;
+            }
+
+            try {
+                commit(writes);
+                commit.complete(null);
+            } catch (IOException | RuntimeException e) {
+                if (mode == DurabilityMode.ASYNC) {
+                    System.err.println("Erro ao gravar dados em segundo plano: " + e.getMessage());
+                }
+                commit.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void commit(Map<File, PendingWrite> writes) throws IOException {
+        synchronized (commitLock) {
+            try {
+                for (Map.Entry<File, PendingWrite> entry : writes.entrySet()) {
+                    write(entry.getKey(), entry.getValue());
+                }
+                commits.incrementAndGet();
+            } catch (IOException e) {
+                failures.incrementAndGet();
+                throw e;
+            }
+        }
+    }
+
+    private void write(File file, PendingWrite write) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        if (write.replacement == null) {
+            try (FileOutputStream fos = new FileOutputStream(file, true)) {
+                write.appended.writeTo(fos);
+                fos.getFD().sync();
+            }
+            syncs.incrementAndGet();
+            return;
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            fos.write(write.replacement);
+            write.appended.writeTo(fos);
+            fos.getFD().sync();
+        }
+        syncs.incrementAndGet();
+        try {
+            Files.move(tmp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void await(CompletableFuture<Void> commit) throws IOException {
+        try {
+            commit.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrompido aguardando gravação.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Falha ao gravar dados: " + cause.getMessage(), cause);
+        }
+    }
+
+    /** Serializa um objeto com Java serialization, no formato usado pelos repositórios. */
+    static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static DurabilityMode modeFromProperty() {
+        String value = System.getProperty(MODE_PROPERTY, "group").trim().toLowerCase(Locale.ROOT);
+        switch (value) {
+            case "sync":
+                return DurabilityMode.SYNC_PER_WRITE;
+            case "async":
+                return DurabilityMode.ASYNC;
+            default:
+                return DurabilityMode.GROUP_COMMIT;
+        }
+    }
+
+    private static long windowFromProperty() {
+        try {
+            return Long.parseLong(System.getProperty(WINDOW_PROPERTY, String.valueOf(DEFAULT_WINDOW_MILLIS)).trim());
+        } catch (NumberFormatException e) {
+            return DEFAULT_WINDOW_MILLIS;
+        }
+    }
+
+    private static final class PendingWrite {
+        private byte[] replacement;
+        private final ByteArrayOutputStream appended = new ByteArrayOutputStream();
+    }
+
+    private static final class Batch {
+        private final Map<File, PendingWrite> writes = new LinkedHashMap<>();
+    }
+}
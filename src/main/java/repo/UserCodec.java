@@ -0,0 +1,239 @@
+package repo;
+
+import model.Driver;
+import model.Location;
+import model.Passenger;
+import model.User;
+import model.Vehicle;
+
+import java.io.*;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Formato binário versionado do users.db.
+ *
+ * Layout (big-endian, via DataOutputStream):
+ * <pre>
+ * int magic "UBU1" | byte versão | int quantidade | registros...
+ * registro: byte tipo (1 = passageiro, 2 = motorista)
+ *           id, nome, email, telefone, senha (strings)
+ *           double soma das avaliações | int total de avaliações
+ *           motorista: CNH, boolean disponível, veículo?, localização?
+ * </pre>
+ * Strings opcionais e objetos aninhados são precedidos de um byte de presença.
+ * Ids no formato UUID canônico são gravados como 16 bytes em vez de texto.
+ * Campos novos devem entrar em uma nova versão, mantendo a leitura das anteriores.
+ */
+final class UserCodec {
+    static final int MAGIC = 0x55425531; // "UBU1"
+    static final byte CURRENT_VERSION = 1;
+
+    private static final byte TYPE_PASSENGER = 1;
+    private static final byte TYPE_DRIVER = 2;
+
+    private static final byte ID_ABSENT = 0;
+    private static final byte ID_TEXT = 1;
+    private static final byte ID_UUID = 2;
+
+    private UserCodec() {
+    }
+
+    /** Indica se o arquivo começa com o cabeçalho do formato binário. */
+    static boolean isBinary(File file) throws IOException {
+        if (file.length() < 4) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        }
+    }
+
+    static byte[] encode(Collection<User> users) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + users.size() * 160);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(CURRENT_VERSION);
+            out.writeInt(users.size());
+            for (User user : users) {
+                writeUser(out, user);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    static Map<String, User> decode(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Arquivo de usuários em formato desconhecido.");
+            }
+            byte version = in.readByte();
+            if (version != CURRENT_VERSION) {
+                throw new IOException("Versão do arquivo de usuários não suportada: " + version);
+            }
+            int count = in.readInt();
+            Map<String, User> users = new HashMap<>(Math.max(16, count * 4 / 3 + 1));
+            for (int i = 0; i < count; i++) {
+                User user = readUser(in);
+                users.put(user.getEmail(), user);
+            }
+            return users;
+        }
+    }
+
+    private static void writeUser(DataOutputStream out, User user) throws IOException {
+        boolean driver = user instanceof Driver;
+        if (!driver && !(user instanceof Passenger)) {
+            throw new IOException("Tipo de usuário não suportado: " + user.getClass().getName());
+        }
+        out.writeByte(driver ? TYPE_DRIVER : TYPE_PASSENGER);
+        writeId(out, user.getId());
+        writeString(out, user.getName());
+        writeString(out, user.getEmail());
+        writeString(out, user.getPhone());
+        writeString(out, user.getPassword());
+        out.writeDouble(user.getTotalRatingSum());
+        out.writeInt(user.getTotalRatings());
+
+        if (driver) {
+            Driver d = (Driver) user;
+            writeString(out, d.getLicenseDoc());
+            out.writeBoolean(d.isAvailable());
+            writeVehicle(out, d.getVehicle());
+            writeLocation(out, d.getCurrentLocation());
+        }
+    }
+
+    private static User readUser(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        String id = readId(in);
+        String name = readString(in);
+        String email = readString(in);
+        String phone = readString(in);
+        String password = readString(in);
+        double ratingSum = in.readDouble();
+        int ratingCount = in.readInt();
+
+        User user;
+        if (type == TYPE_PASSENGER) {
+            user = new Passenger(id, name, email, phone, password);
+        } else if (type == TYPE_DRIVER) {
+            String licenseDoc = readString(in);
+            boolean available = in.readBoolean();
+            Vehicle vehicle = readVehicle(in);
+            Location location = readLocation(in);
+            Driver d = new Driver(id, name, email, phone, password, licenseDoc, vehicle);
+            d.setAvailable(available);
+            d.setCurrentLocation(location);
+            user = d;
+        } else {
+            throw new IOException("Tipo de usuário inválido no arquivo: " + type);
+        }
+        user.restoreRatings(ratingSum, ratingCount);
+        return user;
+    }
+
+    private static void writeVehicle(DataOutputStream out, Vehicle v) throws IOException {
+        out.writeBoolean(v != null);
+        if (v == null) {
+            return;
+        }
+        writeId(out, v.getId());
+        writeString(out, v.getPlate());
+        writeString(out, v.getModel());
+        out.writeInt(v.getYear());
+        writeString(out, v.getColor());
+        writeString(out, v.getCategory());
+    }
+
+    private static Vehicle readVehicle(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        String id = readId(in);
+        String plate = readString(in);
+        String model = readString(in);
+        int year = in.readInt();
+        String color = readString(in);
+        String category = readString(in);
+        return new Vehicle(id, plate, model, year, color, category);
+    }
+
+    private static void writeLocation(DataOutputStream out, Location l) throws IOException {
+        out.writeBoolean(l != null);
+        if (l == null) {
+            return;
+        }
+        writeString(out, l.getAddress());
+        writeString(out, l.getDescription());
+        out.writeDouble(l.getLatitude());
+        out.writeDouble(l.getLongitude());
+    }
+
+    private static Location readLocation(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        String address = readString(in);
+        String description = readString(in);
+        double latitude = in.readDouble();
+        double longitude = in.readDouble();
+        return new Location(address, description, latitude, longitude);
+    }
+
+    private static void writeId(DataOutputStream out, String id) throws IOException {
+        if (id == null) {
+            out.writeByte(ID_ABSENT);
+            return;
+        }
+        UUID uuid = parseCanonicalUuid(id);
+        if (uuid == null) {
+            out.writeByte(ID_TEXT);
+            out.writeUTF(id);
+            return;
+        }
+        out.writeByte(ID_UUID);
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static String readId(DataInputStream in) throws IOException {
+        byte kind = in.readByte();
+        switch (kind) {
+            case ID_ABSENT:
+                return null;
+            case ID_TEXT:
+                return in.readUTF();
+            case ID_UUID:
+                return new UUID(in.readLong(), in.readLong()).toString();
+            default:
+                throw new IOException("Id inválido no arquivo de usuários: " + kind);
+        }
+    }
+
+    // Só compacta ids que voltam idênticos no toString (minúsculos, 36 caracteres).
+    private static UUID parseCanonicalUuid(String id) {
+        if (id.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -1,16 +1,38 @@
 package repo;
 
+import model.Driver;
 import model.User;
+import model.VehicleCategory;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 public class UserRepository {
     private static final String STORAGE_DB_NAME = "users.db";
     private static final String LEGACY_STORAGE_NAME = "users.date";
 
+    private final StorageEngine storage = StorageEngine.shared();
     private final File storageFile;
     private Map<String, User> usersByEmail;
 
+    // Índices secundários, mantidos junto com usersByEmail em add/update/load.
+    private final Map<String, User> usersById = new ConcurrentHashMap<>();
+    private final Map<String, List<User>> usersByPhone = new HashMap<>();
+    private final Map<String, Map<String, User>> usersByRole = new HashMap<>();
+
+    // Motoristas disponíveis por categoria de veículo. Atualizado pelo listener do
+    // Driver, que pode disparar fora dos métodos sincronizados deste repositório.
+    private final Map<VehicleCategory, Set<Driver>> availableByCategory = new EnumMap<>(VehicleCategory.class);
+    private final Map<String, VehicleCategory> pooledCategory = new ConcurrentHashMap<>();
+    private final Consumer<Driver> poolUpdater = this::refreshPool;
+
+    {
+        for (VehicleCategory category : VehicleCategory.values()) {
+            availableByCategory.put(category, ConcurrentHashMap.newKeySet());
+        }
+    }
+
     public UserRepository() {
         File dataDir = new File("data");
         if (!dataDir.exists())
@@ -24,7 +46,6 @@ public class UserRepository {
         load();
     }
 
-    @SuppressWarnings("unchecked")
     private void load() {
         File source = storageFile;
         if (!source.exists()) {
@@ -33,33 +54,46 @@ public class UserRepository {
                 source = legacy;
             } else {
                 usersByEmail = new HashMap<>();
+                rebuildIndexes();
                 return;
             }
         }
 
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(source))) {
-            Object o = ois.readObject();
-            usersByEmail = (Map<String, User>) o;
+        try {
+            if (UserCodec.isBinary(source)) {
+                usersByEmail = UserCodec.decode(source);
+            } else {
+                usersByEmail = loadSerialized(source);
+            }
+            rebuildIndexes();
 
-            // Migra automaticamente do arquivo legado users.date para users.db.
-            if (!source.equals(storageFile)) {
+            // Migra automaticamente o arquivo legado (users.date ou users.db em Java
+            // serialization) para o formato binário em users.db.
+            if (!source.equals(storageFile) || !UserCodec.isBinary(storageFile)) {
                 save();
             }
         } catch (Exception e) {
             System.err
                     .println("Não foi possível carregar armazenamento. Inicializando vazio. (" + e.getMessage() + ")");
             usersByEmail = new HashMap<>();
+            rebuildIndexes();
         }
     }
 
-    public void save() throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(storageFile))) {
-            oos.writeObject(usersByEmail);
+    @SuppressWarnings("unchecked")
+    private static Map<String, User> loadSerialized(File source) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(source)))) {
+            return new HashMap<>((Map<String, User>) ois.readObject());
         }
     }
 
+    public void save() throws IOException {
+        storage.overwrite(storageFile, UserCodec.encode(usersByEmail.values()));
+    }
+
     public synchronized void add(User u) throws IOException {
-        usersByEmail.put(u.getEmail(), u);
+        User previous = usersByEmail.put(u.getEmail(), u);
+        reindex(previous, u);
         save();
     }
 
@@ -75,23 +109,151 @@ public class UserRepository {
         if (id == null || id.trim().isEmpty()) {
             return null;
         }
-        for (User user : usersByEmail.values()) {
-            if (id.equals(user.getId())) {
-                return user;
-            }
+        return usersById.get(id);
+    }
+
+    /**
+     * Usuários cadastrados com o telefone informado (pode haver mais de um).
+     * Devolve uma cópia feita sob a trava: cadastros posteriores não a alteram.
+     */
+    public synchronized List<User> findByPhone(String phone) {
+        if (phone == null || phone.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<User> users = usersByPhone.get(phone.trim());
+        return users == null ? Collections.emptyList() : new ArrayList<>(users);
+    }
+
+    /**
+     * Usuários de um papel ({@link User#getRole()}), sem diferenciar maiúsculas.
+     * Como {@link #findByPhone}, devolve uma cópia.
+     */
+    public synchronized Collection<User> findByRole(String role) {
+        if (role == null) {
+            return Collections.emptyList();
         }
-        return null;
+        Map<String, User> users = usersByRole.get(role.toLowerCase());
+        return users == null ? Collections.emptyList() : new ArrayList<>(users.values());
     }
 
     public synchronized void update(User user) throws IOException {
         if (user == null || !existsByEmail(user.getEmail())) {
             return;
         }
-        usersByEmail.put(user.getEmail(), user);
+        User previous = usersByEmail.put(user.getEmail(), user);
+        reindex(previous, user);
         save();
     }
 
     public Collection<User> findAll() {
         return Collections.unmodifiableCollection(usersByEmail.values());
     }
+
+    /**
+     * Reserva o motorista de forma atômica (disponível -> ocupado). Entre chamadas
+     * concorrentes para o mesmo motorista, só uma recebe true; as demais devem
+     * tentar o próximo candidato. A reserva não é persistida aqui: quem reserva
+     * grava o motorista com {@link #update(User)}.
+     */
+    public boolean tryReserveDriver(Driver driver) {
+        return driver != null && driver.tryReserve();
+    }
+
+    /**
+     * Motoristas disponíveis com veículo da categoria informada. A coleção é uma
+     * visão viva do índice; quem precisa ordenar deve copiá-la.
+     */
+    public Collection<Driver> findAvailableDrivers(VehicleCategory category) {
+        if (category == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableCollection(availableByCategory.get(category));
+    }
+
+    private void rebuildIndexes() {
+        usersById.clear();
+        usersByPhone.clear();
+        usersByRole.clear();
+        pooledCategory.clear();
+        for (Set<Driver> pool : availableByCategory.values()) {
+            pool.clear();
+        }
+        for (User user : usersByEmail.values()) {
+            index(user);
+        }
+    }
+
+    private void reindex(User previous, User current) {
+        if (previous != null) {
+            unindex(previous);
+        }
+        index(current);
+    }
+
+    private void index(User user) {
+        if (user.getId() != null) {
+            usersById.put(user.getId(), user);
+        }
+        if (user.getPhone() != null) {
+            usersByPhone.computeIfAbsent(user.getPhone().trim(), k -> new ArrayList<>(1)).add(user);
+        }
+        usersByRole.computeIfAbsent(user.getRole().toLowerCase(), k -> new HashMap<>()).put(user.getEmail(), user);
+        if (user instanceof Driver) {
+            Driver driver = (Driver) user;
+            driver.setChangeListener(poolUpdater);
+            refreshPool(driver);
+        }
+    }
+
+    private void unindex(User user) {
+        if (user.getId() != null) {
+            usersById.remove(user.getId(), user);
+        }
+        if (user.getPhone() != null) {
+            String phone = user.getPhone().trim();
+            List<User> samePhone = usersByPhone.get(phone);
+            if (samePhone != null) {
+                samePhone.removeIf(u -> u == user);
+                if (samePhone.isEmpty()) {
+                    usersByPhone.remove(phone);
+                }
+            }
+        }
+        Map<String, User> sameRole = usersByRole.get(user.getRole().toLowerCase());
+        if (sameRole != null) {
+            sameRole.remove(user.getEmail(), user);
+        }
+        if (user instanceof Driver) {
+            Driver driver = (Driver) user;
+            driver.setChangeListener(null);
+            removeFromPool(driver);
+        }
+    }
+
+    /*
+     * Recoloca o motorista no conjunto da categoria atual do veículo (ou o retira).
+     * O compute serializa as atualizações do mesmo motorista sem travar o
+     * repositório inteiro, já que o listener dispara durante reservas concorrentes.
+     */
+    private void refreshPool(Driver driver) {
+        pooledCategory.compute(driver.getId(), (id, previous) -> {
+            if (previous != null) {
+                availableByCategory.get(previous).remove(driver);
+            }
+            VehicleCategory category = driver.getVehicle() == null ? null
+                    : VehicleCategory.fromVehicleCategory(driver.getVehicle().getCategory());
+            if (category == null || !driver.isAvailable() || usersById.get(id) != driver) {
+                return null;
+            }
+            availableByCategory.get(category).add(driver);
+            return category;
+        });
+    }
+
+    private void removeFromPool(Driver driver) {
+        pooledCategory.computeIfPresent(driver.getId(), (id, previous) -> {
+            availableByCategory.get(previous).remove(driver);
+            return null;
+        });
+    }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import java.io.*;
 import java.util.*;
 
 public class VehicleRepository {
+    private final StorageEngine storage = StorageEngine.shared();
     private final File storageFile;
     private Map<String, Vehicle> vehiclesByPlate; // placa -> Vehicle
 
@@ -29,9 +30,7 @@ public class VehicleRepository {
     }
 
     private void save() throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(storageFile))) {
-            oos.writeObject(vehiclesByPlate);
-        }
+        storage.overwrite(storageFile, StorageEngine.serialize(vehiclesByPlate));
     }
 
     public synchronized void add(Vehicle v) throws IOException {
@@ -4,6 +4,7 @@ import model.Driver;
 import model.Passenger;
 import model.User;
 import model.Vehicle;
+import repo.StorageEngine;
 import repo.UserRepository;
 import repo.VehicleRepository;
 import util.ValidationException;
@@ -16,6 +17,7 @@ public class AuthService {
     private final VehicleRepository vehicleRepo;
     private final DocumentValidator documentValidator;
     private final Validator validator;
+    private final StorageEngine storage = StorageEngine.shared();
 
     public AuthService(UserRepository userRepo, VehicleRepository vehicleRepo) {
         this.userRepo = userRepo;
@@ -53,8 +55,11 @@ public class AuthService {
 
         Driver d = new Driver(name, email, phone, password, documentNumber, vehicle);
 
-        userRepo.add(d);
-        vehicleRepo.add(vehicle);
+        storage.batch(() -> {
+            userRepo.add(d);
+            vehicleRepo.add(vehicle);
+            return null;
+        });
 
         return d;
     }
@@ -78,8 +83,11 @@ public class AuthService {
 
         driver.addVehicle(newVehicle);
 
-        userRepo.update(driver);
-        vehicleRepo.add(newVehicle);
+        storage.batch(() -> {
+            userRepo.update(driver);
+            vehicleRepo.add(newVehicle);
+            return null;
+        });
 
         return driver;
     }
@@ -9,7 +9,6 @@ import util.ValidationException;
 
 import java.util.List;
 import java.util.Locale;
-import java.util.stream.Collectors;
 
 public class AvaliacaoService {
     private final AvaliacaoRepository avaliacaoRepository;
@@ -22,27 +21,17 @@ public class AvaliacaoService {
 
     public List<Order> getDeliveredOrdersForCustomer(String customerEmail) {
         String normalizedEmail = normalizeEmail(customerEmail);
-        return orderRepository.findAll().stream()
-                .filter(order -> order.getStatus() == OrderStatus.ENTREGUE)
-                .filter(order -> order.getCustomerEmail() != null
-                        && order.getCustomerEmail().trim().toLowerCase(Locale.ROOT).equals(normalizedEmail))
-                .collect(Collectors.toList());
+        return orderRepository.findByCustomerAndStatus(normalizedEmail, OrderStatus.ENTREGUE);
     }
 
     public List<Order> getDeliveredOrdersForDelivery(String deliveryId) {
         String normalizedDeliveryId = normalizeId(deliveryId, "ID do entregador é obrigatório.");
-        return orderRepository.findAll().stream()
-                .filter(order -> order.getStatus() == OrderStatus.ENTREGUE)
-                .filter(order -> normalizedDeliveryId.equals(order.getAssignedDeliveryId()))
-                .collect(Collectors.toList());
+        return orderRepository.findByDeliveryAndStatus(normalizedDeliveryId, OrderStatus.ENTREGUE);
     }
 
     public List<Order> getDeliveredOrdersForRestaurant(String restaurantId) {
         String normalizedRestaurantId = normalizeId(restaurantId, "ID do restaurante é obrigatório.");
-        return orderRepository.findAll().stream()
-                .filter(order -> order.getStatus() == OrderStatus.ENTREGUE)
-                .filter(order -> normalizedRestaurantId.equals(order.getRestaurantId()))
-                .collect(Collectors.toList());
+        return orderRepository.findByRestaurantAndStatus(normalizedRestaurantId, OrderStatus.ENTREGUE);
     }
 
     public void customerRatesDelivery(String orderId, String customerEmail, int nota, String comentario) {
@@ -211,17 +200,6 @@ public class AvaliacaoService {
             String comentario) {
         validateScore(nota);
 
-        boolean exists = avaliacaoRepository.findAll().stream()
-                .anyMatch(av -> av.getOrderId().equals(order.getId())
-                        && av.getAvaliadorTipo() == avaliadorTipo
-                        && av.getAvaliadorId().equals(avaliadorId)
-                        && av.getAlvoTipo() == alvoTipo
-                        && av.getAlvoId().equals(alvoId));
-
-        if (exists) {
-            throw new ValidationException("Você já avaliou este alvo neste pedido.");
-        }
-
         Avaliacao avaliacao = new Avaliacao(
                 order.getId(),
                 avaliadorTipo,
@@ -230,7 +208,9 @@ public class AvaliacaoService {
                 alvoId,
                 nota,
                 comentario);
-        avaliacaoRepository.save(avaliacao);
+        if (!avaliacaoRepository.saveIfAbsent(avaliacao)) {
+            throw new ValidationException("Você já avaliou este alvo neste pedido.");
+        }
     }
 
     private void validateScore(int nota) {
@@ -240,23 +220,11 @@ public class AvaliacaoService {
     }
 
     private double calculateAverage(Avaliacao.TipoParte alvoTipo, String alvoId) {
-        List<Avaliacao> ratings = avaliacaoRepository.findAll().stream()
-                .filter(av -> av.getAlvoTipo() == alvoTipo)
-                .filter(av -> av.getAlvoId().equals(alvoId))
-                .collect(Collectors.toList());
-
-        if (ratings.isEmpty()) {
-            return 0.0;
-        }
-
-        return ratings.stream().mapToInt(Avaliacao::getNota).average().orElse(0.0);
+        return avaliacaoRepository.averageFor(alvoTipo, alvoId);
     }
 
     private int countRatings(Avaliacao.TipoParte alvoTipo, String alvoId) {
-        return (int) avaliacaoRepository.findAll().stream()
-                .filter(av -> av.getAlvoTipo() == alvoTipo)
-                .filter(av -> av.getAlvoId().equals(alvoId))
-                .count();
+        return avaliacaoRepository.countFor(alvoTipo, alvoId);
     }
 
     private String normalizeEmail(String email) {
@@ -0,0 +1,250 @@
+package service;
+
+import model.Driver;
+import model.Location;
+import model.Ride;
+import model.VehicleCategory;
+import repo.RideRepository;
+import repo.StorageEngine;
+import repo.UserRepository;
+import util.AssignmentSolver;
+import util.DistanceCalculator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Atribuição de motoristas em lote.
+ *
+ * Em vez de escolher o melhor motorista para cada corrida isoladamente, as
+ * corridas em {@code SOLICITADA} acumuladas durante uma janela curta são
+ * resolvidas juntas, por categoria, como um problema de atribuição de custo
+ * mínimo ({@link AssignmentSolver}). O custo é a distância do motorista até a
+ * origem; em categorias premium a avaliação pesa antes da distância, como na
+ * atribuição individual.
+ *
+ * Para escalar a milhares de corridas, cada corrida só concorre pelos
+ * {@code candidatesPerRide} motoristas de menor custo. Corridas que ficam sem
+ * motorista continuam pendentes para o próximo lote.
+ */
+public class BatchMatchingService {
+    public static final int DEFAULT_CANDIDATES_PER_RIDE = 16;
+
+    // Peso de uma estrela de avaliação em km: maior que qualquer distância, para
+    // que em categorias premium a avaliação decida antes da distância.
+    private static final double PREMIUM_RATING_WEIGHT = 10_000.0;
+    // Custo para motoristas sem localização conhecida.
+    private static final double UNKNOWN_LOCATION_COST = 1_000.0;
+    // Distâncias têm resolução de 0,1 km; epsilon abaixo de 0,1 / corridas dá o ótimo.
+    private static final double COST_RESOLUTION = 0.1;
+
+    private final RideRepository rideRepo;
+    private final UserRepository userRepo;
+    private final RouteService routeService = new RouteService();
+    private final StorageEngine storage = StorageEngine.shared();
+    private final int candidatesPerRide;
+
+    private final ConcurrentLinkedQueue<String> pendingRideIds = new ConcurrentLinkedQueue<>();
+    private ScheduledExecutorService scheduler;
+
+    public BatchMatchingService(RideRepository rideRepo, UserRepository userRepo) {
+        this(rideRepo, userRepo, DEFAULT_CANDIDATES_PER_RIDE);
+    }
+
+    public BatchMatchingService(RideRepository rideRepo, UserRepository userRepo, int candidatesPerRide) {
+        this.rideRepo = rideRepo;
+        this.userRepo = userRepo;
+        this.candidatesPerRide = Math.max(1, candidatesPerRide);
+    }
+
+    /** Coloca a corrida na fila do próximo lote. */
+    public void submit(Ride ride) {
+        if (ride != null) {
+            pendingRideIds.add(ride.getId());
+        }
+    }
+
+    public int getPendingCount() {
+        return pendingRideIds.size();
+    }
+
+    /**
+     * Inicia a execução periódica dos lotes. Corridas que já estavam em
+     * {@code SOLICITADA} no repositório entram no primeiro lote.
+     */
+    public synchronized void start(long windowMillis) {
+        if (scheduler != null) {
+            return;
+        }
+        for (Ride ride : rideRepo.findByStatus(Ride.RideStatus.SOLICITADA)) {
+            submit(ride);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "batch-matching");
+            t.setDaemon(true);
+            return t;
+        });
+        long window = Math.max(1, windowMillis);
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                runBatch();
+            } catch (RuntimeException | IOException e) {
+                System.err.println("Erro na atribuição em lote: " + e.getMessage());
+            }
+        }, window, window, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Resolve as corridas pendentes. Retorna quantas receberam motorista.
+     */
+    public synchronized int runBatch() throws IOException {
+        Map<VehicleCategory, List<Ride>> ridesByCategory = drainPending();
+        if (ridesByCategory.isEmpty()) {
+            return 0;
+        }
+        return storage.batch(() -> {
+            int assigned = 0;
+            for (Map.Entry<VehicleCategory, List<Ride>> entry : ridesByCategory.entrySet()) {
+                assigned += matchCategory(entry.getKey(), entry.getValue());
+            }
+            return assigned;
+        });
+    }
+
+    private Map<VehicleCategory, List<Ride>> drainPending() {
+        Map<String, Ride> unique = new LinkedHashMap<>();
+        String rideId;
+        while ((rideId = pendingRideIds.poll()) != null) {
+            Ride ride = rideRepo.findById(rideId);
+            if (ride != null && ride.getStatus() == Ride.RideStatus.SOLICITADA && ride.getDriverId() == null) {
+                unique.put(ride.getId(), ride);
+            }
+        }
+
+        Map<VehicleCategory, List<Ride>> byCategory = new EnumMap<>(VehicleCategory.class);
+        for (Ride ride : unique.values()) {
+            VehicleCategory category = VehicleCategory.fromVehicleCategory(ride.getVehicleCategory());
+            if (category == null) {
+                System.err.println("Categoria não encontrada no Enum: " + ride.getVehicleCategory());
+                continue;
+            }
+            byCategory.computeIfAbsent(category, c -> new ArrayList<>()).add(ride);
+        }
+        return byCategory;
+    }
+
+    private int matchCategory(VehicleCategory category, List<Ride> rides) throws IOException {
+        List<Driver> drivers = new ArrayList<>();
+        for (Driver d : userRepo.findAvailableDrivers(category)) {
+            if (d.isAvailable() && d.getVehicle() != null
+                    && VehicleCategory.fromVehicleCategory(d.getVehicle().getCategory()) == category) {
+                drivers.add(d);
+            }
+        }
+        if (drivers.isEmpty()) {
+            rides.forEach(this::submit);
+            return 0;
+        }
+
+        // custo do motorista independente da corrida (parcela da avaliação)
+        double[] driverBase = new double[drivers.size()];
+        String[] driverAddress = new String[drivers.size()];
+        for (int j = 0; j < drivers.size(); j++) {
+            Driver d = drivers.get(j);
+            driverBase[j] = category.isPremium() ? (5.0 - d.getAverageRating()) * PREMIUM_RATING_WEIGHT : 0.0;
+            Location location = d.getCurrentLocation();
+            driverAddress[j] = location == null ? null : location.getAddress();
+        }
+
+        int k = Math.min(candidatesPerRide, drivers.size());
+        int[][] candidates = new int[rides.size()][];
+        double[][] costs = new double[rides.size()][];
+        for (int i = 0; i < rides.size(); i++) {
+            selectCandidates(rides.get(i), drivers, driverBase, driverAddress, k, i, candidates, costs);
+        }
+
+        // Deixar a corrida para o próximo lote custa mais que o pior candidato; um
+        // valor muito maior só alongaria a disputa de preços do leilão.
+        double maxCost = 0;
+        for (double[] rowCosts : costs) {
+            for (double c : rowCosts) {
+                maxCost = Math.max(maxCost, c);
+            }
+        }
+        double unassignedCost = 2 * maxCost + 1;
+        double epsilon = COST_RESOLUTION / (Math.min(rides.size(), drivers.size()) + 1);
+        int[] assignment = AssignmentSolver.solve(candidates, costs, drivers.size(), unassignedCost, epsilon);
+
+        int assigned = 0;
+        for (int i = 0; i < rides.size(); i++) {
+            Ride ride = rides.get(i);
+            int column = assignment[i];
+            if (column == AssignmentSolver.UNASSIGNED || !userRepo.tryReserveDriver(drivers.get(column))) {
+                submit(ride);
+                continue;
+            }
+            Driver driver = drivers.get(column);
+            ride.setDriverId(driver.getId());
+            ride.setStatus(Ride.RideStatus.AGUARDANDO_ACEITE_MOTORISTA);
+            ride.setDriverCurrentLocation(driver.getCurrentLocation());
+            routeService.generateRoute(ride);
+            userRepo.update(driver);
+            rideRepo.update(ride);
+            assigned++;
+        }
+        return assigned;
+    }
+
+    /*
+     * Guarda em candidates[row]/costs[row] os k motoristas de menor custo para a
+     * corrida, ignorando os que já a recusaram. Seleção por inserção ordenada em
+     * um vetor de tamanho k: O(motoristas * k) sem alocar por motorista.
+     */
+    private static void selectCandidates(Ride ride, List<Driver> drivers, double[] driverBase,
+            String[] driverAddress, int k, int row, int[][] candidates, double[][] costs) {
+        String origin = ride.getOrigin() == null ? null : ride.getOrigin().getAddress();
+        List<String> refused = ride.getRefusedDriverIds();
+        int[] bestCols = new int[k];
+        double[] bestCosts = new double[k];
+        int size = 0;
+
+        for (int j = 0; j < drivers.size(); j++) {
+            if (!refused.isEmpty() && refused.contains(drivers.get(j).getId())) {
+                continue;
+            }
+            double distance = driverAddress[j] == null ? UNKNOWN_LOCATION_COST
+                    : DistanceCalculator.calculateDistance(driverAddress[j], origin);
+            double cost = driverBase[j] + distance;
+            if (size == k && cost >= bestCosts[k - 1]) {
+                continue;
+            }
+            int pos = size < k ? size++ : k - 1;
+            while (pos > 0 && bestCosts[pos - 1] > cost) {
+                bestCosts[pos] = bestCosts[pos - 1];
+                bestCols[pos] = bestCols[pos - 1];
+                pos--;
+            }
+            bestCosts[pos] = cost;
+            bestCols[pos] = j;
+        }
+
+        candidates[row] = Arrays.copyOf(bestCols, size);
+        costs[row] = Arrays.copyOf(bestCosts, size);
+    }
+}
@@ -1,17 +1,13 @@
 package service;
 
 import model.Delivery;
-import model.DeliveryStatus;
 import model.Location;
 import model.Order;
 import model.OrderStatus;
 import repo.DeliveryRepository;
 import util.ValidationException;
 
-import java.util.Comparator;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
 
 public class DeliveryAssignmentService {
 
@@ -31,21 +27,14 @@ public class DeliveryAssignmentService {
             throw new ValidationException("Localização do restaurante é obrigatória.");
         }
 
-        List<Delivery> availableDeliveries = deliveryRepository.findAll().stream()
-                .filter(d -> d.isActive())
-                .filter(d -> d.getValidationStatus() == DeliveryStatus.APROVADO)
-                .filter(d -> d.getCurrentLocation() != null)
-                .collect(Collectors.toList());
+        // índice espacial do repositório: só entregadores ativos, aprovados e com localização
+        List<Delivery> nearest = deliveryRepository.findNearestAvailable(restaurantLocation, 1);
 
-        if (availableDeliveries.isEmpty()) {
+        if (nearest.isEmpty()) {
             throw new ValidationException("Nenhum entregador disponível no momento.");
         }
 
-        // Ordenar por distância e retornar o mais próximo
-        Optional<Delivery> nearest = availableDeliveries.stream()
-                .min(Comparator.comparingDouble(d -> d.getCurrentLocation().distanceTo(restaurantLocation)));
-
-        return nearest.orElseThrow(() -> new ValidationException("Não foi possível encontrar entregador disponível."));
+        return nearest.get(0);
     }
 
     // RF22 - Atribuir entregador ao pedido e notificar
@@ -70,7 +59,7 @@ public class DeliveryAssignmentService {
         order.setStatus(OrderStatus.AGUARDANDO_ACEITE_ENTREGADOR);
 
         // Notificar o entregador
-        notificationService.notifyDelivery(
+        notificationService.publishDeliveryAssigned(
                 nearestDelivery.getId(),
                 order.getId(),
                 restaurantName,
@@ -84,12 +73,7 @@ public class DeliveryAssignmentService {
             throw new ValidationException("Localização é obrigatória.");
         }
 
-        return deliveryRepository.findAll().stream()
-                .filter(d -> d.isActive())
-                .filter(d -> d.getValidationStatus() == DeliveryStatus.APROVADO)
-                .filter(d -> d.getCurrentLocation() != null)
-                .filter(d -> d.getCurrentLocation().distanceTo(location) <= radiusKm)
-                .collect(Collectors.toList());
+        return deliveryRepository.findAvailableInRadius(location, radiusKm);
     }
 
     // Calcular distância entre entregador e localização
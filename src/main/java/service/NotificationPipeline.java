@@ -0,0 +1,463 @@
+package service;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Entrega assíncrona de notificações.
+ *
+ * Quem publica só enfileira um evento leve (destinatário, pedido e os dados da
+ * mensagem, ainda sem formatar). Os eventos são repartidos por destinatário em
+ * {@code partitions} filas limitadas; cada fila tem uma thread que monta e
+ * entrega os eventos em lotes de até {@code batchSize}. Como um destinatário
+ * sempre cai na mesma fila, a ordem das notificações dele é preservada.
+ *
+ * Com a fila cheia, o comportamento depende de {@link Backpressure}:
+ * - DROP_OLDEST: descarta o evento mais antigo da fila (contado em
+ *   {@link #getDroppedCount()});
+ * - BLOCK: quem publica espera vaga na fila;
+ * - SPILL: o evento vai para um arquivo da partição e, a partir daí, os
+ *   seguintes também, até a thread alcançá-los. O arquivo é relido se o
+ *   processo reiniciar antes disso.
+ *
+ * {@link #awaitDelivered(String)} espera os eventos já publicados para um
+ * destinatário, para que leituras vejam o que foi publicado antes delas.
+ */
+public class NotificationPipeline {
+
+    public enum Backpressure {
+        DROP_OLDEST, BLOCK, SPILL;
+
+        /** Converte "drop_oldest", "block" ou "spill" (sem diferenciar maiúsculas). */
+        public static Backpressure parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    public static final int DEFAULT_PARTITIONS = 4;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    public static final int DEFAULT_BATCH_SIZE = 64;
+    private static final long IDLE_POLL_MILLIS = 50;
+    // Eventos são pequenos; um tamanho acima disso é um registro corrompido.
+    private static final int MAX_SPILL_RECORD = 1 << 20;
+
+    private final Partition[] partitions;
+    private final int batchSize;
+    private final Backpressure backpressure;
+    private final Consumer<List<Event>> sink;
+    private volatile boolean stopping;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * @param spillDir diretório dos arquivos de transbordo; obrigatório só em SPILL
+     * @param sink     recebe cada lote, sempre na thread da partição
+     */
+    NotificationPipeline(int partitions, int queueCapacity, int batchSize, Backpressure backpressure,
+            File spillDir, Consumer<List<Event>> sink) {
+        if (partitions <= 0 || queueCapacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Partições, capacidade e lote devem ser positivos.");
+        }
+        if (backpressure == Backpressure.SPILL && spillDir == null) {
+            throw new IllegalArgumentException("SPILL exige um diretório de transbordo.");
+        }
+        this.batchSize = batchSize;
+        this.backpressure = backpressure;
+        this.sink = sink;
+        this.partitions = new Partition[partitions];
+        for (int i = 0; i < partitions; i++) {
+            File spillFile = spillDir == null ? null : new File(spillDir, "notifications-" + i + ".spill");
+            this.partitions[i] = new Partition(i, queueCapacity, spillFile);
+        }
+        for (Partition partition : this.partitions) {
+            partition.worker.start();
+        }
+    }
+
+    void publish(Event event) {
+        published.incrementAndGet();
+        partitionOf(event.recipientId).offer(event);
+    }
+
+    /** Espera a entrega de tudo o que já foi publicado para o destinatário. */
+    void awaitDelivered(String recipientId) {
+        partitionOf(recipientId).awaitCompleted();
+    }
+
+    void awaitAll() {
+        for (Partition partition : partitions) {
+            partition.awaitCompleted();
+        }
+    }
+
+    /** Entrega o que estiver pendente (inclusive em disco) e encerra as threads. */
+    void stop() {
+        stopping = true;
+        for (Partition partition : partitions) {
+            try {
+                partition.worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public Backpressure getBackpressure() {
+        return backpressure;
+    }
+
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /** Eventos que passaram pelo arquivo de transbordo. */
+    public long getSpilledCount() {
+        return spilled.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    /** Eventos publicados e ainda não entregues nem descartados. */
+    public long getPendingCount() {
+        long pending = 0;
+        for (Partition partition : partitions) {
+            pending += partition.pending();
+        }
+        return pending;
+    }
+
+    private Partition partitionOf(String recipientId) {
+        int hash = recipientId == null ? 0 : recipientId.hashCode();
+        return partitions[Math.floorMod(hash, partitions.length)];
+    }
+
+    private final class Partition implements Runnable {
+        private final BlockingQueue<Event> queue;
+        private final File spillFile;
+        private final Thread worker;
+
+        // sob a trava da partição
+        private long accepted;
+        private long completed;
+        private boolean spilling;
+        private long spillReadOffset;
+
+        private Partition(int index, int queueCapacity, File spillFile) {
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.spillFile = spillFile;
+            this.worker = new Thread(this, "notification-dispatcher-" + index);
+            this.worker.setDaemon(true);
+            recoverSpill();
+        }
+
+        void offer(Event event) {
+            synchronized (this) {
+                accepted++;
+                // enquanto há eventos em disco, os novos vão atrás deles
+                if (spilling) {
+                    spill(event);
+                    return;
+                }
+                if (queue.offer(event)) {
+                    return;
+                }
+                if (backpressure == Backpressure.DROP_OLDEST) {
+                    if (queue.poll() != null) {
+                        discarded(1);
+                    }
+                    if (!queue.offer(event)) {
+                        discarded(1);
+                    }
+                    return;
+                }
+                if (backpressure == Backpressure.SPILL) {
+                    spilling = true;
+                    spill(event);
+                    return;
+                }
+            }
+            try {
+                queue.put(event);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                synchronized (this) {
+                    discarded(1);
+                }
+            }
+        }
+
+        synchronized void awaitCompleted() {
+            long target = accepted;
+            while (completed < target && worker.isAlive()) {
+                try {
+                    wait(IDLE_POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        synchronized long pending() {
+            return accepted - completed;
+        }
+
+        @Override
+        public void run() {
+            List<Event> batch = new ArrayList<>(batchSize);
+            while (true) {
+                queue.drainTo(batch, batchSize);
+                // a fila tem os eventos anteriores aos do disco: só lê o disco com ela vazia
+                if (batch.isEmpty() && !readSpill(batch)) {
+                    if (stopping && queue.isEmpty() && !hasSpill()) {
+                        return;
+                    }
+                    try {
+                        Event next = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                        if (next == null) {
+                            continue;
+                        }
+                        batch.add(next);
+                        queue.drainTo(batch, batchSize - 1);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                deliver(batch);
+                batch.clear();
+            }
+        }
+
+        private void deliver(List<Event> batch) {
+            try {
+                sink.accept(batch);
+                delivered.addAndGet(batch.size());
+                batches.incrementAndGet();
+            } catch (RuntimeException e) {
+                failures.incrementAndGet();
+                System.err.println("Erro ao entregar notificações: " + e.getMessage());
+            }
+            synchronized (this) {
+                completed += batch.size();
+                notifyAll();
+            }
+        }
+
+        // Chamado sob a trava da partição.
+        private void discarded(int count) {
+            dropped.addAndGet(count);
+            completed += count;
+            notifyAll();
+        }
+
+        // Chamado sob a trava da partição.
+        private void spill(Event event) {
+            long validLength = spillFile.length();
+            try {
+                byte[] record = encode(event);
+                ByteArrayOutputStream frame = new ByteArrayOutputStream(record.length + 4);
+                try (DataOutputStream out = new DataOutputStream(frame)) {
+                    out.writeInt(record.length);
+                    out.write(record);
+                }
+                try (FileOutputStream out = new FileOutputStream(spillFile, true)) {
+                    out.write(frame.toByteArray());
+                }
+                spilled.incrementAndGet();
+            } catch (IOException e) {
+                failures.incrementAndGet();
+                System.err.println("Erro ao transbordar notificação para disco: " + e.getMessage());
+                // não deixa um registro pela metade na frente dos próximos
+                truncateSpill(validLength);
+                discarded(1);
+            }
+        }
+
+        private void truncateSpill(long validLength) {
+            if (spillFile.length() <= validLength) {
+                return;
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(spillFile, "rw")) {
+                raf.setLength(validLength);
+            } catch (IOException e) {
+                System.err.println("Erro ao truncar transbordo de notificações: " + e.getMessage());
+            }
+        }
+
+        private synchronized boolean hasSpill() {
+            return spilling;
+        }
+
+        // Lê até um lote do arquivo de transbordo; ao alcançar o fim, volta a usar só a fila.
+        private synchronized boolean readSpill(List<Event> batch) {
+            if (!spilling) {
+                return false;
+            }
+            try (RandomAccessFile in = new RandomAccessFile(spillFile, "r")) {
+                long length = in.length();
+                in.seek(spillReadOffset);
+                while (batch.size() < batchSize && spillReadOffset < length) {
+                    int size = recordSize(in.readInt(), length - spillReadOffset - 4);
+                    byte[] record = new byte[size];
+                    in.readFully(record);
+                    spillReadOffset += 4 + size;
+                    batch.add(decode(record));
+                }
+                if (spillReadOffset >= length) {
+                    resetSpill();
+                }
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                // registro incompleto ou ilegível: o restante do arquivo é perdido. O que
+                // não está na fila nem no lote lido agora conta como descartado, para
+                // não deixar quem espera a entrega preso.
+                failures.incrementAndGet();
+                System.err.println("Erro ao ler transbordo de notificações: " + e.getMessage());
+                resetSpill();
+                long lost = accepted - queue.size() - batch.size() - completed;
+                if (lost > 0) {
+                    discarded((int) Math.min(Integer.MAX_VALUE, lost));
+                }
+            }
+            return !batch.isEmpty();
+        }
+
+        private void resetSpill() {
+            spillFile.delete();
+            spillReadOffset = 0;
+            spilling = false;
+        }
+
+        // Eventos deixados em disco por uma execução anterior entram antes dos novos.
+        private void recoverSpill() {
+            if (spillFile == null) {
+                return;
+            }
+            File parent = spillFile.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            if (spillFile.length() == 0) {
+                return;
+            }
+            long records = 0;
+            long validLength = 0;
+            long length = spillFile.length();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile)))) {
+                while (validLength < length) {
+                    int size = recordSize(in.readInt(), length - validLength - 4);
+                    in.readFully(new byte[size]);
+                    validLength += 4 + size;
+                    records++;
+                }
+            } catch (IOException e) {
+                // registro incompleto (queda no meio da escrita) ou corrompido: o arquivo
+                // é cortado no último registro completo, antes que outros sejam acrescentados
+                System.err.println("Transbordo de notificações cortado em " + validLength + " bytes: "
+                        + e.getMessage());
+            }
+            truncateSpill(validLength);
+            if (records == 0) {
+                spillFile.delete();
+                return;
+            }
+            spilling = true;
+            accepted += records;
+            published.addAndGet(records);
+        }
+    }
+
+    private static int recordSize(int size, long remaining) throws IOException {
+        if (size <= 0 || size > MAX_SPILL_RECORD || size > remaining) {
+            throw new IOException("registro de transbordo inválido (" + size + " bytes)");
+        }
+        return size;
+    }
+
+    private static byte[] encode(Event event) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(event);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Event decode(byte[] record) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(record))) {
+            return (Event) in.readObject();
+        }
+    }
+
+    /**
+     * O que foi pedido, com os dados crus da mensagem; o texto só é montado na
+     * entrega, fora de quem publicou.
+     */
+    static final class Event implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        enum Kind {
+            RESTAURANT_NEW_ORDER, DELIVERY_ASSIGNED, CUSTOMER_UPDATE, REMOVE
+        }
+
+        final Kind kind;
+        final String recipientId;
+        final String orderId;
+        final String text;
+        final String detail;
+        final int itemCount;
+        final double total;
+
+        private Event(Kind kind, String recipientId, String orderId, String text, String detail, int itemCount,
+                double total) {
+            this.kind = kind;
+            this.recipientId = recipientId;
+            this.orderId = orderId;
+            this.text = text;
+            this.detail = detail;
+            this.itemCount = itemCount;
+            this.total = total;
+        }
+
+        static Event newOrder(String restaurantId, String orderId, int itemCount, double total) {
+            return new Event(Kind.RESTAURANT_NEW_ORDER, restaurantId, orderId, null, null, itemCount, total);
+        }
+
+        static Event deliveryAssigned(String deliveryId, String orderId, String restaurantName, String address) {
+            return new Event(Kind.DELIVERY_ASSIGNED, deliveryId, orderId, restaurantName, address, 0, 0);
+        }
+
+        static Event customerUpdate(String customerEmail, String orderId, String message) {
+            return new Event(Kind.CUSTOMER_UPDATE, customerEmail, orderId, message, null, 0, 0);
+        }
+
+        static Event remove(String recipientId, String orderId) {
+            return new Event(Kind.REMOVE, recipientId, orderId, null, null, 0, 0);
+        }
+    }
+}
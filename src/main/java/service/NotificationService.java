@@ -1,14 +1,248 @@
 package service;
 
 import model.Notification;
+import repo.NotificationRepository;
+import repo.StorageEngine;
 
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
 
+/**
+ * Notificações separadas em uma caixa por destinatário, com índice por id.
+ *
+ * Consultas de um destinatário só percorrem a caixa dele, e marcar como lida
+ * por id é O(1). Cada caixa tem a própria trava e um contador de não lidas, de
+ * modo que fluxos de pedidos diferentes podem notificar ao mesmo tempo.
+ *
+ * Os métodos {@code publish*} são os usados nos fluxos de pedido: com a entrega
+ * assíncrona ligada ({@link #startAsyncDelivery}) eles só enfileiram um evento
+ * no {@link NotificationPipeline}; sem ela, entregam na hora. As consultas de um
+ * destinatário esperam antes os eventos já publicados para ele.
+ *
+ * Retenção ({@link #setRetention}): notificações mais velhas que a idade
+ * máxima, lidas há mais que o prazo de leitura ou além do limite por
+ * destinatário (as mais antigas saem primeiro) são descartadas. As duas
+ * primeiras regras usam filas em ordem de chegada e de leitura, e a varredura
+ * ({@link #sweepExpired}) só visita o que expirou. Com um
+ * {@link NotificationRepository}, as caixas sobrevivem a reinícios.
+ */
 public class NotificationService {
+    public static final Duration DEFAULT_MAX_AGE = Duration.ofDays(3);
+    public static final int DEFAULT_MAX_PER_RECIPIENT = 200;
+    public static final Duration DEFAULT_READ_TTL = Duration.ofHours(1);
 
-    private final List<Notification> notifications = new ArrayList<>();
+    private final Map<String, Inbox> inboxes = new ConcurrentHashMap<>();
+    private final Map<String, Notification> notificationsById = new ConcurrentHashMap<>();
+    private final NotificationRepository repository;
+    private volatile NotificationPipeline pipeline;
+
+    // null ou 0 = regra desligada
+    private volatile Duration maxAge;
+    private volatile int maxPerRecipient;
+    private volatile Duration readTtl;
+    // Em ordem de chegada e de leitura, sob a trava do próprio mapa; só são
+    // alimentadas com a regra correspondente ligada. Uma notificação sai daqui
+    // junto com a caixa, então só o que está retido fica referenciado.
+    private final LinkedHashMap<String, Notification> arrivals = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Notification> reads = new LinkedHashMap<>();
+    private ScheduledExecutorService sweeper;
+    // milissegundos desde a época; dá a hora de criação, de leitura e da varredura
+    private final LongSupplier clock;
+
+    public NotificationService() {
+        this(null);
+    }
+
+    /** Carrega as notificações gravadas; com {@code repository} null, só em memória. */
+    public NotificationService(NotificationRepository repository) {
+        this(repository, System::currentTimeMillis);
+    }
+
+    /** Como o anterior, com o relógio dado (nos testes, um relógio controlado). */
+    public NotificationService(NotificationRepository repository, LongSupplier clock) {
+        this.repository = repository;
+        this.clock = clock;
+        if (repository != null) {
+            for (Notification notification : repository.findAll()) {
+                store(notification);
+            }
+        }
+    }
+
+    /**
+     * Define a retenção e a aplica ao que já está nas caixas. {@code maxAge} e
+     * {@code readTtl} null (ou zero) e {@code maxPerRecipient} <= 0 desligam a
+     * regra correspondente. Notificações expiradas saem na próxima varredura.
+     */
+    public synchronized void setRetention(Duration maxAge, int maxPerRecipient, Duration readTtl) {
+        this.maxAge = maxAge == null || maxAge.isZero() || maxAge.isNegative() ? null : maxAge;
+        this.maxPerRecipient = Math.max(0, maxPerRecipient);
+        this.readTtl = readTtl == null || readTtl.isZero() || readTtl.isNegative() ? null : readTtl;
+
+        List<Notification> read = new ArrayList<>();
+        synchronized (arrivals) {
+            arrivals.clear();
+            for (Notification notification : snapshot()) {
+                if (this.maxAge != null) {
+                    arrivals.put(notification.getId(), notification);
+                }
+                if (this.readTtl != null && notification.getReadAt() != null) {
+                    read.add(notification);
+                }
+            }
+        }
+        read.sort(Comparator.comparing(Notification::getReadAt));
+        synchronized (reads) {
+            reads.clear();
+            for (Notification notification : read) {
+                reads.put(notification.getId(), notification);
+            }
+        }
+        if (this.maxPerRecipient > 0) {
+            for (Inbox inbox : inboxes.values()) {
+                for (Notification evicted : inbox.trim(this.maxPerRecipient)) {
+                    forget(evicted);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove as notificações expiradas por idade ou por leitura e devolve
+     * quantas saíram.
+     */
+    public synchronized int sweepExpired() {
+        LocalDateTime now = now();
+        List<Notification> expired = new ArrayList<>();
+        Duration age = maxAge;
+        if (age != null) {
+            LocalDateTime cutoff = now.minus(age);
+            synchronized (arrivals) {
+                takeExpired(arrivals, n -> !n.getTimestamp().isAfter(cutoff), expired);
+            }
+        }
+        Duration ttl = readTtl;
+        if (ttl != null) {
+            LocalDateTime cutoff = now.minus(ttl);
+            synchronized (reads) {
+                takeExpired(reads, n -> !n.getReadAt().isAfter(cutoff), expired);
+            }
+        }
+        int removed = 0;
+        for (Notification notification : expired) {
+            if (expire(notification)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    // Tira do início da fila enquanto estiver expirado: só visita o que sai.
+    private static void takeExpired(LinkedHashMap<String, Notification> queue, Predicate<Notification> isExpired,
+            List<Notification> expired) {
+        Iterator<Notification> it = queue.values().iterator();
+        while (it.hasNext()) {
+            Notification head = it.next();
+            if (!isExpired.test(head)) {
+                return;
+            }
+            it.remove();
+            expired.add(head);
+        }
+    }
+
+    /** Varre as notificações expiradas a cada {@code periodMillis}, em thread própria. */
+    public synchronized void startSweeper(long periodMillis) {
+        if (sweeper != null) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "notification-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, periodMillis);
+        sweeper.scheduleAtFixedRate(() -> {
+            try {
+                sweepExpired();
+            } catch (RuntimeException e) {
+                System.err.println("Erro ao expirar notificações: " + e.getMessage());
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopSweeper() {
+        if (sweeper != null) {
+            sweeper.shutdown();
+            sweeper = null;
+        }
+    }
+
+    /**
+     * Liga a entrega assíncrona. {@code spillDir} só é usado com
+     * {@link NotificationPipeline.Backpressure#SPILL} (e para reaproveitar
+     * eventos deixados em disco por uma execução anterior).
+     */
+    public synchronized NotificationPipeline startAsyncDelivery(int partitions, int queueCapacity, int batchSize,
+            NotificationPipeline.Backpressure backpressure, File spillDir) {
+        if (pipeline == null) {
+            pipeline = new NotificationPipeline(partitions, queueCapacity, batchSize, backpressure, spillDir,
+                    this::deliverBatch);
+        }
+        return pipeline;
+    }
+
+    /** Entrega o que estiver pendente e volta à entrega síncrona. */
+    public synchronized void stopAsyncDelivery() {
+        NotificationPipeline running = pipeline;
+        if (running != null) {
+            running.stop();
+            pipeline = null;
+        }
+    }
+
+    public NotificationPipeline getPipeline() {
+        return pipeline;
+    }
+
+    public void publishNewOrder(String restaurantId, String orderId, int itemCount, double total) {
+        publish(NotificationPipeline.Event.newOrder(restaurantId, orderId, itemCount, total));
+    }
+
+    public void publishDeliveryAssigned(String deliveryId, String orderId, String restaurantName,
+            String deliveryAddress) {
+        publish(NotificationPipeline.Event.deliveryAssigned(deliveryId, orderId, restaurantName, deliveryAddress));
+    }
+
+    public void publishCustomerUpdate(String customerEmail, String orderId, String message) {
+        publish(NotificationPipeline.Event.customerUpdate(customerEmail, orderId, message));
+    }
+
+    /** Remoção enfileirada junto com as notificações, para valer depois das já publicadas. */
+    public void publishRemoval(String recipientId, String orderId) {
+        if (recipientId == null || recipientId.isBlank() || orderId == null || orderId.isBlank()) {
+            return;
+        }
+        publish(NotificationPipeline.Event.remove(recipientId, orderId));
+    }
 
     // RF22 - Notificar restaurante sobre novo pedido
     public Notification notifyRestaurant(String restaurantId, String orderId, String orderDetails) {
@@ -17,8 +251,8 @@ public class NotificationService {
                 orderId,
                 orderDetails);
 
-        Notification notification = new Notification(restaurantId, "RESTAURANT", orderId, message);
-        notifications.add(notification);
+        Notification notification = new Notification(restaurantId, "RESTAURANT", orderId, message, now());
+        deliver(notification);
         return notification;
     }
 
@@ -31,8 +265,8 @@ public class NotificationService {
                 restaurantName,
                 deliveryAddress);
 
-        Notification notification = new Notification(deliveryId, "DELIVERY", orderId, message);
-        notifications.add(notification);
+        Notification notification = new Notification(deliveryId, "DELIVERY", orderId, message, now());
+        deliver(notification);
         return notification;
     }
 
@@ -43,8 +277,8 @@ public class NotificationService {
                 orderId,
                 message);
 
-        Notification notification = new Notification(customerEmail, "CUSTOMER", orderId, fullMessage);
-        notifications.add(notification);
+        Notification notification = new Notification(customerEmail, "CUSTOMER", orderId, fullMessage, now());
+        deliver(notification);
         return notification;
     }
 
@@ -53,46 +287,354 @@ public class NotificationService {
             return;
         }
 
-        notifications.removeIf(n -> recipientId.equals(n.getRecipientId()) && orderId.equals(n.getOrderId()));
+        Inbox inbox = inboxes.get(recipientId);
+        if (inbox == null) {
+            return;
+        }
+        for (Notification removed : inbox.removeByOrder(orderId)) {
+            forget(removed);
+        }
+        retireIfEmpty(recipientId, inbox);
     }
 
     // Buscar notificações por destinatário
     public List<Notification> getNotificationsByRecipient(String recipientId) {
-        return notifications.stream()
-                .filter(n -> n.getRecipientId().equals(recipientId))
-                .collect(Collectors.toList());
+        awaitPending(recipientId);
+        Inbox inbox = inboxOf(recipientId);
+        return inbox == null ? new ArrayList<>() : inbox.all();
     }
 
     // Buscar notificações não lidas
     public List<Notification> getUnreadNotificationsByRecipient(String recipientId) {
-        return notifications.stream()
-                .filter(n -> n.getRecipientId().equals(recipientId))
-                .filter(n -> !n.isRead())
-                .collect(Collectors.toList());
+        awaitPending(recipientId);
+        Inbox inbox = inboxOf(recipientId);
+        return inbox == null ? new ArrayList<>() : inbox.unread();
+    }
+
+    /** Quantidade de notificações não lidas do destinatário, sem percorrer a caixa. */
+    public int getUnreadCount(String recipientId) {
+        awaitPending(recipientId);
+        Inbox inbox = inboxOf(recipientId);
+        return inbox == null ? 0 : inbox.unreadCount;
+    }
+
+    /** Quantidade de destinatários com caixa aberta; caixas que esvaziam são descartadas. */
+    public int getRecipientCount() {
+        return inboxes.size();
     }
 
     // Marcar notificação como lida
     public void markAsRead(String notificationId) {
-        notifications.stream()
-                .filter(n -> n.getId().equals(notificationId))
-                .findFirst()
-                .ifPresent(Notification::markAsRead);
+        Notification notification = notificationId == null ? null : notificationsById.get(notificationId);
+        if (notification != null) {
+            notification.markAsRead(now());
+        }
     }
 
     // Marcar todas as notificações de um destinatário como lidas
     public void markAllAsRead(String recipientId) {
-        notifications.stream()
-                .filter(n -> n.getRecipientId().equals(recipientId))
-                .forEach(Notification::markAsRead);
+        awaitPending(recipientId);
+        Inbox inbox = inboxOf(recipientId);
+        if (inbox == null) {
+            return;
+        }
+        // fora da trava da caixa e com todas as leituras gravadas em um único commit
+        List<Notification> unread = inbox.unread();
+        try {
+            StorageEngine.shared().batch(() -> {
+                for (Notification notification : unread) {
+                    notification.markAsRead(now());
+                }
+                return null;
+            });
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar leitura das notificações: " + e.getMessage());
+        }
     }
 
-    // Buscar todas as notificações
+    // Buscar todas as notificações, das mais antigas para as mais novas
     public List<Notification> getAllNotifications() {
-        return new ArrayList<>(notifications);
+        NotificationPipeline running = pipeline;
+        if (running != null) {
+            running.awaitAll();
+        }
+        return snapshot();
     }
 
     // Limpar notificações (útil para testes)
     public void clearNotifications() {
-        notifications.clear();
+        NotificationPipeline running = pipeline;
+        if (running != null) {
+            running.awaitAll();
+        }
+        inboxes.clear();
+        notificationsById.clear();
+        synchronized (arrivals) {
+            arrivals.clear();
+        }
+        synchronized (reads) {
+            reads.clear();
+        }
+        if (repository != null) {
+            try {
+                repository.deleteAll();
+            } catch (IOException e) {
+                System.err.println("Erro ao limpar notificações gravadas: " + e.getMessage());
+            }
+        }
+    }
+
+    private void publish(NotificationPipeline.Event event) {
+        NotificationPipeline running = pipeline;
+        if (running != null) {
+            running.publish(event);
+        } else {
+            apply(event);
+        }
+    }
+
+    // Lotes do pipeline, na thread da partição; as gravações do lote saem em um único commit.
+    private void deliverBatch(List<NotificationPipeline.Event> batch) {
+        try {
+            StorageEngine.shared().batch(() -> {
+                for (NotificationPipeline.Event event : batch) {
+                    apply(event);
+                }
+                return null;
+            });
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar notificações: " + e.getMessage());
+        }
+    }
+
+    private void apply(NotificationPipeline.Event event) {
+        switch (event.kind) {
+            case RESTAURANT_NEW_ORDER:
+                notifyRestaurant(event.recipientId, event.orderId,
+                        String.format("%d itens - Total: R$ %.2f", event.itemCount, event.total));
+                break;
+            case DELIVERY_ASSIGNED:
+                notifyDelivery(event.recipientId, event.orderId, event.text, event.detail);
+                break;
+            case CUSTOMER_UPDATE:
+                notifyCustomer(event.recipientId, event.orderId, event.text);
+                break;
+            case REMOVE:
+                removeNotificationsByRecipientAndOrder(event.recipientId, event.orderId);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void awaitPending(String recipientId) {
+        NotificationPipeline running = pipeline;
+        if (running != null) {
+            running.awaitDelivered(recipientId);
+        }
+    }
+
+    private void deliver(Notification notification) {
+        persist(notification);
+        store(notification);
+    }
+
+    private void store(Notification notification) {
+        String key = keyOf(notification.getRecipientId());
+        notificationsById.put(notification.getId(), notification);
+        notification.setReadListener(this::onRead);
+        if (maxAge != null) {
+            synchronized (arrivals) {
+                arrivals.put(notification.getId(), notification);
+            }
+        }
+        if (readTtl != null && notification.getReadAt() != null) {
+            synchronized (reads) {
+                reads.put(notification.getId(), notification);
+            }
+        }
+        List<Notification> evicted;
+        do {
+            // uma caixa que acabou de esvaziar é retirada do mapa: tenta de novo com uma nova
+            evicted = inboxes.computeIfAbsent(key, k -> new Inbox()).add(notification, maxPerRecipient);
+        } while (evicted == null);
+        for (Notification old : evicted) {
+            forget(old);
+        }
+    }
+
+    // chamado pela notificação ao passar a lida, inclusive fora do serviço
+    private void onRead(Notification notification) {
+        Inbox inbox = inboxes.get(keyOf(notification.getRecipientId()));
+        if (inbox != null) {
+            inbox.onRead(notification);
+        }
+        if (notificationsById.get(notification.getId()) == notification) {
+            if (readTtl != null) {
+                synchronized (reads) {
+                    reads.put(notification.getId(), notification);
+                }
+            }
+            persist(notification);
+        }
+    }
+
+    private boolean expire(Notification notification) {
+        String key = keyOf(notification.getRecipientId());
+        Inbox inbox = inboxes.get(key);
+        if (inbox == null || !inbox.remove(notification)) {
+            return false;
+        }
+        forget(notification);
+        retireIfEmpty(key, inbox);
+        return true;
+    }
+
+    private void retireIfEmpty(String key, Inbox inbox) {
+        if (inbox.retireIfEmpty()) {
+            inboxes.remove(key, inbox);
+        }
+    }
+
+    // A notificação já saiu da caixa: tira do índice, das filas de retenção e do arquivo.
+    private void forget(Notification notification) {
+        if (!notificationsById.remove(notification.getId(), notification)) {
+            return;
+        }
+        synchronized (arrivals) {
+            arrivals.remove(notification.getId());
+        }
+        synchronized (reads) {
+            reads.remove(notification.getId());
+        }
+        if (repository != null) {
+            try {
+                repository.delete(notification.getId());
+            } catch (IOException e) {
+                System.err.println("Erro ao remover notificação gravada: " + e.getMessage());
+            }
+        }
+    }
+
+    private void persist(Notification notification) {
+        if (repository == null) {
+            return;
+        }
+        try {
+            repository.save(notification);
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar notificação: " + e.getMessage());
+        }
+    }
+
+    // todas as notificações, das mais antigas para as mais novas
+    private List<Notification> snapshot() {
+        List<Notification> all = new ArrayList<>();
+        for (Inbox inbox : inboxes.values()) {
+            all.addAll(inbox.all());
+        }
+        all.sort(Comparator.comparing(Notification::getTimestamp));
+        return all;
+    }
+
+    private Inbox inboxOf(String recipientId) {
+        return recipientId == null ? null : inboxes.get(recipientId);
+    }
+
+    private LocalDateTime now() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(clock.getAsLong()), ZoneId.systemDefault());
+    }
+
+    // notificações sem destinatário ficam juntas (o mapa não aceita chave nula)
+    private static String keyOf(String recipientId) {
+        return recipientId == null ? "" : recipientId;
+    }
+
+    private static final class Inbox {
+        private final Map<String, Notification> byId = new LinkedHashMap<>();
+        // ids das não lidas ainda na caixa: cada uma sai daqui uma única vez,
+        // seja ao ser lida, seja ao ser removida
+        private final Set<String> unreadIds = new HashSet<>();
+        private volatile int unreadCount;
+        // vazia e já fora do mapa de caixas: não aceita mais notificações
+        private boolean retired;
+
+        /**
+         * Acrescenta e devolve as mais antigas que passaram do limite (0 = sem
+         * limite), ou null se a caixa já foi retirada.
+         */
+        synchronized List<Notification> add(Notification notification, int limit) {
+            if (retired) {
+                return null;
+            }
+            byId.put(notification.getId(), notification);
+            if (!notification.isRead()) {
+                unreadIds.add(notification.getId());
+            }
+            return trim(limit);
+        }
+
+        synchronized List<Notification> trim(int limit) {
+            List<Notification> evicted = new ArrayList<>();
+            Iterator<Notification> it = byId.values().iterator();
+            while (limit > 0 && byId.size() > limit) {
+                Notification eldest = it.next();
+                it.remove();
+                unreadIds.remove(eldest.getId());
+                evicted.add(eldest);
+            }
+            unreadCount = unreadIds.size();
+            return evicted;
+        }
+
+        synchronized boolean retireIfEmpty() {
+            if (byId.isEmpty()) {
+                retired = true;
+            }
+            return retired;
+        }
+
+        synchronized boolean remove(Notification notification) {
+            if (!byId.remove(notification.getId(), notification)) {
+                return false;
+            }
+            unreadIds.remove(notification.getId());
+            unreadCount = unreadIds.size();
+            return true;
+        }
+
+        synchronized List<Notification> removeByOrder(String orderId) {
+            List<Notification> removed = new ArrayList<>();
+            Iterator<Notification> it = byId.values().iterator();
+            while (it.hasNext()) {
+                Notification notification = it.next();
+                if (orderId.equals(notification.getOrderId())) {
+                    it.remove();
+                    unreadIds.remove(notification.getId());
+                    removed.add(notification);
+                }
+            }
+            unreadCount = unreadIds.size();
+            return removed;
+        }
+
+        synchronized List<Notification> all() {
+            return new ArrayList<>(byId.values());
+        }
+
+        synchronized List<Notification> unread() {
+            List<Notification> unread = new ArrayList<>(unreadIds.size());
+            for (Notification notification : byId.values()) {
+                if (!notification.isRead()) {
+                    unread.add(notification);
+                }
+            }
+            return unread;
+        }
+
+        synchronized void onRead(Notification notification) {
+            unreadIds.remove(notification.getId());
+            unreadCount = unreadIds.size();
+        }
     }
 }
@@ -62,10 +62,9 @@ public class OrderService {
         orderRepository.save(order);
 
         if (notificationService != null) {
-            String orderDetails = String.format("%d itens - Total: R$ %.2f",
+            notificationService.publishNewOrder(restaurant.getId(), order.getId(),
                     order.getItems().size(), order.getTotal());
-            notificationService.notifyRestaurant(restaurant.getId(), order.getId(), orderDetails);
-            notificationService.notifyCustomer(order.getCustomerEmail(), order.getId(),
+            notificationService.publishCustomerUpdate(order.getCustomerEmail(), order.getId(),
                     "Pedido recebido e aguardando confirmação do restaurante.");
         }
 
@@ -83,11 +82,11 @@ public class OrderService {
         order.confirm(); // sets CONFIRMADO
 
         if (notificationService != null) {
-            notificationService.removeNotificationsByRecipientAndOrder(order.getRestaurantId(), order.getId());
+            notificationService.publishRemoval(order.getRestaurantId(), order.getId());
         }
 
         if (notificationService != null) {
-            notificationService.notifyCustomer(
+            notificationService.publishCustomerUpdate(
                     order.getCustomerEmail(),
                     order.getId(),
                     "Seu pedido foi CONFIRMADO pelo restaurante.");
@@ -96,7 +95,7 @@ public class OrderService {
         // avançar automaticamente para preparação
         order.setStatus(OrderStatus.PREPARACAO);
         if (notificationService != null) {
-            notificationService.notifyCustomer(order.getCustomerEmail(), order.getId(), "Pedido em preparação.");
+            notificationService.publishCustomerUpdate(order.getCustomerEmail(), order.getId(), "Pedido em preparação.");
         }
 
         orderRepository.update(order);
@@ -138,10 +137,9 @@ public class OrderService {
         orderRepository.save(order);
 
         if (notificationService != null) {
-            String orderDetails = String.format("%d itens - Total: R$ %.2f",
+            notificationService.publishNewOrder(restaurant.getId(), order.getId(),
                     order.getItems().size(), order.getTotal());
-            notificationService.notifyRestaurant(restaurant.getId(), order.getId(), orderDetails);
-            notificationService.notifyCustomer(order.getCustomerEmail(), order.getId(),
+            notificationService.publishCustomerUpdate(order.getCustomerEmail(), order.getId(),
                     "Pedido agendado recebido e aguardando confirmação do restaurante.");
         }
 
@@ -162,16 +160,12 @@ public class OrderService {
 
     // Buscar pedidos agendados
     public List<Order> getScheduledOrders() {
-        return orderRepository.findAll().stream()
-                .filter(Order::isScheduled)
-                .collect(java.util.stream.Collectors.toList());
+        return orderRepository.findByType(OrderType.AGENDADO);
     }
 
     // Buscar pedidos imediatos
     public List<Order> getImmediateOrders() {
-        return orderRepository.findAll().stream()
-                .filter(Order::isImmediate)
-                .collect(java.util.stream.Collectors.toList());
+        return orderRepository.findByType(OrderType.IMEDIATO);
     }
 
     // RF24? - Listar pedidos pendentes (AGUARDANDO_CONFIRMACAO) de um restaurante
@@ -185,10 +179,7 @@ public class OrderService {
             throw new ValidationException("Restaurante não encontrado.");
         }
 
-        return orderRepository.findAll().stream()
-                .filter(o -> restaurantId.equals(o.getRestaurantId()))
-                .filter(Order::isAwaitingConfirmation)
-                .collect(java.util.stream.Collectors.toList());
+        return orderRepository.findByRestaurantAndStatus(restaurantId, OrderStatus.AGUARDANDO_CONFIRMACAO);
     }
 
     // Buscar pedido por ID
@@ -203,9 +194,9 @@ public class OrderService {
         order.reject();
 
         if (notificationService != null) {
-            notificationService.removeNotificationsByRecipientAndOrder(order.getRestaurantId(), order.getId());
+            notificationService.publishRemoval(order.getRestaurantId(), order.getId());
             // notificar restaurante também? poderia ser redundante
-            notificationService.notifyCustomer(
+            notificationService.publishCustomerUpdate(
                     order.getCustomerEmail(),
                     order.getId(),
                     "Seu pedido foi REJEITADO pelo restaurante.");
@@ -233,7 +224,7 @@ public class OrderService {
         order.setStatus(OrderStatus.PREPARACAO);
         orderRepository.update(order);
         if (notificationService != null) {
-            notificationService.notifyCustomer(order.getCustomerEmail(), order.getId(), "Pedido em preparação.");
+            notificationService.publishCustomerUpdate(order.getCustomerEmail(), order.getId(), "Pedido em preparação.");
         }
     }
 
@@ -245,7 +236,7 @@ public class OrderService {
         order.setStatus(OrderStatus.PRONTO);
         orderRepository.update(order);
         if (notificationService != null) {
-            notificationService.notifyCustomer(order.getCustomerEmail(), order.getId(), "Pedido pronto para retirada.");
+            notificationService.publishCustomerUpdate(order.getCustomerEmail(), order.getId(), "Pedido pronto para retirada.");
         }
     }
 
@@ -260,7 +251,7 @@ public class OrderService {
         order.setStatus(OrderStatus.EM_ENTREGA);
         orderRepository.update(order);
         if (notificationService != null) {
-            notificationService.notifyCustomer(order.getCustomerEmail(), order.getId(), "Pedido em entrega.");
+            notificationService.publishCustomerUpdate(order.getCustomerEmail(), order.getId(), "Pedido em entrega.");
         }
     }
 
@@ -283,8 +274,8 @@ public class OrderService {
         orderRepository.update(order);
 
         if (notificationService != null) {
-            notificationService.removeNotificationsByRecipientAndOrder(deliveryId, order.getId());
-            notificationService.notifyCustomer(order.getCustomerEmail(), order.getId(),
+            notificationService.publishRemoval(deliveryId, order.getId());
+            notificationService.publishCustomerUpdate(order.getCustomerEmail(), order.getId(),
                     "Seu pedido foi ACEITO pelo entregador e está em entrega.");
         }
     }
@@ -309,8 +300,8 @@ public class OrderService {
         orderRepository.update(order);
 
         if (notificationService != null) {
-            notificationService.removeNotificationsByRecipientAndOrder(deliveryId, order.getId());
-            notificationService.notifyCustomer(order.getCustomerEmail(), order.getId(),
+            notificationService.publishRemoval(deliveryId, order.getId());
+            notificationService.publishCustomerUpdate(order.getCustomerEmail(), order.getId(),
                     "Seu pedido foi REJEITADO pelo entregador.");
         }
     }
@@ -323,7 +314,7 @@ public class OrderService {
         order.setStatus(OrderStatus.AGUARDANDO_CONFIRMACAO_CLIENTE);
         orderRepository.update(order);
         if (notificationService != null) {
-            notificationService.notifyCustomer(order.getCustomerEmail(), order.getId(),
+            notificationService.publishCustomerUpdate(order.getCustomerEmail(), order.getId(),
                     "Pedido entregue ao destino. Confirme o recebimento para finalizar.");
         }
     }
@@ -347,7 +338,7 @@ public class OrderService {
         orderRepository.update(order);
 
         if (notificationService != null) {
-            notificationService.notifyCustomer(order.getCustomerEmail(), order.getId(),
+            notificationService.publishCustomerUpdate(order.getCustomerEmail(), order.getId(),
                     "Pedido confirmado e finalizado. Obrigado!");
         }
     }
@@ -1,6 +1,7 @@
 package service;
 
 import model.PricingInfo;
+import model.QuoteTable;
 import model.Tariff;
 import model.VehicleCategory;
 import util.DistanceCalculator;
@@ -10,14 +11,42 @@ import java.util.*;
 public class PricingService {
     
     private final Map<String, Tariff> tariffs;
-    private double dynamicFareFactor = 1.0; 
+    private volatile double dynamicFareFactor = 1.0; 
+    // Multiplicadores por zona/categoria; sem motor, só o fator global vale.
+    private volatile SurgeEngine surgeEngine;
+
+    // As mesmas tarifas em vetores paralelos, para cotar todas as categorias em
+    // uma passada só (ver quote).
+    private final String[] categoryNames;
+    private final double[] baseFares;
+    private final double[] pricesPerKm;
+    private final double[] pricesPerMinute;
+    private final double[] speedsKmH;
+    private final VehicleCategory[] categories;
     
     public PricingService() {
         this.tariffs = initializeTariffs();
+        int n = tariffs.size();
+        categoryNames = new String[n];
+        baseFares = new double[n];
+        pricesPerKm = new double[n];
+        pricesPerMinute = new double[n];
+        speedsKmH = new double[n];
+        categories = new VehicleCategory[n];
+        int i = 0;
+        for (Tariff tariff : tariffs.values()) {
+            categoryNames[i] = tariff.getCategory();
+            baseFares[i] = tariff.getBaseFare();
+            pricesPerKm[i] = tariff.getPricePerKm();
+            pricesPerMinute[i] = tariff.getPricePerMinute();
+            speedsKmH[i] = tariff.getSpeedKmH();
+            categories[i] = VehicleCategory.fromVehicleCategory(tariff.getCategory());
+            i++;
+        }
     }
     
     private Map<String, Tariff> initializeTariffs() {
-        Map<String, Tariff> tariffMap = new HashMap<>();
+        Map<String, Tariff> tariffMap = new LinkedHashMap<>();
         //  mapeia uma tarifa por categoria
         // tarifa base + preco/km + preco/min + velocidade media p calcular o tempo
         tariffMap.put("UberX", new Tariff("UberX", 2.50, 1.20, 0.30, 30.0));
@@ -35,6 +64,18 @@ public class PricingService {
         }
     }
 
+    /**
+     * Liga a tarifa dinâmica por zona. O multiplicador da zona de origem se
+     * soma (multiplica) ao fator global, que continua servindo de ajuste manual.
+     */
+    public void setSurgeEngine(SurgeEngine surgeEngine) {
+        this.surgeEngine = surgeEngine;
+    }
+
+    public SurgeEngine getSurgeEngine() {
+        return surgeEngine;
+    }
+
     public double getSpeedForCategory(String category) throws ValidationException {
         Tariff tariff = getTariffForCategory(category);
         return tariff.getSpeedKmH();
@@ -69,7 +110,8 @@ public class PricingService {
         double totalPrice = tariff.getBaseFare() + distancePrice + timePrice;
         
         // Aplica a tarifa dinâmica ao preço total
-        totalPrice = totalPrice * dynamicFareFactor;
+        totalPrice = totalPrice * dynamicFareFactor
+                * surgeMultiplier(origin, VehicleCategory.fromVehicleCategory(category));
         
         totalPrice = Math.round(totalPrice * 100.0) / 100.0;
         distancePrice = Math.round(distancePrice * 100.0) / 100.0;
@@ -81,17 +123,58 @@ public class PricingService {
     
     public List<PricingInfo> calculateAllPricing(String origin, String destination) 
             throws ValidationException {
-        
-        List<PricingInfo> pricingList = new ArrayList<>();
-        
-        for (String category : tariffs.keySet()) {
-            PricingInfo pricing = calculatePricing(origin, destination, category);
-            pricingList.add(pricing);
+        return quote(origin, destination).asList();
+    }
+
+    /**
+     * Cota todas as categorias de uma vez: valida e calcula a distância uma só
+     * vez e percorre as tarifas pelos vetores paralelos. O resultado já vem
+     * ordenado por preço total.
+     */
+    public QuoteTable quote(String origin, String destination) throws ValidationException {
+        if (origin == null || origin.trim().isEmpty()) {
+            throw new ValidationException("Endereço de origem é obrigatório.");
         }
-        
-        pricingList.sort(Comparator.comparing(PricingInfo::getTotalPrice));
-        
-        return pricingList;
+        if (destination == null || destination.trim().isEmpty()) {
+            throw new ValidationException("Endereço de destino é obrigatório.");
+        }
+
+        double distance = DistanceCalculator.calculateDistance(origin, destination);
+        double factor = dynamicFareFactor;
+        // um único snapshot por cotação: todas as categorias veem o mesmo recálculo
+        SurgeEngine engine = surgeEngine;
+        SurgeSnapshot surge = engine == null ? SurgeSnapshot.NEUTRAL : engine.getSnapshot();
+        String zone = engine == null ? null : engine.zoneFor(origin);
+        int n = categoryNames.length;
+        double[] totals = new double[n];
+        PricingInfo[] quotes = new PricingInfo[n];
+
+        for (int i = 0; i < n; i++) {
+            int timeMinutes = DistanceCalculator.calculateEstimatedTime(distance, speedsKmH[i]);
+            double distancePrice = distance * pricesPerKm[i];
+            double timePrice = timeMinutes * pricesPerMinute[i];
+            double multiplier = factor * surge.multiplier(zone, categories[i]);
+            double totalPrice = Math.round((baseFares[i] + distancePrice + timePrice) * multiplier * 100.0) / 100.0;
+
+            // inserção ordenada: são poucas categorias
+            PricingInfo info = new PricingInfo(categoryNames[i], distance, timeMinutes, baseFares[i],
+                    Math.round(distancePrice * 100.0) / 100.0, Math.round(timePrice * 100.0) / 100.0, totalPrice);
+            int pos = i;
+            while (pos > 0 && totals[pos - 1] > totalPrice) {
+                totals[pos] = totals[pos - 1];
+                quotes[pos] = quotes[pos - 1];
+                pos--;
+            }
+            totals[pos] = totalPrice;
+            quotes[pos] = info;
+        }
+
+        return new QuoteTable(origin, destination, distance, quotes);
+    }
+    
+    private double surgeMultiplier(String origin, VehicleCategory category) {
+        SurgeEngine engine = surgeEngine;
+        return engine == null ? 1.0 : engine.getSnapshot().multiplier(engine.zoneFor(origin), category);
     }
     
     public Tariff getTariffForCategory(String category) throws ValidationException {
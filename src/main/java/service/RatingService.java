@@ -5,6 +5,7 @@ import model.Passenger;
 import model.Ride;
 import model.Ride.RideStatus;
 import repo.RideRepository;
+import repo.StorageEngine;
 import repo.UserRepository;
 import util.ValidationException;
 import java.io.IOException;
@@ -13,6 +14,7 @@ public class RatingService {
 
     private final UserRepository userRepository;
     private final RideRepository rideRepository;
+    private final StorageEngine storage = StorageEngine.shared();
 
     public RatingService(UserRepository userRepository, RideRepository rideRepository) {
         this.userRepository = userRepository;
@@ -37,8 +39,11 @@ public class RatingService {
         
         ride.setPassengerHasRated(true);
 
-        userRepository.update(driver); 
-        rideRepository.update(ride);  
+        storage.batch(() -> {
+            userRepository.update(driver);
+            rideRepository.update(ride);
+            return null;
+        });
     }
 
     public void ratePassenger(Ride ride, int rating) throws ValidationException, IOException {
@@ -59,7 +64,10 @@ public class RatingService {
         
         ride.setDriverHasRated(true);
 
-        userRepository.update(passenger); 
-        rideRepository.update(ride);    
+        storage.batch(() -> {
+            userRepository.update(passenger);
+            rideRepository.update(ride);
+            return null;
+        });
     }
 }
\ No newline at end of file
@@ -1,10 +1,12 @@
 package service;
 
 import model.Location;
+import model.Page;
 import model.Restaurant;
 import repo.RestaurantRepository;
 import util.ValidationException;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class RestaurantService {
@@ -102,12 +104,29 @@ public class RestaurantService {
             throw new ValidationException("Localização do cliente é obrigatória.");
         }
 
-        return repository.findAll()
-                .stream()
-                .filter(Restaurant::isActive) // só ativos
-                .filter(Restaurant::isOpen) // só abertos
-                .filter(r -> r.getLocation()
-                        .distanceTo(clientLocation) <= radius) // dentro do raio
-                .collect(java.util.stream.Collectors.toList());
+        // índice espacial do repositório: só visita as células próximas e já
+        // devolve em ordem de distância
+        return repository.findAvailableInRadius(clientLocation, radius);
     }
-}
\ No newline at end of file
+
+    /**
+     * Versão paginada da busca RF19, em ordem crescente de distância.
+     * {@code pageNumber} começa em 0.
+     */
+    public Page<Restaurant> findAvailableRestaurants(Location clientLocation, double radius,
+            int pageNumber, int pageSize) {
+
+        if (pageNumber < 0) {
+            throw new ValidationException("Página inválida.");
+        }
+
+        if (pageSize <= 0) {
+            throw new ValidationException("Tamanho de página deve ser positivo.");
+        }
+
+        List<Restaurant> all = findAvailableRestaurants(clientLocation, radius);
+        int from = (int) Math.min(all.size(), (long) pageNumber * pageSize);
+        int to = (int) Math.min(all.size(), (long) from + pageSize);
+        return new Page<>(new ArrayList<>(all.subList(from, to)), pageNumber, pageSize, all.size());
+    }
+}
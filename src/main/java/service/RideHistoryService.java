@@ -1,5 +1,7 @@
 package service;
 
+import model.CategoryStatistics;
+import model.CursorPage;
 import model.RideHistory;
 import model.Ride;
 import model.User;
@@ -52,6 +54,23 @@ public class RideHistoryService {
         return historyRepo.findByPassengerEmail(passengerEmail);
     }
 
+    /**
+     * Página do histórico do passageiro, do mais recente ao mais antigo. Passe
+     * null como cursor na primeira página e depois o {@code nextCursor} recebido.
+     */
+    public CursorPage<RideHistory> getHistoryByPassenger(String passengerEmail, String cursor, int limit)
+            throws ValidationException {
+        if (passengerEmail == null || passengerEmail.trim().isEmpty()) {
+            throw new ValidationException("Email do passageiro é obrigatório.");
+        }
+
+        if (!userRepo.existsByEmail(passengerEmail)) {
+            throw new ValidationException("Passageiro não encontrado.");
+        }
+
+        return historyRepo.findByPassengerEmail(passengerEmail, cursor, limit);
+    }
+
     public List<RideHistory> getHistoryByDriver(String driverEmail) throws ValidationException {
         if (driverEmail == null || driverEmail.trim().isEmpty()) {
             throw new ValidationException("Email do motorista é obrigatório.");
@@ -129,6 +148,10 @@ public class RideHistoryService {
         return historyRepo.getCategoryStatistics();
     }
 
+    public List<CategoryStatistics> getCategorySummaries() {
+        return historyRepo.getCategorySummaries();
+    }
+
     public RideHistory getHistoryById(String historyId) throws ValidationException {
         if (historyId == null || historyId.trim().isEmpty()) {
             throw new ValidationException("ID do histórico é obrigatório.");
@@ -183,7 +206,7 @@ public class RideHistoryService {
     }
 
     public String formatCategoryStatistics() {
-        Map<String, Long> stats = getCategoryStatistics();
+        List<CategoryStatistics> stats = getCategorySummaries();
         if (stats.isEmpty()) {
             return "Nenhuma estatística disponível.";
         }
@@ -191,13 +214,17 @@ public class RideHistoryService {
         StringBuilder sb = new StringBuilder();
         sb.append("=== ESTATÍSTICAS POR CATEGORIA ===\n");
         
-        long total = stats.values().stream().mapToLong(Long::longValue).sum();
+        long total = stats.stream().mapToLong(CategoryStatistics::getRides).sum();
         
-        for (Map.Entry<String, Long> entry : stats.entrySet()) {
-            String category = entry.getKey();
-            Long count = entry.getValue();
-            double percentage = (count.doubleValue() / total) * 100;
-            sb.append(String.format("%s: %d corridas (%.1f%%)\n", category, count, percentage));
+        for (CategoryStatistics entry : stats) {
+            long count = entry.getRides();
+            double percentage = ((double) count / total) * 100;
+            sb.append(String.format("%s: %d corridas (%.1f%%) - Receita: R$ %.2f", entry.getCategory(), count,
+                    percentage, entry.getRevenue()));
+            if (entry.getDriverRatingCount() > 0) {
+                sb.append(String.format(" - Avaliação média: %.1f", entry.getAverageDriverRating()));
+            }
+            sb.append("\n");
         }
         
         sb.append(String.format("Total: %d corridas\n", total));
@@ -3,22 +3,31 @@ package service;
 import repo.RideRepository;
 import repo.UserRepository;
 import repo.RideHistoryRepository;
+import repo.StorageEngine;
 import model.Ride;
 import model.Driver;
 import model.Passenger;
 import model.Location;
 import model.PricingInfo;
+import model.QuoteTable;
 import model.PaymentMethod;
 import model.Receipt;
 import model.VehicleCategory;
 import util.ValidationException;
 import util.DistanceCalculator;
+import util.Geocoder;
 import service.PaymentService;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
-import java.util.Comparator;
 import java.util.Collections;
 
 public class RideService {
@@ -28,7 +37,19 @@ public class RideService {
     private final DigitalReceiptService digitalReceiptService;
     private final PaymentService paymentService;
     private RideHistoryRepository historyRepo;
+    private volatile BatchMatchingService batchMatcher;
+    private volatile Geocoder geocoder;
     private final RouteService routeService;
+    private final StorageEngine storage = StorageEngine.shared();
+
+    // Quantos motoristas o ranking guarda por corrida (o escolhido e os reservas para recusas).
+    private static final int MATCH_CANDIDATES = 5;
+    public static final long DEFAULT_RANKING_TTL_MILLIS = 10 * 60 * 1000L;
+    // Sai no aceite, na finalização, no cancelamento ou, se o motorista nunca
+    // responder, depois de rankingTtlMillis.
+    private final Map<String, Ranking> rankedCandidatesByRide = new ConcurrentHashMap<>();
+    private volatile long rankingTtlMillis = DEFAULT_RANKING_TTL_MILLIS;
+    private volatile long nextRankingPruneAt;
 
     public RideService(RideRepository rideRepo, UserRepository userRepo, PricingService pricingService) {
         this.rideRepo = rideRepo;
@@ -43,14 +64,57 @@ public class RideService {
         this.historyRepo = historyRepo;
     }
 
+    /**
+     * Ativa a atribuição em lote: novas corridas ficam em SOLICITADA e são
+     * entregues ao {@link BatchMatchingService}. Com null, volta à atribuição
+     * imediata. Recusas continuam sendo reatribuídas na hora.
+     */
+    public void setBatchMatcher(BatchMatchingService batchMatcher) {
+        this.batchMatcher = batchMatcher;
+    }
+
+    /**
+     * Por quanto tempo os reservas do ranking de uma corrida são guardados para
+     * uma recusa. Depois disso, uma recusa faz um ranking novo.
+     */
+    public void setRankingTtlMillis(long rankingTtlMillis) {
+        this.rankingTtlMillis = Math.max(0, rankingTtlMillis);
+        this.nextRankingPruneAt = 0;
+    }
+
+    /** Corridas com reservas do ranking guardados. */
+    public int getRankedRideCount() {
+        return rankedCandidatesByRide.size();
+    }
+
+    /** Com geocodificador, origem e destino das novas corridas já saem com coordenadas. */
+    public void setGeocoder(Geocoder geocoder) {
+        this.geocoder = geocoder;
+    }
+
+    private Location locationOf(String address) {
+        Geocoder current = geocoder;
+        Location located = current == null ? null : current.locate(address);
+        return located != null ? located : new Location(address);
+    }
+
     public Ride createRideRequest(String passengerEmail, String originAddr, String destAddr, String categoryName,
             PaymentMethod paymentMethod) throws ValidationException, IOException {
+        return createRideRequest(passengerEmail, originAddr, destAddr, categoryName, paymentMethod, null);
+    }
+
+    /**
+     * Solicita a corrida guardando a cotação que o passageiro escolheu; ela é
+     * reutilizada no pagamento e no recibo. Sem cotação, uma é calculada aqui.
+     */
+    public Ride createRideRequest(String passengerEmail, String originAddr, String destAddr, String categoryName,
+            PaymentMethod paymentMethod, PricingInfo quotedPricing) throws ValidationException, IOException {
         Passenger p = (Passenger) userRepo.findByEmail(passengerEmail);
         if (p == null) {
             throw new ValidationException("Passageiro não encontrado.");
         }
-        Location originLoc = new Location(originAddr);
-        Location destLoc = new Location(destAddr);
+        Location originLoc = locationOf(originAddr);
+        Location destLoc = locationOf(destAddr);
 
         Ride ride = new Ride(p.getId(), passengerEmail, originLoc, destLoc);
         ride.setPaymentMethod(paymentMethod);
@@ -58,24 +122,46 @@ public class RideService {
         if (categoryEnum == null) {
             throw new ValidationException("Categoria de veículo inválida: " + categoryName);
         }
+        // a cotação é cobrada e vai para o recibo: tem de ser da categoria pedida
+        if (quotedPricing != null
+                && resolveCategory(quotedPricing.getCategory()) != categoryEnum) {
+            throw new ValidationException("Cotação não corresponde à categoria " + categoryEnum.getDisplayName() + ".");
+        }
         ride.setVehicleCategory(categoryEnum.name());
+        ride.setQuotedPricing(quotedPricing != null ? quotedPricing : quoteFor(ride));
 
-        Driver assignedDriver = findAndAssignBestDriver(ride, Collections.emptyList());
-
-        if (assignedDriver != null) {
-            ride.setDriverId(assignedDriver.getId());
-            ride.setStatus(Ride.RideStatus.AGUARDANDO_ACEITE_MOTORISTA);
-            ride.setDriverCurrentLocation(assignedDriver.getCurrentLocation());
-            System.out.println("Motorista encontrado e atribuído: " + assignedDriver.getName());
-        } else {
-            System.out.println("Nenhum motorista disponível. A corrida ficará solicitada.");
+        SurgeEngine surge = pricingService.getSurgeEngine();
+        if (surge != null) {
+            surge.recordRideRequest(originLoc, categoryEnum);
         }
 
-        // generate initial route / eta (may be partial if driver not yet defined)
-        routeService.generateRoute(ride);
+        BatchMatchingService matcher = batchMatcher;
+        if (matcher != null) {
+            routeService.generateRoute(ride);
+            rideRepo.add(ride);
+            matcher.submit(ride);
+            return ride;
+        }
+
+        // motorista e corrida são gravados no mesmo commit
+        return storage.batch(() -> {
+            Driver assignedDriver = findAndAssignBestDriver(ride, Collections.emptyList());
+
+            if (assignedDriver != null) {
+                ride.setDriverId(assignedDriver.getId());
+                ride.setStatus(Ride.RideStatus.AGUARDANDO_ACEITE_MOTORISTA);
+                ride.setDriverCurrentLocation(assignedDriver.getCurrentLocation());
+                System.out.println("Motorista encontrado e atribuído: " + assignedDriver.getName());
+            } else {
+                System.out.println("Nenhum motorista disponível. A corrida ficará solicitada.");
+            }
 
-        rideRepo.add(ride);
-        return ride;
+            // generate initial route / eta (may be partial if driver not yet defined)
+            routeService.generateRoute(ride);
+
+            rideRepo.add(ride);
+            return ride;
+        });
     }
 
     private Driver findAndAssignBestDriver(Ride ride, List<String> excludedDriverIds) {
@@ -87,47 +173,163 @@ public class RideService {
             return null;
         }
 
-        final boolean isPremium = categoryEnum.isPremium();
-        final Location rideOrigin = ride.getOrigin();
+        Driver bestDriver = reserveFromRanking(ride.getId(), categoryEnum, excludedDriverIds);
+        if (bestDriver == null) {
+            bestDriver = reserveBestCandidate(ride, categoryEnum, excludedDriverIds);
+        }
+        if (bestDriver == null) {
+            return null;
+        }
+        try {
+            userRepo.update(bestDriver);
+        } catch (IOException e) {
+            System.err.println("Erro ao atualizar status do motorista: " + e.getMessage());
+        }
 
-        List<Driver> availableDrivers = userRepo.findAll().stream()
-                .filter(u -> u instanceof Driver)
-                .map(u -> (Driver) u)
-                .filter(Driver::isAvailable)
-                .filter(d -> excludedDriverIds == null || !excludedDriverIds.contains(d.getId()))
-                .filter(d -> d.getVehicle() != null && d.getVehicle().getCategory() != null
-                        && (d.getVehicle().getCategory().equals(categoryEnum.name()) ||
-                                d.getVehicle().getCategory().equalsIgnoreCase(categoryEnum.getDisplayName())))
-                .collect(Collectors.toList());
+        return bestDriver;
+    }
 
-        if (availableDrivers.isEmpty()) {
+    /*
+     * Tenta os candidatos que sobraram do ranking feito na atribuição anterior da
+     * corrida (caso de recusa). Disponibilidade e categoria são conferidas de novo
+     * na reserva; a distância usada é a do momento do ranking.
+     */
+    private Driver reserveFromRanking(String rideId, VehicleCategory category, List<String> excludedDriverIds) {
+        Ranking ranking = rankedCandidatesByRide.get(rideId);
+        if (ranking == null) {
             return null;
         }
+        if (ranking.expiresAt <= System.currentTimeMillis()) {
+            rankedCandidatesByRide.remove(rideId, ranking);
+            return null;
+        }
+        Deque<Driver> remaining = ranking.drivers;
+        synchronized (remaining) {
+            Driver candidate;
+            while ((candidate = remaining.pollFirst()) != null) {
+                if (isEligible(candidate, category, excludedDriverIds) && userRepo.tryReserveDriver(candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        rankedCandidatesByRide.remove(rideId, ranking);
+        return null;
+    }
+
+    /*
+     * Seleciona os MATCH_CANDIDATES melhores motoristas com um heap limitado, sem
+     * ordenar todos, e reserva o primeiro que ainda estiver livre. Os seguintes
+     * ficam guardados para uma eventual recusa. Se todos os selecionados forem
+     * reservados por outras solicitações no meio do caminho, seleciona de novo
+     * sem eles.
+     */
+    private Driver reserveBestCandidate(Ride ride, VehicleCategory category, List<String> excludedDriverIds) {
+        List<String> skipped = excludedDriverIds == null ? new ArrayList<>() : new ArrayList<>(excludedDriverIds);
+        while (true) {
+            List<Driver> ranked = rankCandidates(category, ride.getOrigin(), skipped);
+            for (int i = 0; i < ranked.size(); i++) {
+                Driver candidate = ranked.get(i);
+                if (userRepo.tryReserveDriver(candidate)) {
+                    rememberRanking(ride.getId(), ranked.subList(i + 1, ranked.size()));
+                    return candidate;
+                }
+                skipped.add(candidate.getId());
+            }
+            if (ranked.size() < MATCH_CANDIDATES) {
+                return null;
+            }
+        }
+    }
 
-        Comparator<Driver> comparator;
+    private List<Driver> rankCandidates(VehicleCategory category, Location origin, List<String> excludedDriverIds) {
+        final boolean isPremium = category.isPremium();
+        String originAddress = origin.getAddress();
 
+        // cabeça do heap = pior candidato entre os guardados
+        PriorityQueue<Candidate> worstFirst = new PriorityQueue<>(MATCH_CANDIDATES + 1,
+                (a, b) -> compareCandidates(b, a, isPremium));
+        for (Driver d : userRepo.findAvailableDrivers(category)) {
+            if (!isEligible(d, category, excludedDriverIds)) {
+                continue;
+            }
+            Location location = d.getCurrentLocation();
+            double distance = location == null ? Double.MAX_VALUE
+                    : DistanceCalculator.calculateDistance(location.getAddress(), originAddress);
+            Candidate candidate = new Candidate(d, isPremium ? d.getAverageRating() : 0.0, distance);
+            if (worstFirst.size() < MATCH_CANDIDATES) {
+                worstFirst.add(candidate);
+            } else if (compareCandidates(candidate, worstFirst.peek(), isPremium) < 0) {
+                worstFirst.poll();
+                worstFirst.add(candidate);
+            }
+        }
+
+        Driver[] ranked = new Driver[worstFirst.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = worstFirst.poll().driver;
+        }
+        return Arrays.asList(ranked);
+    }
+
+    // Premium: maior avaliação primeiro, distância desempata. Demais: menor distância.
+    private static int compareCandidates(Candidate a, Candidate b, boolean isPremium) {
         if (isPremium) {
-            comparator = Comparator
-                    .comparing(Driver::getAverageRating, Comparator.reverseOrder())
-                    .thenComparing(d -> DistanceCalculator.calculateDistance(d.getCurrentLocation().getAddress(),
-                            rideOrigin.getAddress()));
+            int byRating = Double.compare(b.rating, a.rating);
+            if (byRating != 0) {
+                return byRating;
+            }
+        }
+        return Double.compare(a.distance, b.distance);
+    }
+
+    // A checagem de categoria cobre alterações no veículo feitas sem userRepo.update.
+    private static boolean isEligible(Driver d, VehicleCategory category, List<String> excludedDriverIds) {
+        return d.isAvailable()
+                && (excludedDriverIds == null || !excludedDriverIds.contains(d.getId()))
+                && d.getVehicle() != null
+                && VehicleCategory.fromVehicleCategory(d.getVehicle().getCategory()) == category;
+    }
+
+    private void rememberRanking(String rideId, List<Driver> remaining) {
+        long now = System.currentTimeMillis();
+        pruneExpiredRankings(now);
+        if (remaining.isEmpty()) {
+            rankedCandidatesByRide.remove(rideId);
         } else {
-            comparator = Comparator
-                    .comparingDouble(d -> DistanceCalculator.calculateDistance(d.getCurrentLocation().getAddress(),
-                            rideOrigin.getAddress()));
+            rankedCandidatesByRide.put(rideId, new Ranking(new ArrayDeque<>(remaining), now + rankingTtlMillis));
         }
+    }
 
-        availableDrivers.sort(comparator);
+    // Corridas que o motorista ignorou não chegam a um estado final: saem por tempo.
+    // A varredura roda no máximo uma vez a cada meio TTL.
+    private void pruneExpiredRankings(long now) {
+        if (now < nextRankingPruneAt) {
+            return;
+        }
+        nextRankingPruneAt = now + rankingTtlMillis / 2;
+        rankedCandidatesByRide.values().removeIf(ranking -> ranking.expiresAt <= now);
+    }
 
-        Driver bestDriver = availableDrivers.get(0);
-        bestDriver.setAvailable(false);
-        try {
-            userRepo.update(bestDriver);
-        } catch (IOException e) {
-            System.err.println("Erro ao atualizar status do motorista: " + e.getMessage());
+    private static final class Ranking {
+        private final Deque<Driver> drivers;
+        private final long expiresAt;
+
+        private Ranking(Deque<Driver> drivers, long expiresAt) {
+            this.drivers = drivers;
+            this.expiresAt = expiresAt;
         }
+    }
 
-        return bestDriver;
+    private static final class Candidate {
+        private final Driver driver;
+        private final double rating;
+        private final double distance;
+
+        private Candidate(Driver driver, double rating, double distance) {
+            this.driver = driver;
+            this.rating = rating;
+            this.distance = distance;
+        }
     }
 
     public List<Ride> getRidesByPassenger(String passengerEmail) throws ValidationException {
@@ -190,6 +392,7 @@ public class RideService {
 
         ride.setStatus(Ride.RideStatus.ACEITA);
         ride.setDriverCurrentLocation(driver.getCurrentLocation());
+        rankedCandidatesByRide.remove(rideId);
 
         // recalc route now that driver location is known
         routeService.generateRoute(ride);
@@ -212,6 +415,18 @@ public class RideService {
             throw new ValidationException("Esta corrida não está atribuída a você.");
         }
 
+        try {
+            storage.batch(() -> {
+                reassignAfterRefusal(ride, driver, driverEmail);
+                return null;
+            });
+        } catch (IOException e) {
+            throw new ValidationException("Erro ao atualizar a corrida após recusa.");
+        }
+    }
+
+    private void reassignAfterRefusal(Ride ride, Driver driver, String driverEmail) throws ValidationException {
+        String rideId = ride.getId();
         ride.addRefusedDriverId(driver.getId());
         driver.setAvailable(true);
         try {
@@ -236,6 +451,7 @@ public class RideService {
             return;
         }
 
+        rankedCandidatesByRide.remove(rideId);
         ride.setDriverId(null);
         ride.setDriverCurrentLocation(null);
         ride.setStatus(Ride.RideStatus.CANCELADA);
@@ -270,20 +486,8 @@ public class RideService {
             throw new ValidationException("Corrida deve estar aceita para processar pagamento.");
         }
 
-        // Calcular preço da corrida
-        List<PricingInfo> pricingList = pricingService.calculateAllPricing(ride.getOrigin().getAddress(),
-                ride.getDestination().getAddress());
-        PricingInfo ridePricing = null;
-        for (PricingInfo p : pricingList) {
-            if (p.getCategory().equalsIgnoreCase(ride.getVehicleCategory())) {
-                ridePricing = p;
-                break;
-            }
-        }
-
-        if (ridePricing == null && !pricingList.isEmpty()) {
-            ridePricing = pricingList.get(0);
-        } else if (ridePricing == null) {
+        PricingInfo ridePricing = pricingFor(ride);
+        if (ridePricing == null) {
             throw new ValidationException("Não foi possível calcular o preço da corrida.");
         }
 
@@ -305,30 +509,28 @@ public class RideService {
             throw new ValidationException("Corrida não encontrada.");
         }
 
+        // motorista, corrida e histórico são gravados no mesmo commit
+        storage.batch(() -> {
+            finishRideAndEmitReceipt(ride, paymentMethod);
+            return null;
+        });
+    }
+
+    private void finishRideAndEmitReceipt(Ride ride, String paymentMethod) throws IOException, ValidationException {
         Driver driver = (Driver) userRepo.findById(ride.getDriverId());
         if (driver != null) {
             driver.setAvailable(true);
             userRepo.update(driver);
         }
 
+        rankedCandidatesByRide.remove(ride.getId());
         ride.setStatus(Ride.RideStatus.FINALIZADA);
         rideRepo.update(ride);
 
         Passenger passenger = (Passenger) userRepo.findById(ride.getPassengerId());
 
-        List<PricingInfo> pricingList = pricingService.calculateAllPricing(ride.getOrigin().getAddress(),
-                ride.getDestination().getAddress());
-        PricingInfo ridePricing = null;
-        for (PricingInfo p : pricingList) {
-            if (p.getCategory().equalsIgnoreCase(ride.getVehicleCategory())) {
-                ridePricing = p;
-                break;
-            }
-        }
-
-        if (ridePricing == null && !pricingList.isEmpty()) {
-            ridePricing = pricingList.get(0);
-        } else if (ridePricing == null) {
+        PricingInfo ridePricing = pricingFor(ride);
+        if (ridePricing == null) {
             throw new ValidationException("Não foi possível calcular o preço para o recibo.");
         }
 
@@ -349,6 +551,30 @@ public class RideService {
         }
     }
 
+    /*
+     * Preço da corrida: a cotação guardada na solicitação ou, para corridas
+     * antigas sem cotação, a da categoria (ou a mais barata) calculada agora.
+     */
+    private PricingInfo pricingFor(Ride ride) throws ValidationException {
+        if (ride.getQuotedPricing() != null) {
+            return ride.getQuotedPricing();
+        }
+        QuoteTable table = pricingService.quote(ride.getOrigin().getAddress(), ride.getDestination().getAddress());
+        PricingInfo pricing = table.forCategory(ride.getVehicleCategory());
+        return pricing != null ? pricing : table.cheapest();
+    }
+
+    // Cotação no momento da solicitação; endereços inválidos deixam a corrida sem
+    // cotação e o preço é calculado no pagamento, como antes.
+    private PricingInfo quoteFor(Ride ride) {
+        try {
+            return pricingService.quote(ride.getOrigin().getAddress(), ride.getDestination().getAddress())
+                    .forCategory(ride.getVehicleCategory());
+        } catch (ValidationException e) {
+            return null;
+        }
+    }
+
     private VehicleCategory resolveCategory(String input) {
         if (input == null)
             return null;
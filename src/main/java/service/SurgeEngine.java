@@ -0,0 +1,357 @@
+package service;
+
+import model.Driver;
+import model.Location;
+import model.VehicleCategory;
+import repo.UserRepository;
+import util.Geocoder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Tarifa dinâmica por zona.
+ *
+ * Mantém, por zona e categoria, janelas deslizantes com a quantidade de
+ * solicitações de corrida e com amostras de motoristas disponíveis. Em um
+ * agendamento próprio, compara demanda e oferta de cada zona e publica um
+ * {@link SurgeSnapshot} novo em uma referência volátil. O preço lê o snapshot
+ * atual sem travas, então o recálculo não afeta a latência da cotação.
+ *
+ * Zona: com coordenadas, uma célula de grade de {@value #GRID_DEGREES} graus;
+ * sem coordenadas (caso dos endereços digitados), um de {@value #ADDRESS_ZONES}
+ * grupos derivados do texto do endereço, como a distância simulada. Só as
+ * células de grade entram em alta: num grupo de endereços, passageiros e
+ * motoristas quase nunca coincidem, então a oferta medida lá seria sempre zero.
+ * Nesses grupos o multiplicador é sempre 1.0.
+ *
+ * Zonas cujas janelas ficaram vazias são descartadas a cada recálculo.
+ */
+public class SurgeEngine {
+    static final double GRID_DEGREES = 0.01;
+    static final int ADDRESS_ZONES = 64;
+    private static final String GRID_PREFIX = "g:";
+
+    public static final long DEFAULT_BUCKET_MILLIS = 30_000;
+    public static final int DEFAULT_BUCKETS = 10;
+
+    // Com menos solicitações que isso na janela, a zona não entra em alta.
+    private static final int MIN_DEMAND = 3;
+    // Quanto o multiplicador sobe por unidade de demanda acima da oferta.
+    private static final double SENSITIVITY = 0.5;
+    private static final double MAX_MULTIPLIER = 3.0;
+
+    private static final int CATEGORIES = VehicleCategory.values().length;
+
+    private final UserRepository userRepo;
+    private final long bucketMillis;
+    private final int buckets;
+    private final LongSupplier clock;
+
+    private final Map<String, SlidingWindow[]> demand = new ConcurrentHashMap<>();
+    private final Map<String, SlidingWindow[]> supply = new ConcurrentHashMap<>();
+
+    private volatile Geocoder geocoder;
+    private volatile SurgeSnapshot snapshot = SurgeSnapshot.NEUTRAL;
+    private ScheduledExecutorService scheduler;
+
+    public SurgeEngine(UserRepository userRepo) {
+        this(userRepo, DEFAULT_BUCKET_MILLIS, DEFAULT_BUCKETS, System::currentTimeMillis);
+    }
+
+    public SurgeEngine(UserRepository userRepo, long bucketMillis, int buckets, LongSupplier clock) {
+        this.userRepo = userRepo;
+        this.bucketMillis = Math.max(1, bucketMillis);
+        this.buckets = Math.max(1, buckets);
+        this.clock = clock;
+    }
+
+    // --- zonas ---
+
+    public static String zoneOf(Location location) {
+        if (location == null) {
+            return null;
+        }
+        if (location.hasCoordinates()) {
+            long row = (long) Math.floor(location.getLatitude() / GRID_DEGREES);
+            long col = (long) Math.floor(location.getLongitude() / GRID_DEGREES);
+            return GRID_PREFIX + row + ":" + col;
+        }
+        return zoneOf(location.getAddress());
+    }
+
+    public static String zoneOf(String address) {
+        if (address == null || address.trim().isEmpty()) {
+            return null;
+        }
+        int group = Math.floorMod(address.trim().toLowerCase(Locale.ROOT).hashCode(), ADDRESS_ZONES);
+        return "a:" + group;
+    }
+
+    /**
+     * Com geocodificador, endereços conhecidos caem na célula de grade das suas
+     * coordenadas, a mesma das localizações que já vêm com coordenadas.
+     */
+    public void setGeocoder(Geocoder geocoder) {
+        this.geocoder = geocoder;
+    }
+
+    /** Zona de um endereço digitado, geocodificando-o quando possível. */
+    public String zoneFor(String address) {
+        Geocoder current = geocoder;
+        if (current != null && address != null) {
+            Location located = current.locate(address);
+            if (located != null) {
+                return zoneOf(located);
+            }
+        }
+        return zoneOf(address);
+    }
+
+    private String zoneFor(Location location) {
+        Geocoder current = geocoder;
+        return zoneOf(current == null ? location : current.withCoordinates(location));
+    }
+
+    // --- registro de eventos ---
+
+    /** Conta uma solicitação de corrida na zona da origem (só zonas de grade). */
+    public void recordRideRequest(Location origin, VehicleCategory category) {
+        String zone = zoneFor(origin);
+        if (!isGridZone(zone) || category == null) {
+            return;
+        }
+        long now = clock.getAsLong();
+        // compute: não se perde para o descarte de zonas vazias do recálculo
+        demand.compute(zone, (z, windows) -> {
+            SlidingWindow[] current = windows != null ? windows : newWindows();
+            current[category.ordinal()].add(now, 1);
+            return current;
+        });
+    }
+
+    private static boolean isGridZone(String zone) {
+        return zone != null && zone.startsWith(GRID_PREFIX);
+    }
+
+    /**
+     * Amostra os motoristas disponíveis por zona e categoria. Chamado a cada
+     * recálculo; a oferta usada é a média das amostras da janela.
+     */
+    void sampleSupply() {
+        long now = clock.getAsLong();
+        Map<String, int[]> counts = new HashMap<>();
+        for (VehicleCategory category : VehicleCategory.values()) {
+            for (Driver d : userRepo.findAvailableDrivers(category)) {
+                String zone = zoneFor(d.getCurrentLocation());
+                if (isGridZone(zone)) {
+                    counts.computeIfAbsent(zone, z -> new int[CATEGORIES])[category.ordinal()]++;
+                }
+            }
+        }
+        for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+            SlidingWindow[] windows = windowsFor(supply, entry.getKey());
+            for (int c = 0; c < CATEGORIES; c++) {
+                windows[c].sample(now, entry.getValue()[c]);
+            }
+        }
+        // zonas que ficaram sem motoristas também precisam de amostra (zero)
+        for (Map.Entry<String, SlidingWindow[]> entry : supply.entrySet()) {
+            if (!counts.containsKey(entry.getKey())) {
+                for (SlidingWindow window : entry.getValue()) {
+                    window.sample(now, 0);
+                }
+            }
+        }
+    }
+
+    // --- recálculo ---
+
+    /** Amostra a oferta, recalcula os multiplicadores e publica o snapshot. */
+    public SurgeSnapshot recompute() {
+        sampleSupply();
+        long now = clock.getAsLong();
+        Map<String, double[]> multipliers = new HashMap<>();
+
+        for (Map.Entry<String, SlidingWindow[]> entry : demand.entrySet()) {
+            String zone = entry.getKey();
+            SlidingWindow[] zoneSupply = supply.get(zone);
+            double[] perCategory = null;
+            for (int c = 0; c < CATEGORIES; c++) {
+                long requests = entry.getValue()[c].sum(now);
+                double drivers = zoneSupply == null ? 0.0 : zoneSupply[c].average(now);
+                double multiplier = multiplierFor(requests, drivers);
+                if (multiplier > 1.0) {
+                    if (perCategory == null) {
+                        perCategory = new double[CATEGORIES];
+                        Arrays.fill(perCategory, 1.0);
+                    }
+                    perCategory[c] = multiplier;
+                }
+            }
+            if (perCategory != null) {
+                multipliers.put(zone, perCategory);
+            }
+        }
+
+        SurgeSnapshot next = new SurgeSnapshot(multipliers, now);
+        snapshot = next;
+        pruneIdleZones(now);
+        return next;
+    }
+
+    /** Zonas com janelas de demanda ou oferta em memória. */
+    public int getTrackedZoneCount() {
+        Set<String> zones = new HashSet<>(demand.keySet());
+        zones.addAll(supply.keySet());
+        return zones.size();
+    }
+
+    // Sem solicitações na janela ou só com amostras de oferta zero: nada a guardar.
+    private void pruneIdleZones(long now) {
+        for (String zone : demand.keySet()) {
+            demand.computeIfPresent(zone, (z, windows) -> isIdle(windows, now) ? null : windows);
+        }
+        for (String zone : supply.keySet()) {
+            supply.computeIfPresent(zone, (z, windows) -> isIdle(windows, now) ? null : windows);
+        }
+    }
+
+    private static boolean isIdle(SlidingWindow[] windows, long now) {
+        for (SlidingWindow window : windows) {
+            if (window.sum(now) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static double multiplierFor(long requests, double drivers) {
+        if (requests < MIN_DEMAND) {
+            return 1.0;
+        }
+        double ratio = requests / Math.max(drivers, 1.0);
+        if (ratio <= 1.0) {
+            return 1.0;
+        }
+        double multiplier = Math.min(MAX_MULTIPLIER, 1.0 + (ratio - 1.0) * SENSITIVITY);
+        return Math.round(multiplier * 10.0) / 10.0;
+    }
+
+    /** Snapshot publicado mais recentemente (leitura sem trava). */
+    public SurgeSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public synchronized void start(long periodMillis) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "surge-engine");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, periodMillis);
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                recompute();
+            } catch (RuntimeException e) {
+                System.err.println("Erro ao recalcular tarifa dinâmica: " + e.getMessage());
+            }
+        }, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    private SlidingWindow[] windowsFor(Map<String, SlidingWindow[]> byZone, String zone) {
+        return byZone.computeIfAbsent(zone, z -> newWindows());
+    }
+
+    private SlidingWindow[] newWindows() {
+        SlidingWindow[] windows = new SlidingWindow[CATEGORIES];
+        for (int c = 0; c < CATEGORIES; c++) {
+            windows[c] = new SlidingWindow(bucketMillis, buckets);
+        }
+        return windows;
+    }
+
+    /*
+     * Janela deslizante em buckets de tempo fixo (anel). Cada bucket guarda a
+     * soma e a quantidade de amostras do seu intervalo; buckets mais velhos que a
+     * janela são zerados quando o anel volta a eles.
+     */
+    private static final class SlidingWindow {
+        private final long bucketMillis;
+        private final long[] sums;
+        private final int[] samples;
+        private final long[] bucketIds;
+
+        private SlidingWindow(long bucketMillis, int buckets) {
+            this.bucketMillis = bucketMillis;
+            this.sums = new long[buckets];
+            this.samples = new int[buckets];
+            this.bucketIds = new long[buckets];
+            Arrays.fill(bucketIds, -1L);
+        }
+
+        synchronized void add(long now, long amount) {
+            int slot = slotFor(now);
+            sums[slot] += amount;
+            samples[slot]++;
+        }
+
+        synchronized void sample(long now, long value) {
+            add(now, value);
+        }
+
+        synchronized long sum(long now) {
+            long oldest = now / bucketMillis - sums.length + 1;
+            long total = 0;
+            for (int i = 0; i < sums.length; i++) {
+                if (bucketIds[i] >= oldest) {
+                    total += sums[i];
+                }
+            }
+            return total;
+        }
+
+        synchronized double average(long now) {
+            long oldest = now / bucketMillis - sums.length + 1;
+            long total = 0;
+            long count = 0;
+            for (int i = 0; i < sums.length; i++) {
+                if (bucketIds[i] >= oldest) {
+                    total += sums[i];
+                    count += samples[i];
+                }
+            }
+            return count == 0 ? 0.0 : (double) total / count;
+        }
+
+        private int slotFor(long now) {
+            long bucketId = now / bucketMillis;
+            int slot = (int) Math.floorMod(bucketId, (long) sums.length);
+            if (bucketIds[slot] != bucketId) {
+                bucketIds[slot] = bucketId;
+                sums[slot] = 0;
+                samples[slot] = 0;
+            }
+            return slot;
+        }
+    }
+}
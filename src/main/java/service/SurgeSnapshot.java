@@ -0,0 +1,46 @@
+package service;
+
+import model.VehicleCategory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Multiplicadores de tarifa dinâmica por zona e categoria, calculados em um
+ * instante. Imutável: o {@link SurgeEngine} publica uma instância nova a cada
+ * recálculo e o cálculo de preço só lê, sem travas.
+ */
+public final class SurgeSnapshot {
+    public static final SurgeSnapshot NEUTRAL = new SurgeSnapshot(Collections.emptyMap(), 0L);
+
+    private final Map<String, double[]> multipliersByZone;
+    private final long computedAtMillis;
+
+    SurgeSnapshot(Map<String, double[]> multipliersByZone, long computedAtMillis) {
+        Map<String, double[]> copy = new HashMap<>(Math.max(16, multipliersByZone.size() * 4 / 3 + 1));
+        for (Map.Entry<String, double[]> entry : multipliersByZone.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().clone());
+        }
+        this.multipliersByZone = copy;
+        this.computedAtMillis = computedAtMillis;
+    }
+
+    /** Multiplicador da zona/categoria; 1.0 quando não há alta de demanda registrada. */
+    public double multiplier(String zone, VehicleCategory category) {
+        if (zone == null || category == null) {
+            return 1.0;
+        }
+        double[] perCategory = multipliersByZone.get(zone);
+        return perCategory == null ? 1.0 : perCategory[category.ordinal()];
+    }
+
+    /** Quantidade de zonas com multiplicador acima de 1. */
+    public int getSurgingZoneCount() {
+        return multipliersByZone.size();
+    }
+
+    public long getComputedAtMillis() {
+        return computedAtMillis;
+    }
+}
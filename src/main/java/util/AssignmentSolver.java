@@ -0,0 +1,147 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Atribuição de custo mínimo entre linhas (ex.: corridas) e colunas (ex.:
+ * motoristas) pelo algoritmo de leilão de Bertsekas, sobre um grafo esparso.
+ *
+ * Cada linha lista só as colunas candidatas e o custo de cada uma. Toda linha
+ * tem ainda a opção de ficar sem atribuição, com custo {@code unassignedCost};
+ * ela nunca é disputada, o que garante o término mesmo quando há mais linhas
+ * do que colunas ou candidatos em comum.
+ *
+ * O resultado fica a no máximo {@code min(linhas, colunas) * epsilon} do custo
+ * ótimo; com custos múltiplos de uma resolução r e epsilon menor que
+ * r / min(linhas, colunas), a atribuição é ótima. O lado menor é quem dá os
+ * lances, o que evita longas disputas de preço quando sobram linhas.
+ */
+public final class AssignmentSolver {
+    public static final int UNASSIGNED = -1;
+
+    private AssignmentSolver() {
+    }
+
+    /**
+     * @param candidates     {@code candidates[i]}: colunas permitidas para a linha i
+     * @param costs          {@code costs[i][k]}: custo de atribuir i a {@code candidates[i][k]}
+     * @param columns        quantidade de colunas
+     * @param unassignedCost custo de deixar uma linha sem atribuição
+     * @param epsilon        incremento mínimo de preço por lance (maior que zero)
+     * @return para cada linha, a coluna atribuída ou {@link #UNASSIGNED}
+     */
+    public static int[] solve(int[][] candidates, double[][] costs, int columns,
+            double unassignedCost, double epsilon) {
+        if (epsilon <= 0) {
+            throw new IllegalArgumentException("epsilon deve ser positivo.");
+        }
+        int rows = candidates.length;
+        if (rows > columns) {
+            return solveTransposed(candidates, costs, columns, unassignedCost, epsilon);
+        }
+        int[] assignment = new int[rows];
+        Arrays.fill(assignment, UNASSIGNED);
+        if (rows == 0) {
+            return assignment;
+        }
+        int[] owner = new int[columns];
+        double[] price = new double[columns];
+        int[] queue = new int[rows];
+
+        auction(candidates, costs, unassignedCost, epsilon, assignment, owner, price, queue);
+        return assignment;
+    }
+
+    /*
+     * Com mais linhas que colunas, as linhas excedentes só desistiriam depois de
+     * uma longa disputa de preços. Invertendo os papéis, quem dá lances é o lado
+     * menor e as linhas que sobram simplesmente não recebem lance.
+     */
+    private static int[] solveTransposed(int[][] candidates, double[][] costs, int columns,
+            double unassignedCost, double epsilon) {
+        int rows = candidates.length;
+        int[] degree = new int[columns];
+        for (int[] cols : candidates) {
+            for (int c : cols) {
+                degree[c]++;
+            }
+        }
+        int[][] byColumn = new int[columns][];
+        double[][] costByColumn = new double[columns][];
+        for (int c = 0; c < columns; c++) {
+            byColumn[c] = new int[degree[c]];
+            costByColumn[c] = new double[degree[c]];
+        }
+        int[] filled = new int[columns];
+        for (int i = 0; i < rows; i++) {
+            for (int k = 0; k < candidates[i].length; k++) {
+                int c = candidates[i][k];
+                byColumn[c][filled[c]] = i;
+                costByColumn[c][filled[c]] = costs[i][k];
+                filled[c]++;
+            }
+        }
+
+        int[] columnAssignment = solve(byColumn, costByColumn, rows, unassignedCost, epsilon);
+        int[] assignment = new int[rows];
+        Arrays.fill(assignment, UNASSIGNED);
+        for (int c = 0; c < columns; c++) {
+            if (columnAssignment[c] != UNASSIGNED) {
+                assignment[columnAssignment[c]] = c;
+            }
+        }
+        return assignment;
+    }
+
+    private static void auction(int[][] candidates, double[][] costs, double unassignedCost, double epsilon,
+            int[] assignment, int[] owner, double[] price, int[] queue) {
+        int rows = candidates.length;
+        Arrays.fill(assignment, UNASSIGNED);
+        Arrays.fill(owner, UNASSIGNED);
+
+        // fila circular de linhas sem coluna; cada linha aparece no máximo uma vez
+        int head = 0;
+        int size = 0;
+        for (int i = 0; i < rows; i++) {
+            if (candidates[i].length > 0) {
+                queue[size++] = i;
+            }
+        }
+
+        double dummyValue = -unassignedCost;
+        while (size > 0) {
+            int row = queue[head];
+            head = (head + 1) % rows;
+            size--;
+
+            int[] cols = candidates[row];
+            double[] rowCosts = costs[row];
+            double best = dummyValue;
+            double second = dummyValue;
+            int bestCol = UNASSIGNED;
+            for (int k = 0; k < cols.length; k++) {
+                double value = -rowCosts[k] - price[cols[k]];
+                if (value > best) {
+                    second = best;
+                    best = value;
+                    bestCol = cols[k];
+                } else if (value > second) {
+                    second = value;
+                }
+            }
+            if (bestCol == UNASSIGNED) {
+                continue; // ficar sem atribuição é a melhor opção para esta linha
+            }
+
+            price[bestCol] += best - second + epsilon;
+            int previous = owner[bestCol];
+            owner[bestCol] = row;
+            assignment[row] = bestCol;
+            if (previous != UNASSIGNED) {
+                assignment[previous] = UNASSIGNED;
+                queue[(head + size) % rows] = previous;
+                size++;
+            }
+        }
+    }
+}
@@ -1,43 +1,143 @@
 package util;
 
+import java.util.Locale;
+
+/**
+ * Distâncias e tempos estimados entre endereços.
+ *
+ * Os resultados por par (origem, destino) ficam em um cache LRU, com chave
+ * normalizada em minúsculas, já que o mesmo par é consultado várias vezes por
+ * solicitação (preço de cada tarifa, rota, atribuição de motorista). O cálculo
+ * em si vem de um {@link DistanceProvider}; o padrão é a simulação baseada no
+ * hash dos endereços.
+ *
+ * Provedor e cache são trocados juntos ({@link Routing}): um cálculo que começou
+ * com o provedor antigo só grava no cache antigo, já descartado.
+ */
 public class DistanceCalculator {
-    
+
     private static final int WAITING_TIME_MINUTES = 7;
-    
+    private static final double DEFAULT_SPEED_KMH = 30.0;
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    public static final int DEFAULT_CACHE_CAPACITY = 10_000;
+
+    /** Distância simulada: determinística a partir do texto dos endereços. */
+    public static final DistanceProvider SIMULATED = DistanceCalculator::simulatedDistance;
+
+    private static volatile Routing routing = new Routing(SIMULATED, DEFAULT_CACHE_CAPACITY);
+
     public static double calculateDistance(String origin, String destination) {
         if (origin == null || destination == null) {
             return 0.0;
         }
-        
-        int originHash = Math.abs(origin.toLowerCase().hashCode());
-        int destHash = Math.abs(destination.toLowerCase().hashCode());
-        
-        double baseDistance = 2.0 + (Math.abs(originHash - destHash) % 23);
-        
-        double lengthFactor = (origin.length() + destination.length()) / 100.0;
-        baseDistance += lengthFactor;
-        
-        return Math.round(baseDistance * 10.0) / 10.0;
+        return route(origin, destination).distanceKm;
     }
-    
+
     public static int calculateEstimatedTime(double distanceKm, double averageSpeedKmH) {
         if (distanceKm <= 0 || averageSpeedKmH <= 0) {
             return 0;
         }
-        
+
         double timeHours = distanceKm / averageSpeedKmH;
         int timeMinutes = (int) Math.round(timeHours * 60) + WAITING_TIME_MINUTES;
-        
+
         return Math.max(10, Math.min(120, timeMinutes));
     }
-    
+
     public static int calculateEstimatedTime(String origin, String destination) {
-        double distance = calculateDistance(origin, destination);
-        double averageSpeedKmH = 30.0;
-        return calculateEstimatedTime(distance, averageSpeedKmH);
+        if (origin == null || destination == null) {
+            return calculateEstimatedTime(0.0, DEFAULT_SPEED_KMH);
+        }
+        return route(origin, destination).estimatedMinutes;
+    }
+
+    /** Distância em km entre duas coordenadas em graus, pela fórmula de haversine. */
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double sinLat = Math.sin(dLat / 2);
+        double sinLon = Math.sin(dLon / 2);
+        double a = sinLat * sinLat
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLon * sinLon;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
     }
 
     public static int getWaitingTime() {
         return WAITING_TIME_MINUTES;
     }
-}
\ No newline at end of file
+
+    // --- cache e provedor ---
+
+    /** Troca a fonte das distâncias e começa um cache vazio (zera também os contadores). */
+    public static synchronized void setDistanceProvider(DistanceProvider newProvider) {
+        routing = new Routing(newProvider == null ? SIMULATED : newProvider, routing.capacity);
+    }
+
+    public static DistanceProvider getDistanceProvider() {
+        return routing.provider;
+    }
+
+    /** Recria o cache com outra capacidade (zera também os contadores). */
+    public static synchronized void setCacheCapacity(int capacity) {
+        routing = new Routing(routing.provider, capacity);
+    }
+
+    public static void clearCache() {
+        LruCache<String, Route> cache = routing.cache;
+        cache.clear();
+        cache.resetStats();
+    }
+
+    public static long getCacheHits() {
+        return routing.cache.getHitCount();
+    }
+
+    public static long getCacheMisses() {
+        return routing.cache.getMissCount();
+    }
+
+    private static Route route(String origin, String destination) {
+        // a simulação já ignora maiúsculas/minúsculas, então a chave normalizada
+        // não muda o resultado; '\0' não aparece em endereços digitados
+        String key = origin.toLowerCase(Locale.ROOT) + '\0' + destination.toLowerCase(Locale.ROOT);
+        Routing current = routing;
+        return current.cache.get(key, k -> {
+            double distance = current.provider.distanceKm(origin, destination);
+            return new Route(distance, calculateEstimatedTime(distance, DEFAULT_SPEED_KMH));
+        });
+    }
+
+    private static double simulatedDistance(String origin, String destination) {
+        int originHash = Math.abs(origin.toLowerCase().hashCode());
+        int destHash = Math.abs(destination.toLowerCase().hashCode());
+
+        double baseDistance = 2.0 + (Math.abs(originHash - destHash) % 23);
+
+        double lengthFactor = (origin.length() + destination.length()) / 100.0;
+        baseDistance += lengthFactor;
+
+        return Math.round(baseDistance * 10.0) / 10.0;
+    }
+
+    private static final class Route {
+        private final double distanceKm;
+        private final int estimatedMinutes;
+
+        private Route(double distanceKm, int estimatedMinutes) {
+            this.distanceKm = distanceKm;
+            this.estimatedMinutes = estimatedMinutes;
+        }
+    }
+
+    private static final class Routing {
+        private final DistanceProvider provider;
+        private final int capacity;
+        private final LruCache<String, Route> cache;
+
+        private Routing(DistanceProvider provider, int capacity) {
+            this.provider = provider;
+            this.capacity = capacity;
+            this.cache = new LruCache<>(capacity);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package util;
+
+/**
+ * Fonte das distâncias usadas pelo {@link DistanceCalculator}. Permite trocar o
+ * cálculo simulado por um serviço de rotas real sem alterar quem consulta.
+ */
+@FunctionalInterface
+public interface DistanceProvider {
+    /** Distância em km entre dois endereços (ambos não nulos). */
+    double distanceKm(String origin, String destination);
+}
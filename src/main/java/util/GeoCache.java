@@ -0,0 +1,210 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Tabela persistente endereço -> coordenadas, mapeada em memória.
+ *
+ * Endereçamento aberto com sondagem linear. A chave é um hash de 64 bits do
+ * endereço normalizado (colisões entre endereços distintos são aceitas como
+ * improváveis); coordenadas NaN registram endereços que o gazetteer não
+ * conhece, para não procurá-los de novo.
+ *
+ * Layout: cabeçalho de {@value #HEADER_BYTES} bytes (magic, versão, capacidade,
+ * quantidade, carimbo do gazetteer) seguido de slots de {@value #SLOT_BYTES}
+ * bytes (chave, latitude, longitude). Chave 0 marca slot vazio.
+ *
+ * É um cache: alterações vão para o disco quando o sistema operacional
+ * descarrega as páginas ou em {@link #flush()}; perder entradas só custa uma
+ * nova consulta ao gazetteer.
+ */
+final class GeoCache implements AutoCloseable {
+    private static final int MAGIC = 0x47454F31; // "GEO1"
+    private static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int SLOT_BYTES = 24;
+    private static final int MIN_CAPACITY = 1024;
+
+    private static final int OFFSET_CAPACITY = 8;
+    private static final int OFFSET_COUNT = 12;
+    private static final int OFFSET_STAMP = 16;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int count;
+
+    /**
+     * Abre (ou cria) o cache. Se o arquivo foi gerado para outro gazetteer
+     * ({@code stamp} diferente) ou está corrompido, começa vazio.
+     */
+    GeoCache(File cacheFile, long stamp) throws IOException {
+        File parent = cacheFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        this.file = new RandomAccessFile(cacheFile, "rw");
+        this.channel = file.getChannel();
+
+        boolean valid = false;
+        if (channel.size() >= HEADER_BYTES) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            int storedCapacity = header.getInt(OFFSET_CAPACITY);
+            valid = header.getInt(0) == MAGIC
+                    && header.getInt(4) == VERSION
+                    && header.getLong(OFFSET_STAMP) == stamp
+                    && storedCapacity >= MIN_CAPACITY
+                    && Integer.bitCount(storedCapacity) == 1
+                    && channel.size() >= HEADER_BYTES + (long) storedCapacity * SLOT_BYTES;
+            if (valid) {
+                capacity = storedCapacity;
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedBytes(capacity));
+                count = buffer.getInt(OFFSET_COUNT);
+            }
+        }
+        if (!valid) {
+            channel.truncate(0);
+            remap(MIN_CAPACITY);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(OFFSET_STAMP, stamp);
+        }
+    }
+
+    synchronized boolean contains(long key) {
+        return find(key) >= 0;
+    }
+
+    /** Latitude gravada para a chave; NaN se ausente ou marcada como desconhecida. */
+    synchronized double latitude(long key) {
+        int slot = find(key);
+        return slot < 0 ? Double.NaN : buffer.getDouble(slotOffset(slot) + 8);
+    }
+
+    synchronized double longitude(long key) {
+        int slot = find(key);
+        return slot < 0 ? Double.NaN : buffer.getDouble(slotOffset(slot) + 16);
+    }
+
+    /** Grava (ou substitui) as coordenadas da chave. */
+    synchronized void put(long key, double latitude, double longitude) throws IOException {
+        int existing = find(key);
+        if (existing >= 0) {
+            write(existing, key, latitude, longitude);
+            return;
+        }
+        if ((count + 1) * 10L > capacity * 7L) {
+            grow();
+        }
+        insert(key, latitude, longitude);
+        count++;
+        buffer.putInt(OFFSET_COUNT, count);
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    synchronized void flush() {
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+        file.close();
+    }
+
+    // slot da chave, ou -1 se ela não está no cache
+    private int find(long key) {
+        int mask = capacity - 1;
+        for (int slot = (int) mix(key) & mask; ; slot = (slot + 1) & mask) {
+            long stored = buffer.getLong(slotOffset(slot));
+            if (stored == 0) {
+                return -1;
+            }
+            if (stored == key) {
+                return slot;
+            }
+        }
+    }
+
+    private void insert(long key, double latitude, double longitude) {
+        int mask = capacity - 1;
+        int slot = (int) mix(key) & mask;
+        while (buffer.getLong(slotOffset(slot)) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        write(slot, key, latitude, longitude);
+    }
+
+    private void write(int slot, long key, double latitude, double longitude) {
+        int offset = slotOffset(slot);
+        buffer.putDouble(offset + 8, latitude);
+        buffer.putDouble(offset + 16, longitude);
+        buffer.putLong(offset, key);
+    }
+
+    private void grow() throws IOException {
+        int oldCapacity = capacity;
+        long[] keys = new long[count];
+        double[] lats = new double[count];
+        double[] lons = new double[count];
+        int n = 0;
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            int offset = slotOffset(slot);
+            long key = buffer.getLong(offset);
+            if (key != 0) {
+                keys[n] = key;
+                lats[n] = buffer.getDouble(offset + 8);
+                lons[n] = buffer.getDouble(offset + 16);
+                n++;
+            }
+        }
+        long stamp = buffer.getLong(OFFSET_STAMP);
+
+        remap(oldCapacity * 2);
+        for (int slot = 0; slot < capacity; slot++) {
+            buffer.putLong(slotOffset(slot), 0L);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(OFFSET_STAMP, stamp);
+        for (int i = 0; i < n; i++) {
+            insert(keys[i], lats[i], lons[i]);
+        }
+        buffer.putInt(OFFSET_COUNT, count);
+    }
+
+    private void remap(int newCapacity) throws IOException {
+        if (buffer != null) {
+            buffer.force();
+        }
+        capacity = newCapacity;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedBytes(newCapacity));
+        buffer.putInt(OFFSET_CAPACITY, newCapacity);
+        buffer.putInt(OFFSET_COUNT, count);
+    }
+
+    private static long mappedBytes(int capacity) {
+        return HEADER_BYTES + (long) capacity * SLOT_BYTES;
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    // espalha os bits altos do hash para os índices baixos da tabela
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+}
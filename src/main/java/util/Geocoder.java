@@ -0,0 +1,194 @@
+package util;
+
+import model.Location;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Geocodificação offline a partir de um gazetteer local.
+ *
+ * O gazetteer é um arquivo texto UTF-8 com uma entrada por linha,
+ * {@code endereço;latitude;longitude} (linhas vazias ou iniciadas por '#' são
+ * ignoradas). Endereços são comparados normalizados: minúsculas, sem acentos e
+ * com espaços simplificados; se o endereço completo não existir, tenta-se a
+ * parte antes da primeira vírgula (a rua, sem o número).
+ *
+ * Cada endereço é resolvido uma vez e guardado em um {@link GeoCache}
+ * persistente, mapeado em memória. O gazetteer só é lido quando aparece um
+ * endereço que ainda não está no cache, e o cache é descartado se o arquivo do
+ * gazetteer mudar.
+ */
+public class Geocoder implements AutoCloseable {
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    // keyOf nunca devolve 0 (é o slot vazio do cache)
+    private static final long UNKNOWN = 0L;
+
+    private final File gazetteerFile;
+    private final GeoCache cache;
+    private volatile Map<String, double[]> gazetteer;
+
+    public Geocoder(File gazetteerFile, File cacheFile) throws IOException {
+        if (!gazetteerFile.isFile()) {
+            throw new IOException("Gazetteer não encontrado: " + gazetteerFile.getPath());
+        }
+        this.gazetteerFile = gazetteerFile;
+        long stamp = gazetteerFile.lastModified() * 31 + gazetteerFile.length();
+        this.cache = new GeoCache(cacheFile, stamp);
+    }
+
+    /**
+     * Localização com as coordenadas do endereço, ou null se o gazetteer não o
+     * conhece.
+     */
+    public Location locate(String address) {
+        if (address == null || address.trim().isEmpty()) {
+            return null;
+        }
+        long key = resolve(address);
+        if (key == UNKNOWN) {
+            return null;
+        }
+        return new Location(address, "", cache.latitude(key), cache.longitude(key));
+    }
+
+    /** A própria localização se já tiver coordenadas; senão, a geocodificada (ou a original). */
+    public Location withCoordinates(Location location) {
+        if (location == null || location.hasCoordinates()) {
+            return location;
+        }
+        Location located = locate(location.getAddress());
+        if (located == null) {
+            return location;
+        }
+        return new Location(location.getAddress(), location.getDescription(),
+                located.getLatitude(), located.getLongitude());
+    }
+
+    /**
+     * Distância em linha reta (haversine) quando os dois endereços são
+     * conhecidos; caso contrário, a do provedor de reserva.
+     */
+    public DistanceProvider asDistanceProvider(DistanceProvider fallback) {
+        return (origin, destination) -> {
+            long from = resolve(origin);
+            long to = from == UNKNOWN ? UNKNOWN : resolve(destination);
+            if (from == UNKNOWN || to == UNKNOWN) {
+                return fallback.distanceKm(origin, destination);
+            }
+            double km = DistanceCalculator.haversineKm(cache.latitude(from), cache.longitude(from),
+                    cache.latitude(to), cache.longitude(to));
+            return Math.round(km * 10.0) / 10.0;
+        };
+    }
+
+    public int getCachedCount() {
+        return cache.size();
+    }
+
+    public void flush() {
+        cache.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        cache.close();
+    }
+
+    static String normalize(String address) {
+        String decomposed = Normalizer.normalize(address.trim(), Normalizer.Form.NFD);
+        String plain = MARKS.matcher(decomposed).replaceAll("");
+        return SPACES.matcher(plain.toLowerCase(Locale.ROOT)).replaceAll(" ");
+    }
+
+    // FNV-1a de 64 bits; 0 é reservado para slot vazio no cache
+    static long keyOf(String normalized) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < normalized.length(); i++) {
+            hash ^= normalized.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    /* Chave do endereço no cache, ou UNKNOWN se o gazetteer não o conhece. */
+    private long resolve(String address) {
+        String normalized = normalize(address);
+        long key = keyOf(normalized);
+        if (!cache.contains(key)) {
+            double[] coordinates = lookupGazetteer(normalized);
+            try {
+                if (coordinates == null) {
+                    cache.put(key, Double.NaN, Double.NaN);
+                } else {
+                    cache.put(key, coordinates[0], coordinates[1]);
+                }
+            } catch (IOException e) {
+                System.err.println("Erro ao gravar cache de geocodificação: " + e.getMessage());
+                return UNKNOWN;
+            }
+        }
+        return Double.isNaN(cache.latitude(key)) ? UNKNOWN : key;
+    }
+
+    private double[] lookupGazetteer(String normalized) {
+        Map<String, double[]> entries = loadGazetteer();
+        double[] coordinates = entries.get(normalized);
+        if (coordinates == null) {
+            int comma = normalized.indexOf(',');
+            if (comma > 0) {
+                coordinates = entries.get(normalized.substring(0, comma).trim());
+            }
+        }
+        return coordinates;
+    }
+
+    private Map<String, double[]> loadGazetteer() {
+        Map<String, double[]> entries = gazetteer;
+        if (entries != null) {
+            return entries;
+        }
+        synchronized (this) {
+            if (gazetteer != null) {
+                return gazetteer;
+            }
+            entries = new HashMap<>();
+            try (BufferedReader reader = Files.newBufferedReader(gazetteerFile.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                int lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    String[] parts = line.split(";");
+                    if (parts.length != 3) {
+                        System.err.println("Linha " + lineNumber + " do gazetteer ignorada: " + line);
+                        continue;
+                    }
+                    try {
+                        double lat = Double.parseDouble(parts[1].trim());
+                        double lon = Double.parseDouble(parts[2].trim());
+                        entries.put(normalize(parts[0]), new double[] { lat, lon });
+                    } catch (NumberFormatException e) {
+                        System.err.println("Linha " + lineNumber + " do gazetteer ignorada: " + line);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Erro ao ler gazetteer: " + e.getMessage());
+            }
+            gazetteer = entries;
+            return entries;
+        }
+    }
+}
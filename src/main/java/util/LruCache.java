@@ -0,0 +1,117 @@
+package util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Cache LRU limitado e seguro para uso concorrente.
+ *
+ * As chaves são distribuídas entre segmentos pelo hash; cada segmento é um
+ * {@link LinkedHashMap} em ordem de acesso com trava própria, de modo que
+ * threads consultando chaves diferentes raramente disputam a mesma trava. A
+ * capacidade é dividida igualmente entre os segmentos, então o descarte é LRU
+ * dentro de cada segmento.
+ */
+public class LruCache<K, V> {
+    private static final int DEFAULT_SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public LruCache(int capacity) {
+        this(capacity, DEFAULT_SEGMENTS);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public LruCache(int capacity, int segmentCount) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacidade do cache deve ser positiva.");
+        }
+        int count = Math.max(1, Math.min(segmentCount, capacity));
+        int perSegment = (capacity + count - 1) / count;
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment<>(perSegment);
+        }
+    }
+
+    /**
+     * Valor da chave; em caso de ausência, calcula com {@code loader} e guarda.
+     * O cálculo roda fora da trava, então duas threads podem calcular a mesma
+     * chave ao mesmo tempo (o resultado é o mesmo, só se perde trabalho).
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Segment<K, V> segment = segmentFor(key);
+        V value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        value = loader.apply(key);
+        if (value != null) {
+            synchronized (segment) {
+                segment.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public void resetStats() {
+        hits.reset();
+        misses.reset();
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[(h & 0x7fffffff) % segments.length];
+    }
+
+    private static final class Segment<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
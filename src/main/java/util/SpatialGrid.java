@@ -0,0 +1,308 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * Índice espacial em grade uniforme sobre coordenadas planas (latitude,
+ * longitude), com a mesma métrica de {@code Location.distanceTo}.
+ *
+ * Cada item fica em uma célula de lado {@code cellSize}; mover um item só troca
+ * a célula dele. As consultas percorrem apenas as células que podem conter
+ * resultados: a busca por raio visita o quadrado de células que cobre o
+ * círculo, e a busca pelos k mais próximos expande anéis de células a partir
+ * da célula da consulta até que nenhum anel seguinte possa ter algo mais perto.
+ *
+ * Seguro para uso concorrente (métodos sincronizados).
+ */
+public class SpatialGrid<T> {
+
+    private final double cellSize;
+    private final Map<Long, List<Entry<T>>> cells = new HashMap<>();
+    private final Map<T, Entry<T>> entries = new HashMap<>();
+
+    // limites das células ocupadas; encerram a busca por anéis. Recalculados
+    // quando uma célula da borda fica vazia, para não seguir cobrindo áreas que
+    // os itens já deixaram.
+    private int minRow = Integer.MAX_VALUE;
+    private int maxRow = Integer.MIN_VALUE;
+    private int minCol = Integer.MAX_VALUE;
+    private int maxCol = Integer.MIN_VALUE;
+
+    public SpatialGrid(double cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Tamanho de célula deve ser positivo.");
+        }
+        this.cellSize = cellSize;
+    }
+
+    /** Insere o item na posição indicada ou o move para ela. */
+    public synchronized void put(T item, double latitude, double longitude) {
+        Entry<T> entry = entries.get(item);
+        int row = cellIndex(latitude);
+        int col = cellIndex(longitude);
+        if (entry != null) {
+            if (entry.row == row && entry.col == col) {
+                entry.latitude = latitude;
+                entry.longitude = longitude;
+                return;
+            }
+            removeFromCell(entry);
+        } else {
+            entry = new Entry<>(item);
+            entries.put(item, entry);
+        }
+        entry.latitude = latitude;
+        entry.longitude = longitude;
+        entry.row = row;
+        entry.col = col;
+        cells.computeIfAbsent(key(row, col), k -> new ArrayList<>()).add(entry);
+        minRow = Math.min(minRow, row);
+        maxRow = Math.max(maxRow, row);
+        minCol = Math.min(minCol, col);
+        maxCol = Math.max(maxCol, col);
+    }
+
+    public synchronized boolean remove(T item) {
+        Entry<T> entry = entries.remove(item);
+        if (entry == null) {
+            return false;
+        }
+        removeFromCell(entry);
+        return true;
+    }
+
+    public synchronized boolean contains(T item) {
+        return entries.containsKey(item);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        cells.clear();
+        entries.clear();
+        recomputeBounds();
+    }
+
+    /** Itens a no máximo {@code radius} do ponto, em ordem crescente de distância. */
+    public synchronized List<T> withinRadius(double latitude, double longitude, double radius,
+            Predicate<? super T> filter) {
+        List<Entry<T>> found = new ArrayList<>();
+        if (radius < 0 || entries.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int fromRow = Math.max(minRow, cellIndex(latitude - radius));
+        int toRow = Math.min(maxRow, cellIndex(latitude + radius));
+        int fromCol = Math.max(minCol, cellIndex(longitude - radius));
+        int toCol = Math.min(maxCol, cellIndex(longitude + radius));
+        double radiusSq = radius * radius;
+
+        long span = (long) (toRow - fromRow + 1) * (toCol - fromCol + 1);
+        if (span > cells.size()) {
+            // raio maior que a área ocupada: sai mais barato olhar só as células existentes
+            for (List<Entry<T>> cell : cells.values()) {
+                for (Entry<T> e : cell) {
+                    if (e.row >= fromRow && e.row <= toRow && e.col >= fromCol && e.col <= toCol) {
+                        collectIfInside(e, latitude, longitude, radiusSq, filter, found);
+                    }
+                }
+            }
+        } else {
+            for (int row = fromRow; row <= toRow; row++) {
+                for (int col = fromCol; col <= toCol; col++) {
+                    List<Entry<T>> cell = cells.get(key(row, col));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (Entry<T> e : cell) {
+                        collectIfInside(e, latitude, longitude, radiusSq, filter, found);
+                    }
+                }
+            }
+        }
+
+        found.sort(Comparator.comparingDouble(e -> e.distanceSq));
+        List<T> result = new ArrayList<>(found.size());
+        for (Entry<T> e : found) {
+            result.add(e.item);
+        }
+        return result;
+    }
+
+    /** Os até {@code k} itens mais próximos do ponto, em ordem crescente de distância. */
+    public synchronized List<T> nearest(double latitude, double longitude, int k, Predicate<? super T> filter) {
+        if (k <= 0 || entries.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int centerRow = cellIndex(latitude);
+        int centerCol = cellIndex(longitude);
+        // pior candidato no topo; guarda os k melhores vistos até agora
+        PriorityQueue<Candidate<T>> best = new PriorityQueue<>(k + 1,
+                (a, b) -> Double.compare(b.distanceSq, a.distanceSq));
+
+        int maxRing = Math.max(Math.max(Math.abs(centerRow - minRow), Math.abs(maxRow - centerRow)),
+                Math.max(Math.abs(centerCol - minCol), Math.abs(maxCol - centerCol)));
+        // consulta fora da área ocupada: os anéis mais internos estão vazios
+        int firstRing = Math.max(Math.max(minRow - centerRow, centerRow - maxRow),
+                Math.max(minCol - centerCol, centerCol - maxCol));
+        long visited = 0;
+        for (int ring = Math.max(0, firstRing); ring <= maxRing; ring++) {
+            if (best.size() == k) {
+                // qualquer célula do anel fica a pelo menos (ring - 1) células de distância
+                double bound = (ring - 1) * cellSize;
+                if (bound > 0 && bound * bound > best.peek().distanceSq) {
+                    break;
+                }
+            }
+            visited += ring == 0 ? 1 : 8L * ring;
+            if (visited > cells.size()) {
+                // itens esparsos demais para a grade: olhar as células ocupadas é mais barato
+                best.clear();
+                for (List<Entry<T>> cell : cells.values()) {
+                    offer(cell, latitude, longitude, k, filter, best);
+                }
+                break;
+            }
+            visitRing(centerRow, centerCol, ring, latitude, longitude, k, filter, best);
+        }
+
+        List<T> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(best.poll().item);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private void visitRing(int centerRow, int centerCol, int ring, double latitude, double longitude, int k,
+            Predicate<? super T> filter, PriorityQueue<Candidate<T>> best) {
+        int fromRow = Math.max(minRow, centerRow - ring);
+        int toRow = Math.min(maxRow, centerRow + ring);
+        for (int row = fromRow; row <= toRow; row++) {
+            boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+            if (edgeRow) {
+                int fromCol = Math.max(minCol, centerCol - ring);
+                int toCol = Math.min(maxCol, centerCol + ring);
+                for (int col = fromCol; col <= toCol; col++) {
+                    visitCell(row, col, latitude, longitude, k, filter, best);
+                }
+            } else {
+                // nas linhas do meio do anel só as duas colunas das bordas pertencem a ele
+                if (centerCol - ring >= minCol) {
+                    visitCell(row, centerCol - ring, latitude, longitude, k, filter, best);
+                }
+                if (centerCol + ring <= maxCol) {
+                    visitCell(row, centerCol + ring, latitude, longitude, k, filter, best);
+                }
+            }
+        }
+    }
+
+    private void visitCell(int row, int col, double latitude, double longitude, int k,
+            Predicate<? super T> filter, PriorityQueue<Candidate<T>> best) {
+        List<Entry<T>> cell = cells.get(key(row, col));
+        if (cell != null) {
+            offer(cell, latitude, longitude, k, filter, best);
+        }
+    }
+
+    private void offer(List<Entry<T>> cell, double latitude, double longitude, int k,
+            Predicate<? super T> filter, PriorityQueue<Candidate<T>> best) {
+        for (Entry<T> e : cell) {
+            if (filter != null && !filter.test(e.item)) {
+                continue;
+            }
+            double d = distanceSq(e, latitude, longitude);
+            if (best.size() < k) {
+                best.add(new Candidate<>(e.item, d));
+            } else if (d < best.peek().distanceSq) {
+                best.poll();
+                best.add(new Candidate<>(e.item, d));
+            }
+        }
+    }
+
+    private void collectIfInside(Entry<T> e, double latitude, double longitude, double radiusSq,
+            Predicate<? super T> filter, List<Entry<T>> found) {
+        double d = distanceSq(e, latitude, longitude);
+        if (d <= radiusSq && (filter == null || filter.test(e.item))) {
+            e.distanceSq = d;
+            found.add(e);
+        }
+    }
+
+    private void removeFromCell(Entry<T> entry) {
+        long key = key(entry.row, entry.col);
+        List<Entry<T>> cell = cells.get(key);
+        if (cell != null) {
+            cell.remove(entry);
+            if (cell.isEmpty()) {
+                cells.remove(key);
+                if (entry.row == minRow || entry.row == maxRow || entry.col == minCol || entry.col == maxCol) {
+                    recomputeBounds();
+                }
+            }
+        }
+    }
+
+    // Percorre só as células ocupadas.
+    private void recomputeBounds() {
+        minRow = minCol = Integer.MAX_VALUE;
+        maxRow = maxCol = Integer.MIN_VALUE;
+        for (long key : cells.keySet()) {
+            int row = (int) (key >> 32);
+            int col = (int) key;
+            minRow = Math.min(minRow, row);
+            maxRow = Math.max(maxRow, row);
+            minCol = Math.min(minCol, col);
+            maxCol = Math.max(maxCol, col);
+        }
+    }
+
+    private int cellIndex(double coordinate) {
+        double index = Math.floor(coordinate / cellSize);
+        return (int) Math.max(Integer.MIN_VALUE / 2, Math.min(Integer.MAX_VALUE / 2, index));
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+
+    private static double distanceSq(Entry<?> e, double latitude, double longitude) {
+        double dx = e.latitude - latitude;
+        double dy = e.longitude - longitude;
+        return dx * dx + dy * dy;
+    }
+
+    private static final class Entry<T> {
+        private final T item;
+        private double latitude;
+        private double longitude;
+        private int row;
+        private int col;
+        // usado só durante uma busca por raio (sob a trava do índice)
+        private double distanceSq;
+
+        private Entry(T item) {
+            this.item = item;
+        }
+    }
+
+    private static final class Candidate<T> {
+        private final T item;
+        private final double distanceSq;
+
+        private Candidate(T item, double distanceSq) {
+            this.item = item;
+            this.distanceSq = distanceSq;
+        }
+    }
+}
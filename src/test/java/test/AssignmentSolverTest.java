@@ -0,0 +1,53 @@
+package test;
+
+import org.junit.jupiter.api.Test;
+import util.AssignmentSolver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AssignmentSolverTest {
+    private static final double EPSILON = 0.01;
+
+    @Test
+    public void testFindsGlobalOptimumWhereGreedyFails() {
+        // Guloso: linha 0 pega a coluna 0 (custo 1) e a linha 1 fica com a 1 (custo 10) = 11.
+        // Ótimo: linha 0 -> coluna 1 (2) e linha 1 -> coluna 0 (3) = 5.
+        int[][] candidates = { { 0, 1 }, { 0, 1 } };
+        double[][] costs = { { 1, 2 }, { 3, 10 } };
+
+        int[] assignment = AssignmentSolver.solve(candidates, costs, 2, 100, EPSILON);
+
+        assertArrayEquals(new int[] { 1, 0 }, assignment);
+    }
+
+    @Test
+    public void testLeavesExtraRowsUnassigned() {
+        int[][] candidates = { { 0 }, { 0 }, { 0 } };
+        double[][] costs = { { 5 }, { 2 }, { 7 } };
+
+        int[] assignment = AssignmentSolver.solve(candidates, costs, 1, 100, EPSILON);
+
+        assertArrayEquals(new int[] { AssignmentSolver.UNASSIGNED, 0, AssignmentSolver.UNASSIGNED }, assignment);
+    }
+
+    @Test
+    public void testRowWithoutCandidatesStaysUnassigned() {
+        int[][] candidates = { {}, { 0, 1 } };
+        double[][] costs = { {}, { 4, 3 } };
+
+        int[] assignment = AssignmentSolver.solve(candidates, costs, 2, 100, EPSILON);
+
+        assertEquals(AssignmentSolver.UNASSIGNED, assignment[0]);
+        assertEquals(1, assignment[1]);
+    }
+
+    @Test
+    public void testPrefersUnassignedWhenEveryOptionCostsMore() {
+        int[][] candidates = { { 0 } };
+        double[][] costs = { { 50 } };
+
+        int[] assignment = AssignmentSolver.solve(candidates, costs, 1, 10, EPSILON);
+
+        assertEquals(AssignmentSolver.UNASSIGNED, assignment[0]);
+    }
+}
@@ -13,7 +13,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -48,7 +51,9 @@ public class AvaliacaoServiceTest {
 
     @AfterEach
     public void tearDown() {
+        orderRepository.close();
         orderDb.delete();
+        new File(orderDb.getPath() + ".journal").delete();
         avaliacaoDb.delete();
     }
 
@@ -116,4 +121,51 @@ public class AvaliacaoServiceTest {
         assertEquals(3.0, avaliacaoService.getAverageRatingForDelivery("del-1"), 0.001);
         assertEquals(2, avaliacaoService.getTotalRatingsForDelivery("del-1"));
     }
+
+    @Test
+    public void shouldKeepAveragesAfterReload() {
+        avaliacaoService.customerRatesDelivery(deliveredOrder.getId(), "cliente@teste.com", 4, "");
+        avaliacaoService.customerRatesRestaurant(deliveredOrder.getId(), "cliente@teste.com", 3, "");
+
+        AvaliacaoRepository reloaded = new AvaliacaoRepository(avaliacaoDb.getPath());
+        AvaliacaoService reloadedService = new AvaliacaoService(reloaded, orderRepository);
+
+        assertEquals(4.0, reloadedService.getAverageRatingForDelivery("del-1"), 0.001);
+        assertEquals(1, reloadedService.getTotalRatingsForRestaurant("rest-1"));
+        assertEquals(0, reloadedService.getTotalRatingsForRestaurant("rest-2"));
+        assertEquals(0.0, reloadedService.getAverageRatingForRestaurant("rest-2"), 0.001);
+    }
+
+    @Test
+    public void concurrentDuplicateRatingsShouldSaveOnlyOne() throws InterruptedException {
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    avaliacaoService.customerRatesDelivery(deliveredOrder.getId(), "cliente@teste.com", 5, "");
+                    accepted.incrementAndGet();
+                } catch (ValidationException e) {
+                    rejected.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(1, accepted.get());
+        assertEquals(threads - 1, rejected.get());
+        assertEquals(1, avaliacaoService.getTotalRatingsForDelivery("del-1"));
+        assertEquals(1, avaliacaoRepository.findAll().size());
+    }
 }
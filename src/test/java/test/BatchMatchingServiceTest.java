@@ -0,0 +1,123 @@
+package test;
+
+import model.Driver;
+import model.Location;
+import model.Passenger;
+import model.PaymentMethod;
+import model.Ride;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repo.RideRepository;
+import repo.UserRepository;
+import repo.VehicleRepository;
+import service.AuthService;
+import service.BatchMatchingService;
+import service.PricingService;
+import service.RideService;
+import util.ValidationException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchMatchingServiceTest {
+    private final File userDb = new File("target/test-data/batch_users.db");
+    private final File vehicleDb = new File("target/test-data/batch_vehicles.db");
+    private final File rideDb = new File("target/test-data/batch_rides.db");
+
+    private UserRepository userRepo;
+    private RideRepository rideRepo;
+    private AuthService authService;
+    private RideService rideService;
+    private BatchMatchingService matcher;
+    private Passenger passenger;
+
+    @BeforeEach
+    public void setUp() throws ValidationException, IOException {
+        userDb.getParentFile().mkdirs();
+        tearDown();
+
+        userRepo = new UserRepository(userDb);
+        rideRepo = new RideRepository(rideDb.getPath());
+        authService = new AuthService(userRepo, new VehicleRepository(vehicleDb.getPath()));
+        rideService = new RideService(rideRepo, userRepo, new PricingService());
+        matcher = new BatchMatchingService(rideRepo, userRepo);
+        rideService.setBatchMatcher(matcher);
+
+        passenger = authService.registerPassenger("Passageiro", "p@p.com", "111", "password123");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        userDb.delete();
+        vehicleDb.delete();
+        rideDb.delete();
+        new File(rideDb.getPath() + ".journal").delete();
+    }
+
+    private Driver registerDriver(String email, String plate, String category, int rating)
+            throws ValidationException, IOException {
+        Driver d = authService.registerDriver("Motorista " + email, email, "9" + plate.hashCode(), "password123",
+                "cnh-" + plate, plate, "Onix", 2022, "Preto");
+        d.setCurrentLocation(new Location("Base " + plate));
+        d.addRating(rating);
+        d.getVehicle().setCategory(category);
+        userRepo.update(d);
+        return d;
+    }
+
+    private Ride request(String category) throws ValidationException, IOException {
+        return rideService.createRideRequest(passenger.getEmail(), "Rua Perto", "Destino", category,
+                PaymentMethod.PIX);
+    }
+
+    @Test
+    public void testRidesWaitForBatchAndGetDistinctDrivers() throws ValidationException, IOException {
+        registerDriver("a@d.com", "AAA-001", "UBER_X", 4);
+        registerDriver("b@d.com", "AAA-002", "UBER_X", 4);
+        Ride first = request("UBER_X");
+        Ride second = request("UBER_X");
+
+        assertEquals(Ride.RideStatus.SOLICITADA, first.getStatus());
+        assertNull(first.getDriverId());
+
+        assertEquals(2, matcher.runBatch());
+
+        Set<String> drivers = new HashSet<>();
+        for (Ride ride : new Ride[] { first, second }) {
+            Ride stored = rideRepo.findById(ride.getId());
+            assertEquals(Ride.RideStatus.AGUARDANDO_ACEITE_MOTORISTA, stored.getStatus());
+            drivers.add(stored.getDriverId());
+            assertFalse(((Driver) userRepo.findById(stored.getDriverId())).isAvailable());
+        }
+        assertEquals(2, drivers.size());
+    }
+
+    @Test
+    public void testPremiumBatchPrefersHigherRating() throws ValidationException, IOException {
+        registerDriver("low@d.com", "BBB-001", "UBER_BLACK", 3);
+        Driver best = registerDriver("high@d.com", "BBB-002", "UBER_BLACK", 5);
+        Ride ride = request("UBER_BLACK");
+
+        assertEquals(1, matcher.runBatch());
+        assertEquals(best.getId(), rideRepo.findById(ride.getId()).getDriverId());
+    }
+
+    @Test
+    public void testUnmatchedRidesStayPendingForNextBatch() throws ValidationException, IOException {
+        registerDriver("only@d.com", "CCC-001", "UBER_X", 5);
+        request("UBER_X");
+        request("UBER_X");
+
+        assertEquals(1, matcher.runBatch());
+        assertEquals(1, matcher.getPendingCount());
+
+        registerDriver("late@d.com", "CCC-002", "UBER_X", 5);
+        assertEquals(1, matcher.runBatch());
+        assertEquals(0, matcher.getPendingCount());
+    }
+}
@@ -141,4 +141,26 @@ class DeliveryAssignmentServiceTest {
 
                 assertEquals(5.0, distance, 0.01);
         }
+
+        @Test
+        void shouldFollowDeliveryMovesAndAvailability() {
+                Delivery delivery1 = deliveryService.register(
+                                "Rita", "rita@email.com", "12345678908",
+                                "11999999992", "12345678908", "CRLV505");
+                delivery1.setCurrentLocation(new Location("Longe", "", 20, 20));
+
+                Delivery delivery2 = deliveryService.register(
+                                "Caio", "caio@email.com", "12345678909",
+                                "11999999991", "12345678909", "CRLV606");
+                delivery2.setCurrentLocation(new Location("Perto", "", 1, 1));
+
+                Location restaurantLocation = new Location("Restaurante", "", 0, 0);
+                assertEquals("Caio", assignmentService.findNearestAvailableDelivery(restaurantLocation).getName());
+
+                delivery1.setCurrentLocation(new Location("Vizinho", "", 0.1, 0.1));
+                assertEquals("Rita", assignmentService.findNearestAvailableDelivery(restaurantLocation).getName());
+
+                delivery1.deactivate();
+                assertEquals("Caio", assignmentService.findNearestAvailableDelivery(restaurantLocation).getName());
+        }
 }
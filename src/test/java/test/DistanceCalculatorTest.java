@@ -50,4 +50,56 @@ public class DistanceCalculatorTest {
     public void testWaitingTime() {
         assertEquals(7, DistanceCalculator.getWaitingTime());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRepeatedPairIsServedFromCache() {
+        DistanceCalculator.clearCache();
+        double first = DistanceCalculator.calculateDistance("Rua Cache, 10", "Av. Teste, 20");
+        double second = DistanceCalculator.calculateDistance("RUA CACHE, 10", "av. teste, 20");
+        int eta = DistanceCalculator.calculateEstimatedTime("Rua Cache, 10", "Av. Teste, 20");
+
+        assertEquals(first, second);
+        assertEquals(DistanceCalculator.calculateEstimatedTime(first, 30.0), eta);
+        assertEquals(1, DistanceCalculator.getCacheMisses());
+        assertEquals(2, DistanceCalculator.getCacheHits());
+    }
+
+    @Test
+    public void testCustomProviderReplacesCachedValues() {
+        DistanceCalculator.calculateDistance("Origem P", "Destino P");
+        try {
+            DistanceCalculator.setDistanceProvider((origin, destination) -> 42.0);
+            assertEquals(42.0, DistanceCalculator.calculateDistance("Origem P", "Destino P"));
+        } finally {
+            DistanceCalculator.setDistanceProvider(null);
+        }
+        assertTrue(DistanceCalculator.calculateDistance("Origem P", "Destino P") != 42.0);
+    }
+
+    @Test
+    public void loadStartedBeforeProviderSwapIsNotCached() throws Exception {
+        java.util.concurrent.CountDownLatch loading = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+        try {
+            DistanceCalculator.setDistanceProvider((origin, destination) -> {
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 1.0;
+            });
+            Thread slow = new Thread(() -> DistanceCalculator.calculateDistance("Origem T", "Destino T"));
+            slow.start();
+            loading.await();
+            DistanceCalculator.setDistanceProvider((origin, destination) -> 42.0);
+            release.countDown();
+            slow.join();
+
+            assertEquals(42.0, DistanceCalculator.calculateDistance("Origem T", "Destino T"));
+        } finally {
+            DistanceCalculator.setDistanceProvider(null);
+        }
+    }
+}
@@ -49,6 +49,7 @@ public class EndToEndIntegrationTest {
         vehicleDb.delete();
         rideDb.delete();
         historyDb.delete();
+        deleteHistorySegments();
 
         userRepo = new UserRepository(userDb);
         vehicleRepo = new VehicleRepository(vehicleDb.getPath());
@@ -66,7 +67,20 @@ public class EndToEndIntegrationTest {
         userDb.delete();
         vehicleDb.delete();
         rideDb.delete();
+        new File(rideDb.getPath() + ".journal").delete();
         historyDb.delete();
+        deleteHistorySegments();
+    }
+
+    private void deleteHistorySegments() {
+        File segmentDir = new File(historyDb.getPath() + ".segments");
+        File[] segments = segmentDir.listFiles();
+        if (segments != null) {
+            for (File segment : segments) {
+                segment.delete();
+            }
+        }
+        segmentDir.delete();
     }
 
     @Test
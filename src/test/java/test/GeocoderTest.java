@@ -0,0 +1,92 @@
+package test;
+
+import model.Location;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.DistanceCalculator;
+import util.DistanceProvider;
+import util.Geocoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GeocoderTest {
+    private final File gazetteer = new File("target/test-data/gazetteer.txt");
+    private final File cacheFile = new File("target/test-data/geocache.bin");
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        gazetteer.getParentFile().mkdirs();
+        tearDown();
+        List<String> lines = new ArrayList<>();
+        lines.add("# endereço;latitude;longitude");
+        lines.add("Avenida Epit\u00e1cio Pessoa;-7.1178;-34.8641");
+        lines.add("Rua Treze de Maio, 100;-7.2291;-35.8808");
+        for (int i = 0; i < 2_000; i++) {
+            lines.add("Rua Teste " + i + ";" + (-7.0 - i * 0.0001) + ";-35.0");
+        }
+        Files.write(gazetteer.toPath(), lines, StandardCharsets.UTF_8);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        gazetteer.delete();
+        cacheFile.delete();
+    }
+
+    @Test
+    public void testLocatesNormalizedAddressesAndStreetFallback() throws IOException {
+        try (Geocoder geocoder = new Geocoder(gazetteer, cacheFile)) {
+            Location exact = geocoder.locate("  AVENIDA  epitacio pessoa ");
+            assertNotNull(exact);
+            assertEquals(-7.1178, exact.getLatitude(), 1e-9);
+            assertTrue(exact.hasCoordinates());
+
+            Location street = geocoder.locate("Avenida Epit\u00e1cio Pessoa, 1500");
+            assertNotNull(street);
+            assertEquals(-34.8641, street.getLongitude(), 1e-9);
+
+            assertNull(geocoder.locate("Lugar Nenhum"));
+        }
+    }
+
+    @Test
+    public void testHaversineDistanceWithFallbackForUnknownAddresses() throws IOException {
+        try (Geocoder geocoder = new Geocoder(gazetteer, cacheFile)) {
+            DistanceProvider fallback = (o, d) -> -1.0;
+            DistanceProvider provider = geocoder.asDistanceProvider(fallback);
+
+            // João Pessoa -> Campina Grande: cerca de 113 km em linha reta
+            double km = provider.distanceKm("Avenida Epit\u00e1cio Pessoa", "Rua Treze de Maio, 100");
+            assertEquals(113, km, 3);
+            assertEquals(km, geocoder.locate("Avenida Epit\u00e1cio Pessoa")
+                    .distanceKmTo(geocoder.locate("Rua Treze de Maio, 100")), 0.05);
+            assertEquals(-1.0, provider.distanceKm("Avenida Epit\u00e1cio Pessoa", "Lugar Nenhum"));
+        }
+        assertEquals(0.0, DistanceCalculator.haversineKm(-7, -35, -7, -35), 1e-12);
+    }
+
+    @Test
+    public void testCacheSurvivesReopenAndGrowth() throws IOException {
+        try (Geocoder geocoder = new Geocoder(gazetteer, cacheFile)) {
+            for (int i = 0; i < 2_000; i++) {
+                assertNotNull(geocoder.locate("Rua Teste " + i));
+            }
+            assertNull(geocoder.locate("Lugar Nenhum"));
+            assertEquals(2_001, geocoder.getCachedCount());
+        }
+
+        try (Geocoder reopened = new Geocoder(gazetteer, cacheFile)) {
+            assertEquals(2_001, reopened.getCachedCount());
+            assertEquals(-7.1999, reopened.locate("Rua Teste 1999").getLatitude(), 1e-9);
+            assertEquals(2_001, reopened.getCachedCount());
+        }
+    }
+}
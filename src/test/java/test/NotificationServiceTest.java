@@ -1,21 +1,51 @@
 package test;
 
 import model.Notification;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import repo.NotificationRepository;
+import service.NotificationPipeline;
 import service.NotificationService;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class NotificationServiceTest {
 
     private NotificationService service;
+    private final AtomicLong now = new AtomicLong(System.currentTimeMillis());
+    private final File spillDir = new File("target/test-data/notification-spill");
+    private final File notificationDb = new File("target/test-data/notifications-retention.db");
 
     @BeforeEach
     void setup() {
-        service = new NotificationService();
+        service = new NotificationService(null, now::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stopAsyncDelivery();
+        service.stopSweeper();
+        notificationDb.delete();
+        new File(notificationDb.getPath() + ".journal").delete();
+        File[] files = spillDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        spillDir.delete();
     }
 
     @Test
@@ -114,4 +144,250 @@ class NotificationServiceTest {
         assertEquals("CUSTOMER", n.getRecipientType());
         assertTrue(n.getMessage().contains("order-99"));
     }
+
+    @Test
+    void unreadCountShouldFollowReadsAndRemovals() {
+        Notification first = service.notifyRestaurant("restaurant-1", "order-1", "Pedido 1");
+        service.notifyRestaurant("restaurant-1", "order-2", "Pedido 2");
+        service.notifyRestaurant("restaurant-1", "order-2", "Pedido 2 (atualizado)");
+        assertEquals(3, service.getUnreadCount("restaurant-1"));
+
+        // lida direto no modelo, fora do serviço
+        first.markAsRead();
+        assertEquals(2, service.getUnreadCount("restaurant-1"));
+
+        service.removeNotificationsByRecipientAndOrder("restaurant-1", "order-2");
+        assertEquals(0, service.getUnreadCount("restaurant-1"));
+        assertEquals(1, service.getNotificationsByRecipient("restaurant-1").size());
+        assertEquals(0, service.getUnreadCount("ninguem"));
+
+        service.removeNotificationsByRecipientAndOrder("restaurant-1", "order-1");
+        assertEquals(0, service.getRecipientCount());
+    }
+
+    @Test
+    void concurrentNotificationsShouldAllBeDelivered() throws InterruptedException {
+        int threads = 8;
+        int perThread = 500;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String recipient = "restaurant-" + (t % 2);
+            int worker = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    Notification n = service.notifyRestaurant(recipient, "order-" + worker + "-" + i, "Pedido");
+                    if (i % 2 == 0) {
+                        service.markAsRead(n.getId());
+                    }
+                }
+            });
+            workers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : workers) {
+            thread.join();
+        }
+
+        assertEquals(threads * perThread, service.getAllNotifications().size());
+        assertEquals(threads * perThread / 2, service.getNotificationsByRecipient("restaurant-0").size());
+        assertEquals(threads * perThread / 4, service.getUnreadCount("restaurant-0"));
+        assertEquals(threads * perThread / 4, service.getUnreadNotificationsByRecipient("restaurant-1").size());
+    }
+
+    @Test
+    void asyncDeliveryShouldKeepPerRecipientOrder() {
+        NotificationPipeline pipeline = service.startAsyncDelivery(2, 4, 3,
+                NotificationPipeline.Backpressure.BLOCK, null);
+        for (int i = 0; i < 200; i++) {
+            service.publishCustomerUpdate("cliente@example.com", "order-" + (i % 10), "msg-" + i);
+        }
+        // a remoção vale só para o que foi publicado antes dela
+        service.publishRemoval("cliente@example.com", "order-3");
+        service.publishCustomerUpdate("cliente@example.com", "order-3", "msg-final");
+        service.publishNewOrder("restaurant-1", "order-1", 2, 45.0);
+
+        List<Notification> customer = service.getNotificationsByRecipient("cliente@example.com");
+        assertEquals(181, customer.size());
+        int last = -1;
+        for (Notification n : customer.subList(0, 180)) {
+            int index = Integer.parseInt(n.getMessage().substring(n.getMessage().indexOf("msg-") + 4));
+            assertTrue(index > last);
+            last = index;
+        }
+        assertTrue(customer.get(180).getMessage().contains("msg-final"));
+        assertTrue(service.getNotificationsByRecipient("restaurant-1").get(0).getMessage().contains("2 itens"));
+        assertEquals(0, pipeline.getPendingCount());
+        assertEquals(pipeline.getPublishedCount(), pipeline.getDeliveredCount());
+    }
+
+    @Test
+    void tornSpillTailShouldNotBlockReaders() throws Exception {
+        spillDir.mkdirs();
+        File spillFile = new File(spillDir, "notifications-0.spill");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(spillFile))) {
+            for (int i = 0; i < 50; i++) {
+                byte[] record = spilledEvent("cliente@example.com", "order-" + i);
+                out.writeInt(record.length);
+                out.write(record);
+            }
+            // queda no meio da escrita do último registro
+            out.writeInt(500);
+            out.write(new byte[10]);
+        }
+
+        NotificationPipeline pipeline = service.startAsyncDelivery(1, 1, 8,
+                NotificationPipeline.Backpressure.SPILL, spillDir);
+        for (int i = 50; i < 100; i++) {
+            service.publishCustomerUpdate("cliente@example.com", "order-" + i, "msg-" + i);
+        }
+
+        List<Notification> customer = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> service.getNotificationsByRecipient("cliente@example.com"));
+        assertEquals(100, customer.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("order-" + i, customer.get(i).getOrderId());
+        }
+        assertEquals(0, pipeline.getPendingCount());
+    }
+
+    @Test
+    void corruptSpillLengthShouldBeDiscarded() throws Exception {
+        spillDir.mkdirs();
+        try (DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(new File(spillDir, "notifications-0.spill")))) {
+            out.writeInt(-7);
+            out.writeInt(Integer.MAX_VALUE);
+        }
+
+        NotificationPipeline pipeline = service.startAsyncDelivery(1, 1, 8,
+                NotificationPipeline.Backpressure.SPILL, spillDir);
+        service.publishCustomerUpdate("cliente@example.com", "order-1", "msg");
+
+        assertEquals(1, assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> service.getNotificationsByRecipient("cliente@example.com")).size());
+        assertEquals(1, pipeline.getPublishedCount());
+    }
+
+    // Registro no formato do transbordo, como se gravado por uma execução anterior.
+    private static byte[] spilledEvent(String recipientId, String orderId) throws Exception {
+        Class<?> eventClass = Class.forName("service.NotificationPipeline$Event");
+        Method factory = eventClass.getDeclaredMethod("customerUpdate", String.class, String.class, String.class);
+        factory.setAccessible(true);
+        Object event = factory.invoke(null, recipientId, orderId, "msg");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(event);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    void spillShouldKeepOrderAndDrainOnStop() {
+        NotificationPipeline pipeline = service.startAsyncDelivery(1, 1, 8,
+                NotificationPipeline.Backpressure.SPILL, spillDir);
+        for (int i = 0; i < 500; i++) {
+            service.publishCustomerUpdate("cliente@example.com", "order-" + i, "msg-" + i);
+        }
+        service.stopAsyncDelivery();
+
+        List<Notification> customer = service.getNotificationsByRecipient("cliente@example.com");
+        assertEquals(500, customer.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals("order-" + i, customer.get(i).getOrderId());
+        }
+        assertEquals(500, pipeline.getDeliveredCount());
+        assertEquals(0, pipeline.getDroppedCount());
+        assertFalse(new File(spillDir, "notifications-0.spill").exists());
+    }
+
+    @Test
+    void dropOldestShouldAccountForEveryEvent() {
+        NotificationPipeline pipeline = service.startAsyncDelivery(1, 2, 1,
+                NotificationPipeline.Backpressure.DROP_OLDEST, null);
+        for (int i = 0; i < 1000; i++) {
+            service.publishCustomerUpdate("cliente@example.com", "order-" + i, "msg-" + i);
+        }
+
+        List<Notification> customer = service.getNotificationsByRecipient("cliente@example.com");
+        assertEquals(1000, pipeline.getDeliveredCount() + pipeline.getDroppedCount());
+        assertEquals(pipeline.getDeliveredCount(), customer.size());
+        // o evento mais novo nunca é o descartado
+        assertEquals("order-999", customer.get(customer.size() - 1).getOrderId());
+    }
+
+    @Test
+    void retentionShouldCapInboxAndExpireReadNotifications() {
+        service.setRetention(null, 2, Duration.ofMinutes(1));
+        service.notifyRestaurant("restaurant-1", "order-1", "Pedido 1");
+        Notification second = service.notifyRestaurant("restaurant-1", "order-2", "Pedido 2");
+        service.notifyRestaurant("restaurant-1", "order-3", "Pedido 3");
+
+        List<Notification> inbox = service.getNotificationsByRecipient("restaurant-1");
+        assertEquals(2, inbox.size());
+        assertEquals("order-2", inbox.get(0).getOrderId());
+        assertEquals(2, service.getUnreadCount("restaurant-1"));
+
+        service.markAsRead(second.getId());
+        assertEquals(0, service.sweepExpired());
+        now.addAndGet(Duration.ofMinutes(1).toMillis());
+        assertEquals(1, service.sweepExpired());
+        assertEquals(0, service.sweepExpired());
+        assertEquals(1, service.getNotificationsByRecipient("restaurant-1").size());
+        assertEquals(1, service.getUnreadCount("restaurant-1"));
+    }
+
+    @Test
+    void retentionShouldExpireByAge() {
+        service.setRetention(Duration.ofMinutes(5), 0, null);
+        service.notifyCustomer("cliente@example.com", "order-1", "Antiga");
+        now.addAndGet(Duration.ofMinutes(10).toMillis());
+        service.notifyCustomer("cliente@example.com", "order-2", "Nova");
+        service.removeNotificationsByRecipientAndOrder("cliente@example.com", "order-1");
+        service.notifyCustomer("cliente@example.com", "order-3", "Nova");
+
+        // a já removida não conta de novo
+        assertEquals(0, service.sweepExpired());
+        assertEquals(2, service.getAllNotifications().size());
+        now.addAndGet(Duration.ofMinutes(5).toMillis());
+        assertEquals(2, service.sweepExpired());
+        assertTrue(service.getAllNotifications().isEmpty());
+        // a caixa vazia sai do mapa e uma nova notificação abre outra
+        assertEquals(0, service.getRecipientCount());
+        service.notifyCustomer("cliente@example.com", "order-4", "Outra");
+        assertEquals(1, service.getRecipientCount());
+        assertEquals(1, service.getUnreadCount("cliente@example.com"));
+    }
+
+    @Test
+    void notificationsShouldSurviveRestart() {
+        notificationDb.getParentFile().mkdirs();
+        notificationDb.delete();
+        new File(notificationDb.getPath() + ".journal").delete();
+
+        service = new NotificationService(new NotificationRepository(notificationDb.getPath()), now::get);
+        Notification read = service.notifyRestaurant("restaurant-1", "order-1", "Pedido 1");
+        // a ordem ao recarregar vem da hora de criação
+        now.incrementAndGet();
+        service.notifyRestaurant("restaurant-1", "order-2", "Pedido 2");
+        service.notifyDelivery("delivery-1", "order-3", "Pizza", "Rua A");
+        service.removeNotificationsByRecipientAndOrder("delivery-1", "order-3");
+        service.markAsRead(read.getId());
+
+        NotificationService restarted = new NotificationService(new NotificationRepository(notificationDb.getPath()),
+                now::get);
+        List<Notification> inbox = restarted.getNotificationsByRecipient("restaurant-1");
+        assertEquals(2, inbox.size());
+        assertEquals(read.getId(), inbox.get(0).getId());
+        assertTrue(inbox.get(0).isRead());
+        assertEquals(1, restarted.getUnreadCount("restaurant-1"));
+        assertTrue(restarted.getNotificationsByRecipient("delivery-1").isEmpty());
+
+        // a expiração também é gravada
+        restarted.setRetention(null, 0, Duration.ofMinutes(1));
+        assertEquals(0, restarted.sweepExpired());
+        now.addAndGet(Duration.ofMinutes(1).toMillis());
+        assertEquals(1, restarted.sweepExpired());
+        NotificationRepository reloaded = new NotificationRepository(notificationDb.getPath());
+        assertEquals(1, reloaded.count());
+    }
 }
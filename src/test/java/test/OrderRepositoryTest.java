@@ -0,0 +1,133 @@
+package test;
+
+import model.MenuItem;
+import model.Order;
+import model.OrderStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repo.OrderRepository;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderRepositoryTest {
+    private final File orderDb = new File("target/test-data/orders-write-behind.db");
+    private final File journal = new File(orderDb.getPath() + ".journal");
+
+    @BeforeEach
+    public void setUp() {
+        orderDb.getParentFile().mkdirs();
+        orderDb.delete();
+        journal.delete();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        orderDb.delete();
+        journal.delete();
+    }
+
+    private Order newOrder() {
+        return new Order("rest-1", "cliente@teste.com", List.of(new MenuItem("X", "Y", 20.0)));
+    }
+
+    @Test
+    public void shouldCoalesceUpdatesUntilFlush() throws IOException {
+        OrderRepository repo = new OrderRepository(orderDb.getPath(), 60_000, 1_000);
+        Order order = newOrder();
+        repo.save(order);
+        for (OrderStatus status : new OrderStatus[] { OrderStatus.CONFIRMADO, OrderStatus.PREPARACAO,
+                OrderStatus.PRONTO, OrderStatus.EM_ENTREGA }) {
+            order.setStatus(status);
+            repo.update(order);
+        }
+        assertEquals(1, repo.getDirtyCount());
+
+        repo.flush();
+        assertEquals(0, repo.getDirtyCount());
+        assertEquals(1, repo.getFlushCount());
+        assertEquals(1, repo.getFlushedOrderCount());
+
+        OrderRepository reopened = new OrderRepository(orderDb.getPath());
+        assertEquals(OrderStatus.EM_ENTREGA, reopened.findById(order.getId()).get().getStatus());
+        repo.close();
+        reopened.close();
+    }
+
+    @Test
+    public void shouldFlushInBackgroundWhenThresholdIsReached() throws Exception {
+        OrderRepository repo = new OrderRepository(orderDb.getPath(), 60_000, 3);
+        for (int i = 0; i < 3; i++) {
+            repo.save(newOrder());
+        }
+        long deadline = System.currentTimeMillis() + 5_000;
+        // o contador de sujos zera antes da gravação terminar; espera a gravação em si
+        while (repo.getFlushCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, repo.getFlushCount());
+        assertEquals(0, repo.getDirtyCount());
+        assertEquals(3, new OrderRepository(orderDb.getPath()).findAll().size());
+        repo.close();
+    }
+
+    @Test
+    public void shouldKeepOrdersDirtyAndRetryAfterFailure() throws IOException {
+        // o "diretório" do arquivo é um arquivo comum: a gravação falha até ele sair
+        File blocker = new File("target/test-data/orders-blocker");
+        File blockedDb = new File(blocker, "orders.db");
+        deleteTree(blocker);
+        try (FileOutputStream out = new FileOutputStream(blocker)) {
+            out.write(1);
+        }
+        OrderRepository repo = new OrderRepository(blockedDb.getPath(), 60_000, 1_000);
+        repo.save(newOrder());
+
+        assertThrows(IOException.class, repo::flush);
+        assertEquals(1, repo.getDirtyCount());
+        assertTrue(repo.getFailureCount() >= 1);
+        assertNotNull(repo.getLastFailure());
+
+        blocker.delete();
+        repo.flush();
+        assertEquals(0, repo.getDirtyCount());
+        assertEquals(1, new OrderRepository(blockedDb.getPath()).findAll().size());
+        repo.close();
+        deleteTree(blocker);
+    }
+
+    @Test
+    public void shouldWriteImmediatelyAfterClose() {
+        OrderRepository repo = new OrderRepository(orderDb.getPath(), 60_000, 1_000);
+        Order order = newOrder();
+        repo.save(order);
+        repo.close();
+        assertEquals(1, repo.getFlushCount());
+
+        // sem a thread de fundo, a gravação não pode ficar só marcada como suja
+        order.setStatus(OrderStatus.CONFIRMADO);
+        repo.update(order);
+        repo.save(newOrder());
+        assertEquals(0, repo.getDirtyCount());
+        assertEquals(3, repo.getFlushCount());
+
+        OrderRepository reopened = new OrderRepository(orderDb.getPath());
+        assertEquals(2, reopened.findAll().size());
+        assertEquals(OrderStatus.CONFIRMADO, reopened.findById(order.getId()).get().getStatus());
+    }
+
+    private static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteTree(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -237,4 +237,22 @@ class OrderServiceTest {
                 5,
                 0));
     }
-}
\ No newline at end of file
+
+    @Test
+    void pendingQueueShouldFollowStatusChanges() {
+        Order first = orderService.createOrder(restaurant.getId(), "cliente@teste.com", restaurant.getMenu(), 5, 0);
+        Order second = orderService.createOrder(restaurant.getId(), "Outro@Teste.com", restaurant.getMenu(), 5, 0);
+        assertEquals(2, orderService.getPendingOrdersForRestaurant(restaurant.getId()).size());
+
+        orderService.confirmOrder(first.getId());
+        List<Order> pending = orderService.getPendingOrdersForRestaurant(restaurant.getId());
+        assertEquals(1, pending.size());
+        assertEquals(second.getId(), pending.get(0).getId());
+
+        // mudança feita direto no pedido, sem update(): o índice acompanha
+        second.reject();
+        assertTrue(orderService.getPendingOrdersForRestaurant(restaurant.getId()).isEmpty());
+        assertEquals(2, orderService.getImmediateOrders().size());
+        assertTrue(orderService.getScheduledOrders().isEmpty());
+    }
+}
@@ -1,6 +1,7 @@
 package test;
 
 import model.PricingInfo;
+import model.QuoteTable;
 import model.Tariff;
 import service.PricingService;
 import util.ValidationException;
@@ -191,4 +192,28 @@ public class PricingServiceTest {
         assertNotNull(pricing.getFormattedDistance());
         assertTrue(pricing.getFormattedDistance().contains("km"));
     }
+
+    @Test
+    void testQuoteTableMatchesSingleCategoryPricing() throws ValidationException {
+        pricingService.setDynamicFareFactor(1.3);
+        QuoteTable table = pricingService.quote("Rua A, 123", "Rua B, 456");
+
+        assertEquals(5, table.asList().size());
+        for (PricingInfo quote : table.asList()) {
+            PricingInfo single = pricingService.calculatePricing("Rua A, 123", "Rua B, 456", quote.getCategory());
+            assertEquals(single.getTotalPrice(), quote.getTotalPrice());
+            assertEquals(single.getEstimatedTimeMinutes(), quote.getEstimatedTimeMinutes());
+        }
+        assertSame(table.asList().get(0), table.cheapest());
+        assertThrows(UnsupportedOperationException.class, () -> table.asList().clear());
+    }
+
+    @Test
+    void testQuoteTableFindsCategoryByEnumOrDisplayName() throws ValidationException {
+        QuoteTable table = pricingService.quote("Rua A", "Rua B");
+
+        assertEquals("Uber Black", table.forCategory("UBER_BLACK").getCategory());
+        assertEquals("Uber Black", table.forCategory("uber black").getCategory());
+        assertNull(table.forCategory("Sedan"));
+    }
 }
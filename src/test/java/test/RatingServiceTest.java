@@ -65,6 +65,7 @@ public class RatingServiceTest {
     public void tearDown() {
         userDb.delete();
         rideDb.delete();
+        new File(rideDb.getPath() + ".journal").delete();
     }
 
     @Test
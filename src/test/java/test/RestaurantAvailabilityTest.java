@@ -1,6 +1,7 @@
 package test;
 
 import model.Location;
+import model.Page;
 import model.Restaurant;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -101,4 +102,48 @@ class RestaurantAvailabilityTest {
 
                 assertTrue(result.isEmpty());
         }
-}
\ No newline at end of file
+
+        @Test
+        void shouldPageResultsByDistance() {
+
+                for (int i = 0; i < 5; i++) {
+                        service.register(
+                                        "Restaurante " + i,
+                                        "r" + i + "@email.com",
+                                        "senha123",
+                                        "1234567890124" + i,
+                                        new Location("Rua " + i, "", i * 0.5, 0));
+                }
+
+                Location client = new Location("Cliente", "", 0, 0);
+                Page<Restaurant> first = service.findAvailableRestaurants(client, 10, 0, 2);
+                Page<Restaurant> last = service.findAvailableRestaurants(client, 10, 2, 2);
+
+                assertEquals(5, first.getTotalItems());
+                assertEquals(3, first.getTotalPages());
+                assertTrue(first.hasNext());
+                assertEquals("Restaurante 0", first.getItems().get(0).getName());
+                assertEquals("Restaurante 1", first.getItems().get(1).getName());
+                assertEquals(1, last.getItems().size());
+                assertEquals("Restaurante 4", last.getItems().get(0).getName());
+                assertFalse(last.hasNext());
+        }
+
+        @Test
+        void shouldFollowOpenAndCloseWithoutUpdate() {
+
+                Restaurant restaurant = service.register(
+                                "Padaria",
+                                "padaria@email.com",
+                                "senha123",
+                                "12345678901239",
+                                new Location("Esquina", "", 0, 0));
+
+                Location client = new Location("Cliente", "", 0, 0);
+                restaurant.close();
+                assertTrue(service.findAvailableRestaurants(client, 5).isEmpty());
+
+                restaurant.open();
+                assertEquals(1, service.findAvailableRestaurants(client, 5).size());
+        }
+}
@@ -1,5 +1,7 @@
 package test;
 
+import model.CategoryStatistics;
+import model.CursorPage;
 import model.RideHistory;
 import model.Ride;
 import model.Passenger;
@@ -43,6 +45,7 @@ public class RideHistoryServiceTest {
         if (historyFile.exists()) {
             historyFile.delete();
         }
+        deleteSegments(TEST_HISTORY_DB);
         
         java.io.File userFile = new java.io.File(TEST_USER_DB);
         if (userFile.exists()) {
@@ -365,4 +368,183 @@ public class RideHistoryServiceTest {
         assertTrue(stats.contains("PREMIUM"));
         assertTrue(stats.contains("Total: 3 corridas"));
     }
+
+    @Test
+    void testDateRangeIsExclusiveAndNewestFirst() throws IOException {
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 8, 0);
+        for (int i = 0; i < 10; i++) {
+            Ride ride = new Ride("p" + (i % 2), "p" + (i % 2) + "@test.com",
+                    new Location("Origem " + i), new Location("Destino " + i));
+            ride.setDriverId("driver" + (i % 3));
+            // dois registros por dia, no mesmo horário
+            ride.setRequestTime(base.plusDays(i / 2));
+            historyRepo.add(new RideHistory(ride, "Motorista", 20.0, "PIX"));
+        }
+
+        List<RideHistory> range = historyRepo.findByDateRange(base, base.plusDays(3));
+        assertEquals(4, range.size());
+        assertEquals(base.plusDays(2), range.get(0).getRequestTime());
+        assertEquals(base.plusDays(1), range.get(3).getRequestTime());
+
+        List<RideHistory> passengerRange = historyRepo.findByPassengerAndDateRange("p1@test.com",
+                base.minusDays(1), base.plusDays(10));
+        assertEquals(5, passengerRange.size());
+        for (int i = 1; i < passengerRange.size(); i++) {
+            assertFalse(passengerRange.get(i).getRequestTime().isAfter(passengerRange.get(i - 1).getRequestTime()));
+        }
+
+        assertEquals(4, historyRepo.findByDriverAndDateRange("driver0", base.minusDays(1), base.plusDays(10)).size());
+        assertTrue(historyRepo.findByPassengerAndDateRange("ninguem@test.com", base, base.plusDays(1)).isEmpty());
+    }
+
+    @Test
+    void testPassengerHistoryPagesWithCursor() throws ValidationException, IOException {
+        Passenger passenger = new Passenger("Rita Souza", "rita@test.com", "333444555", "senha404");
+        userRepo.add(passenger);
+        LocalDateTime base = LocalDateTime.of(2024, 3, 1, 9, 0);
+        for (int i = 0; i < 7; i++) {
+            Ride ride = new Ride(passenger.getId(), passenger.getEmail(),
+                    new Location("Origem " + i), new Location("Destino " + i));
+            ride.setRequestTime(base.plusHours(i));
+            historyRepo.add(new RideHistory(ride, "Motorista", 15.0, "PIX"));
+        }
+
+        List<RideHistory> all = historyService.getHistoryByPassenger(passenger.getEmail());
+        assertEquals(base.plusHours(6), all.get(0).getRequestTime());
+
+        CursorPage<RideHistory> page = historyService.getHistoryByPassenger(passenger.getEmail(), null, 3);
+        List<RideHistory> walked = new java.util.ArrayList<>(page.getItems());
+        int pages = 1;
+        while (page.hasNext()) {
+            page = historyService.getHistoryByPassenger(passenger.getEmail(), page.getNextCursor(), 3);
+            walked.addAll(page.getItems());
+            pages++;
+        }
+
+        assertEquals(3, pages);
+        assertEquals(all, walked);
+        assertThrows(ValidationException.class,
+                () -> historyService.getHistoryByPassenger(passenger.getEmail(), "sem-separador", 3));
+    }
+
+    @Test
+    void testCategorySummariesFollowUpdates() throws ValidationException, IOException {
+        Passenger passenger = new Passenger("Bruna Alves", "bruna@test.com", "999000111", "senha606");
+        userRepo.add(passenger);
+        double[] prices = {10.0, 20.0, 30.0};
+        String[] categories = {"ECONOMICO", "PREMIUM", "ECONOMICO"};
+        for (int i = 0; i < 3; i++) {
+            Ride ride = new Ride(passenger.getId(), passenger.getEmail(),
+                    new Location("Origem " + i), new Location("Destino " + i));
+            ride.setVehicleCategory(categories[i]);
+            historyService.addRideToHistory(ride, prices[i], "PIX");
+        }
+
+        RideHistory first = historyService.getHistoryByCategory("ECONOMICO").get(0);
+        historyService.updateHistoryRating(first.getId(), 4, false);
+        historyService.updateHistoryRating(first.getId(), 5, false);
+
+        List<CategoryStatistics> summaries = historyService.getCategorySummaries();
+        assertEquals(2, summaries.size());
+        CategoryStatistics economico = summaries.get(0);
+        assertEquals("ECONOMICO", economico.getCategory());
+        assertEquals(2, economico.getRides());
+        assertEquals(40.0, economico.getRevenue(), 0.001);
+        assertEquals(1, economico.getDriverRatingCount());
+        assertEquals(5.0, economico.getAverageDriverRating(), 0.001);
+        assertEquals(List.of("ECONOMICO", "PREMIUM"), historyService.getAvailableCategories());
+
+        RideHistoryRepository reloaded = new RideHistoryRepository(TEST_HISTORY_DB);
+        assertEquals(40.0, reloaded.getCategorySummaries().get(0).getRevenue(), 0.001);
+    }
+
+    @Test
+    void testOldMonthsAreEvictedAndLoadedOnDemand() throws IOException {
+        RideHistoryRepository segmented = new RideHistoryRepository(TEST_HISTORY_DB, 1, 4);
+        LocalDateTime base = LocalDateTime.of(2023, 1, 10, 12, 0);
+        for (int month = 0; month < 6; month++) {
+            for (int i = 0; i < 3; i++) {
+                Ride ride = new Ride("p", "p@test.com", new Location("Origem"), new Location("Destino"));
+                ride.setVehicleCategory(i == 0 ? "PREMIUM" : "ECONOMICO");
+                ride.setRequestTime(base.plusMonths(month).plusHours(i));
+                segmented.add(new RideHistory(ride, "Motorista", 10.0, "PIX"));
+            }
+        }
+
+        assertEquals(6, segmented.getSegmentCount());
+        assertTrue(segmented.getResidentRecordCount() <= 4 + 3);
+        assertEquals(18, segmented.count());
+        assertEquals(18, segmented.findByPassengerEmail("p@test.com").size());
+        assertTrue(segmented.getResidentRecordCount() <= 4 + 3);
+
+        RideHistoryRepository reopened = new RideHistoryRepository(TEST_HISTORY_DB, 1, 4);
+        assertEquals(0, reopened.getResidentSegmentCount());
+        assertEquals(18, reopened.count());
+        assertEquals(Long.valueOf(12), reopened.getCategoryStatistics().get("ECONOMICO"));
+
+        // só o mês do intervalo é lido
+        List<RideHistory> february = reopened.findByDateRange(base.plusMonths(1).minusDays(1),
+                base.plusMonths(1).plusDays(1));
+        assertEquals(3, february.size());
+        assertEquals(1, reopened.getSegmentLoadCount());
+        assertEquals(february.get(0), reopened.findById(february.get(0).getId()));
+    }
+
+    @Test
+    void testLegacyHistoryFileIsSplitIntoMonths() throws IOException {
+        Map<String, RideHistory> legacy = new java.util.HashMap<>();
+        for (int month = 1; month <= 3; month++) {
+            Ride ride = new Ride("p", "p@test.com", new Location("Origem"), new Location("Destino"));
+            ride.setRequestTime(LocalDateTime.of(2022, month, 5, 10, 0));
+            RideHistory history = new RideHistory(ride, "Motorista", 12.0, "PIX");
+            legacy.put(history.getId(), history);
+        }
+        try (java.io.ObjectOutputStream out = new java.io.ObjectOutputStream(
+                new java.io.FileOutputStream(TEST_HISTORY_DB))) {
+            out.writeObject(legacy);
+        }
+
+        RideHistoryRepository migrated = new RideHistoryRepository(TEST_HISTORY_DB);
+        assertEquals(3, migrated.getSegmentCount());
+        assertEquals(3, migrated.findAll().size());
+
+        RideHistoryRepository reopened = new RideHistoryRepository(TEST_HISTORY_DB);
+        assertEquals(3, reopened.count());
+        assertEquals(3, reopened.findByPassengerEmail("p@test.com").size());
+    }
+
+    @Test
+    void testUnreadableMonthIsNotOverwritten() throws IOException {
+        LocalDateTime january = LocalDateTime.of(2023, 1, 10, 12, 0);
+        for (int i = 0; i < 2; i++) {
+            Ride ride = new Ride("p", "p@test.com", new Location("Origem"), new Location("Destino"));
+            ride.setRequestTime(january.plusHours(i));
+            historyRepo.add(new RideHistory(ride, "Motorista", 10.0, "PIX"));
+        }
+        historyRepo = new RideHistoryRepository(TEST_HISTORY_DB);
+        File segmentFile = new File(TEST_HISTORY_DB + ".segments", "2023-01.seg");
+        try (java.io.FileOutputStream out = new java.io.FileOutputStream(segmentFile)) {
+            out.write(new byte[] { 1, 2, 3 });
+        }
+
+        // a consulta vê o mês vazio, mas a gravação é recusada
+        assertTrue(historyRepo.findByPassengerEmail("p@test.com").isEmpty());
+        Ride ride = new Ride("p", "p@test.com", new Location("Origem"), new Location("Destino"));
+        ride.setRequestTime(january.plusDays(1));
+        assertThrows(IOException.class, () -> historyRepo.add(new RideHistory(ride, "Motorista", 10.0, "PIX")));
+
+        assertEquals(3, segmentFile.length());
+        assertEquals(2, historyRepo.count());
+        assertEquals(2, new RideHistoryRepository(TEST_HISTORY_DB).count());
+    }
+
+    private static void deleteSegments(String historyPath) {
+        File[] segments = new File(historyPath + ".segments").listFiles();
+        if (segments != null) {
+            for (File segment : segments) {
+                segment.delete();
+            }
+        }
+        new File(historyPath + ".segments").delete();
+    }
 }
@@ -0,0 +1,118 @@
+package test;
+
+import model.Location;
+import model.Ride;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repo.RideRepository;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RideRepositoryTest {
+    private final File rideDb = new File("target/test-data/rides-journal.db");
+    private final File journal = new File(rideDb.getPath() + ".journal");
+
+    @BeforeEach
+    public void setUp() {
+        rideDb.getParentFile().mkdirs();
+        rideDb.delete();
+        journal.delete();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        rideDb.delete();
+        journal.delete();
+    }
+
+    private Ride newRide() {
+        return new Ride("p1", "p@p.com", new Location("Origem"), new Location("Destino"));
+    }
+
+    @Test
+    public void shouldReplayJournalOnReload() throws IOException {
+        RideRepository repo = new RideRepository(rideDb.getPath());
+        Ride ride = newRide();
+        repo.add(ride);
+        ride.setStatus(Ride.RideStatus.ACEITA);
+        repo.update(ride);
+
+        RideRepository reopened = new RideRepository(rideDb.getPath());
+        assertEquals(1, reopened.count());
+        assertEquals(Ride.RideStatus.ACEITA, reopened.findById(ride.getId()).getStatus());
+    }
+
+    @Test
+    public void shouldAppendInsteadOfRewritingSnapshot() throws IOException {
+        RideRepository repo = new RideRepository(rideDb.getPath());
+        long snapshotSize = rideDb.length();
+
+        Ride ride = newRide();
+        repo.add(ride);
+        long journalAfterAdd = journal.length();
+        ride.setStatus(Ride.RideStatus.ACEITA);
+        repo.update(ride);
+
+        assertEquals(snapshotSize, rideDb.length());
+        assertTrue(journal.length() > journalAfterAdd);
+    }
+
+    @Test
+    public void shouldCompactJournalIntoSnapshot() throws IOException {
+        RideRepository repo = new RideRepository(rideDb.getPath());
+        for (int i = 0; i < 600; i++) {
+            repo.add(newRide());
+        }
+
+        RideRepository reopened = new RideRepository(rideDb.getPath());
+        assertEquals(600, reopened.count());
+        assertTrue(journal.length() < rideDb.length());
+    }
+
+    @Test
+    public void shouldIgnoreTornRecordAtEndOfJournal() throws IOException {
+        RideRepository repo = new RideRepository(rideDb.getPath());
+        Ride ride = newRide();
+        repo.add(ride);
+
+        try (FileOutputStream out = new FileOutputStream(journal, true)) {
+            out.write(new byte[] { 0, 0, 1, 0, 7 });
+        }
+
+        RideRepository reopened = new RideRepository(rideDb.getPath());
+        assertEquals(1, reopened.count());
+        assertNotNull(reopened.findById(ride.getId()));
+
+        Ride another = newRide();
+        reopened.add(another);
+        assertEquals(2, new RideRepository(rideDb.getPath()).count());
+    }
+
+    @Test
+    public void shouldTruncateRecordWithCorruptLength() throws IOException {
+        RideRepository repo = new RideRepository(rideDb.getPath());
+        Ride ride = newRide();
+        repo.add(ride);
+        long validLength = journal.length();
+
+        // tamanho absurdo seguido de um CRC qualquer: não pode virar uma alocação gigante
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(journal, true))) {
+            out.writeInt(Integer.MAX_VALUE - 8);
+            out.writeLong(42L);
+            out.write(new byte[] { 1, 2, 3 });
+        }
+
+        RideRepository reopened = new RideRepository(rideDb.getPath());
+        assertEquals(1, reopened.count());
+        assertEquals(validLength, journal.length());
+
+        reopened.add(newRide());
+        assertEquals(2, new RideRepository(rideDb.getPath()).count());
+    }
+}
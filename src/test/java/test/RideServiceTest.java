@@ -14,6 +14,15 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -85,6 +94,7 @@ public class RideServiceTest {
         userDb.delete();
         vehicleDb.delete();
         rideDb.delete();
+        new File(rideDb.getPath() + ".journal").delete();
     }
 
     @Test
@@ -212,6 +222,26 @@ public class RideServiceTest {
         assertFalse(secondDriver.isAvailable());
     }
 
+    @Test
+    public void testRankingIsDroppedOnAcceptAndWhenIgnored() throws ValidationException, IOException {
+        String category = "UBER_X";
+        Ride accepted = rideService.createRideRequest(passenger.getEmail(), "Rua Perto", "Destino", category,
+                PaymentMethod.PIX);
+        assertEquals(1, rideService.getRankedRideCount());
+        rideService.acceptRide(accepted.getId(), driverNear.getEmail());
+        assertEquals(0, rideService.getRankedRideCount());
+
+        driverNear.setAvailable(true);
+        userRepo.update(driverNear);
+        rideService.setRankingTtlMillis(0);
+        rideService.createRideRequest(passenger.getEmail(), "Rua Perto", "Destino", category, PaymentMethod.PIX);
+        assertEquals(1, rideService.getRankedRideCount());
+
+        // o motorista nunca responde: o ranking vencido sai na próxima atribuição
+        rideService.createRideRequest(passenger.getEmail(), "Rua Perto", "Destino", category, PaymentMethod.PIX);
+        assertEquals(0, rideService.getRankedRideCount());
+    }
+
     @Test
     public void testRefusalCancelsRideWhenNoOtherDriverExists() throws ValidationException, IOException {
         driverFar.setAvailable(false);
@@ -231,4 +261,79 @@ public class RideServiceTest {
         Driver firstDriver = (Driver) userRepo.findById(driverNear.getId());
         assertTrue(firstDriver.isAvailable());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testConcurrentRequestsNeverShareADriver() throws Exception {
+        int requests = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(requests);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Ride>> futures = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                return rideService.createRideRequest(passenger.getEmail(), "Rua Perto", "Destino", "UBER_X",
+                        PaymentMethod.PIX);
+            }));
+        }
+        start.countDown();
+
+        Set<String> assignedDrivers = new HashSet<>();
+        int assignedRides = 0;
+        for (Future<Ride> future : futures) {
+            Ride ride = future.get(30, TimeUnit.SECONDS);
+            if (ride.getDriverId() != null) {
+                assignedRides++;
+                assignedDrivers.add(ride.getDriverId());
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(2, assignedRides);
+        assertEquals(2, assignedDrivers.size());
+    }
+
+    @Test
+    public void testSuccessiveRefusalsVisitEveryCandidateOnce() throws ValidationException, IOException {
+        for (int i = 0; i < 6; i++) {
+            Driver extra = authService.registerDriver("Extra " + i, "extra" + i + "@d.com", "90" + i, "password123",
+                    "cnhx" + i, "EXT-00" + i, "Onix", 2020, "Preto");
+            extra.setCurrentLocation(new Location("Rua Extra " + i));
+            extra.getVehicle().setCategory("UBER_X");
+            userRepo.update(extra);
+        }
+
+        Ride ride = rideService.createRideRequest(passenger.getEmail(), "Rua Perto", "Destino", "UBER_X",
+                PaymentMethod.PIX);
+        Set<String> visited = new HashSet<>();
+        while (ride.getStatus() == Ride.RideStatus.AGUARDANDO_ACEITE_MOTORISTA) {
+            assertTrue(visited.add(ride.getDriverId()));
+            Driver assigned = (Driver) userRepo.findById(ride.getDriverId());
+            rideService.refuseRide(ride.getId(), assigned.getEmail());
+            ride = rideRepo.findById(ride.getId());
+        }
+
+        assertEquals(8, visited.size());
+        assertEquals(Ride.RideStatus.CANCELADA, ride.getStatus());
+    }
+
+    @Test
+    public void testRideKeepsQuoteOfRequestedCategory() throws ValidationException, IOException {
+        Ride ride = rideService.createRideRequest(passenger.getEmail(), "Rua Perto", "Destino", "UBER_COMFORT",
+                PaymentMethod.PIX);
+
+        PricingInfo expected = pricingService.calculatePricing("Rua Perto", "Destino", "Uber Comfort");
+        assertEquals("Uber Comfort", ride.getQuotedPricing().getCategory());
+        assertEquals(expected.getTotalPrice(), rideRepo.findById(ride.getId()).getQuotedPricing().getTotalPrice());
+    }
+
+    @Test
+    public void testQuoteOfAnotherCategoryIsRejected() throws ValidationException, IOException {
+        PricingInfo cheaper = pricingService.calculatePricing("Rua Perto", "Destino", "UberX");
+
+        assertThrows(ValidationException.class, () -> rideService.createRideRequest(passenger.getEmail(),
+                "Rua Perto", "Destino", "UBER_BLACK", PaymentMethod.PIX, cheaper));
+        Ride ride = rideService.createRideRequest(passenger.getEmail(), "Rua Perto", "Destino", "UberX",
+                PaymentMethod.PIX, cheaper);
+        assertEquals(cheaper.getTotalPrice(), ride.getQuotedPricing().getTotalPrice());
+    }
+}
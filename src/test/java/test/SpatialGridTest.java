@@ -0,0 +1,86 @@
+package test;
+
+import org.junit.jupiter.api.Test;
+import util.SpatialGrid;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpatialGridTest {
+
+    private static double distance(double[] p, double lat, double lon) {
+        double dx = p[0] - lat;
+        double dy = p[1] - lon;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    @Test
+    public void testQueriesMatchFullScan() {
+        Random random = new Random(42);
+        double[][] points = new double[2_000][];
+        SpatialGrid<Integer> grid = new SpatialGrid<>(0.01);
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new double[] { -7.2 + random.nextDouble() * 0.3, -35.9 + random.nextDouble() * 0.3 };
+            grid.put(i, points[i][0], points[i][1]);
+        }
+        // metade se move, como entregadores em rota
+        for (int i = 0; i < points.length; i += 2) {
+            points[i] = new double[] { -7.2 + random.nextDouble() * 0.3, -35.9 + random.nextDouble() * 0.3 };
+            grid.put(i, points[i][0], points[i][1]);
+        }
+
+        for (int q = 0; q < 50; q++) {
+            double lat = -7.25 + random.nextDouble() * 0.4;
+            double lon = -35.95 + random.nextDouble() * 0.4;
+            List<Integer> all = new ArrayList<>();
+            for (int i = 0; i < points.length; i++) {
+                all.add(i);
+            }
+            all.sort(Comparator.comparingDouble(i -> distance(points[i], lat, lon)));
+
+            assertEquals(all.subList(0, 5), grid.nearest(lat, lon, 5, i -> true));
+
+            List<Integer> expected = all.stream()
+                    .filter(i -> distance(points[i], lat, lon) <= 0.03)
+                    .collect(Collectors.toList());
+            assertEquals(expected, grid.withinRadius(lat, lon, 0.03, null));
+        }
+    }
+
+    @Test
+    public void testRemovedAndFilteredItemsAreSkipped() {
+        SpatialGrid<String> grid = new SpatialGrid<>(1.0);
+        grid.put("a", 0, 0);
+        grid.put("b", 0.5, 0);
+        grid.put("c", 40, 40);
+
+        grid.remove("a");
+        assertEquals(List.of("b", "c"), grid.nearest(0, 0, 5, null));
+        assertEquals(List.of("c"), grid.nearest(0, 0, 1, s -> !s.equals("b")));
+        assertTrue(grid.withinRadius(0, 0, 0.1, null).isEmpty());
+        assertEquals(2, grid.size());
+    }
+
+    @Test
+    public void testQueriesStayCorrectAfterOutliersMoveAway() {
+        SpatialGrid<String> grid = new SpatialGrid<>(0.01);
+        grid.put("longe-norte", -6.0, -35.0);
+        grid.put("longe-sul", -9.0, -37.0);
+        grid.put("centro", -7.20, -35.90);
+        // os distantes voltam para perto: as bordas da grade encolhem
+        grid.put("longe-norte", -7.21, -35.91);
+        grid.put("longe-sul", -7.23, -35.93);
+        grid.put("fora", -7.30, -36.00);
+        grid.remove("fora");
+
+        assertEquals(List.of("centro", "longe-norte", "longe-sul"), grid.nearest(-7.20, -35.90, 3, null));
+        assertEquals(List.of("longe-sul", "longe-norte"), grid.nearest(-7.5, -36.2, 2, null));
+        assertEquals(List.of("centro", "longe-norte"), grid.withinRadius(-7.20, -35.90, 0.02, null));
+        assertTrue(grid.withinRadius(-6.0, -35.0, 0.5, null).isEmpty());
+    }
+}
@@ -0,0 +1,74 @@
+package test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repo.StorageEngine;
+import repo.StorageEngine.DurabilityMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StorageEngineTest {
+    private final File first = new File("target/test-data/storage-engine-a.db");
+    private final File second = new File("target/test-data/storage-engine-b.db");
+
+    @BeforeEach
+    public void setUp() {
+        first.getParentFile().mkdirs();
+        first.delete();
+        second.delete();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        first.delete();
+        second.delete();
+    }
+
+    @Test
+    public void shouldCommitBatchOnceWithOneSyncPerFile() throws IOException {
+        StorageEngine engine = new StorageEngine(DurabilityMode.GROUP_COMMIT, 0);
+
+        engine.batch(() -> {
+            engine.overwrite(first, "v1".getBytes());
+            engine.overwrite(first, "v2".getBytes());
+            engine.append(second, "a".getBytes());
+            engine.append(second, "b".getBytes());
+            return null;
+        });
+
+        assertEquals(1, engine.getCommitCount());
+        assertEquals(2, engine.getSyncCount());
+        assertEquals("v2", new String(Files.readAllBytes(first.toPath())));
+        assertEquals("ab", new String(Files.readAllBytes(second.toPath())));
+        engine.close();
+    }
+
+    @Test
+    public void shouldSyncEveryWriteInSyncMode() throws IOException {
+        StorageEngine engine = new StorageEngine(DurabilityMode.SYNC_PER_WRITE, 0);
+
+        engine.append(first, "a".getBytes());
+        engine.append(first, "b".getBytes());
+
+        assertEquals(2, engine.getCommitCount());
+        assertEquals("ab", new String(Files.readAllBytes(first.toPath())));
+    }
+
+    @Test
+    public void shouldWriteAsyncDataOnFlush() throws IOException {
+        StorageEngine engine = new StorageEngine(DurabilityMode.ASYNC, 5);
+
+        engine.overwrite(first, "x".getBytes());
+        engine.append(first, "y".getBytes());
+        engine.flush();
+
+        assertEquals("xy", new String(Files.readAllBytes(first.toPath())));
+        assertEquals(0, engine.getFailureCount());
+        engine.close();
+    }
+}
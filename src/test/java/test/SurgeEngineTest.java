@@ -0,0 +1,164 @@
+package test;
+
+import model.Driver;
+import model.Location;
+import model.PricingInfo;
+import model.Vehicle;
+import model.VehicleCategory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repo.UserRepository;
+import service.PricingService;
+import service.SurgeEngine;
+import util.Geocoder;
+import util.ValidationException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SurgeEngineTest {
+    private static final String ORIGIN = "Rua do Centro, 10";
+    private static final long BUCKET_MILLIS = 1_000;
+    private static final int BUCKETS = 5;
+
+    private final File userDb = new File("target/test-data/surge_users.db");
+    private final File gazetteer = new File("target/test-data/surge_gazetteer.txt");
+    private final File geoCache = new File("target/test-data/surge_geocache.bin");
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private UserRepository userRepo;
+    private SurgeEngine engine;
+    private PricingService pricingService;
+    private Geocoder geocoder;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        userDb.getParentFile().mkdirs();
+        tearDown();
+        // a alta só vale para zonas de grade, que exigem coordenadas
+        Files.write(gazetteer.toPath(), List.of(ORIGIN + ";-7.2291;-35.8808", "Outro bairro, 99;-7.1178;-34.8641"),
+                StandardCharsets.UTF_8);
+        geocoder = new Geocoder(gazetteer, geoCache);
+        userRepo = new UserRepository(userDb);
+        engine = new SurgeEngine(userRepo, BUCKET_MILLIS, BUCKETS, now::get);
+        engine.setGeocoder(geocoder);
+        pricingService = new PricingService();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (geocoder != null) {
+            geocoder.close();
+            geocoder = null;
+        }
+        userDb.delete();
+        gazetteer.delete();
+        geoCache.delete();
+    }
+
+    private void addDriver(String plate, String category, String address) throws IOException {
+        Vehicle vehicle = new Vehicle(plate, "Onix", 2022, "Preto");
+        vehicle.setCategory(category);
+        Driver d = new Driver("Motorista " + plate, plate + "@d.com", "9" + plate.hashCode(), "password123",
+                "cnh-" + plate, vehicle);
+        d.setCurrentLocation(new Location(address));
+        userRepo.add(d);
+    }
+
+    private void requests(int count, VehicleCategory category) {
+        for (int i = 0; i < count; i++) {
+            engine.recordRideRequest(new Location(ORIGIN), category);
+        }
+    }
+
+    @Test
+    public void testDemandAboveSupplyRaisesOnlyThatZoneAndCategory() throws IOException {
+        addDriver("AAA-001", "UBER_X", ORIGIN);
+        requests(5, VehicleCategory.UBER_X);
+
+        engine.recompute();
+
+        String zone = engine.zoneFor(ORIGIN);
+        double multiplier = engine.getSnapshot().multiplier(zone, VehicleCategory.UBER_X);
+        assertTrue(multiplier > 1.0);
+        assertTrue(multiplier <= 3.0);
+        assertEquals(1.0, engine.getSnapshot().multiplier(zone, VehicleCategory.UBER_BLACK));
+        assertEquals(1.0, engine.getSnapshot().multiplier(engine.zoneFor("Outro bairro, 99"),
+                VehicleCategory.UBER_X));
+    }
+
+    @Test
+    public void testEnoughDriversKeepsNeutralMultiplier() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            addDriver("BBB-00" + i, "UBER_X", ORIGIN);
+        }
+        requests(5, VehicleCategory.UBER_X);
+
+        engine.recompute();
+
+        assertEquals(1.0, engine.getSnapshot().multiplier(engine.zoneFor(ORIGIN), VehicleCategory.UBER_X));
+    }
+
+    @Test
+    public void testRequestsLeaveTheWindow() {
+        requests(6, VehicleCategory.UBER_X);
+        engine.recompute();
+        assertTrue(engine.getSnapshot().multiplier(engine.zoneFor(ORIGIN), VehicleCategory.UBER_X) > 1.0);
+
+        now.addAndGet(BUCKET_MILLIS * BUCKETS);
+        engine.recompute();
+        assertEquals(1.0, engine.getSnapshot().multiplier(engine.zoneFor(ORIGIN), VehicleCategory.UBER_X));
+    }
+
+    @Test
+    public void testPricingUsesPublishedSnapshot() throws ValidationException {
+        String destination = "Rua B, 456";
+        double before = pricingService.calculatePricing(ORIGIN, destination, "UberX").getTotalPrice();
+
+        pricingService.setSurgeEngine(engine);
+        requests(6, VehicleCategory.UBER_X);
+        // sem recálculo, a cotação continua com o snapshot anterior
+        assertEquals(before, pricingService.calculatePricing(ORIGIN, destination, "UberX").getTotalPrice(), 0.001);
+
+        engine.recompute();
+        double multiplier = engine.getSnapshot().multiplier(engine.zoneFor(ORIGIN), VehicleCategory.UBER_X);
+        PricingInfo surged = pricingService.calculatePricing(ORIGIN, destination, "UberX");
+        assertEquals(before * multiplier, surged.getTotalPrice(), 0.02);
+        assertEquals(surged.getTotalPrice(),
+                pricingService.quote(ORIGIN, destination).forCategory("UberX").getTotalPrice(), 0.001);
+        assertEquals(pricingService.calculatePricing(ORIGIN, destination, "Uber Black").getTotalPrice(),
+                pricingService.quote(ORIGIN, destination).forCategory("Uber Black").getTotalPrice(), 0.001);
+    }
+
+    @Test
+    public void testAddressHashZonesNeverSurge() {
+        engine.setGeocoder(null);
+        requests(10, VehicleCategory.UBER_X);
+
+        engine.recompute();
+
+        assertEquals(1.0, engine.getSnapshot().multiplier(SurgeEngine.zoneOf(ORIGIN), VehicleCategory.UBER_X));
+        assertEquals(0, engine.getTrackedZoneCount());
+    }
+
+    @Test
+    public void testIdleZonesAreDropped() throws IOException {
+        addDriver("CCC-001", "UBER_X", "Outro bairro, 99");
+        requests(4, VehicleCategory.UBER_X);
+        engine.recompute();
+        assertEquals(2, engine.getTrackedZoneCount());
+
+        // o motorista sai e as solicitações deixam a janela
+        userRepo.findAvailableDrivers(VehicleCategory.UBER_X).iterator().next().setCurrentLocation(new Location("Sem mapa"));
+        now.addAndGet(BUCKET_MILLIS * BUCKETS);
+        engine.recompute();
+        assertEquals(0, engine.getTrackedZoneCount());
+    }
+}
@@ -1,9 +1,26 @@
 package test;
 
+import model.Driver;
+import model.Location;
 import model.Passenger;
+import model.User;
+import model.Vehicle;
+import model.VehicleCategory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import repo.UserRepository;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class UserRepositoryTest {
 
@@ -50,4 +67,146 @@ public class UserRepositoryTest {
         assertEquals(0.0, passenger.getAverageRating());
         assertEquals(0, passenger.getTotalRatings());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testBinaryFormatRoundTrip() throws IOException {
+        File dir = new File("target/test-data/users-binary");
+        File db = resetDir(dir);
+
+        Vehicle vehicle = new Vehicle("QWE-1234", "Onix", 2021, "Prata");
+        vehicle.setCategory("UBER_X");
+        Driver driver = new Driver("Motorista", "m@m.com", "999", "senha123", "cnh", vehicle);
+        driver.setCurrentLocation(new Location("Rua A", "perto do mercado", 1.5, -2.5));
+        driver.setAvailable(false);
+        driver.addRating(4);
+        passenger.addRating(5);
+
+        UserRepository repo = new UserRepository(db);
+        repo.add(passenger);
+        repo.add(driver);
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(db))) {
+            assertEquals(0x55425531, in.readInt());
+        }
+
+        UserRepository reopened = new UserRepository(db);
+        Driver loaded = (Driver) reopened.findByEmail("m@m.com");
+        assertEquals(driver.getId(), loaded.getId());
+        assertEquals("cnh", loaded.getLicenseDoc());
+        assertFalse(loaded.isAvailable());
+        assertEquals(vehicle.getId(), loaded.getVehicle().getId());
+        assertEquals("QWE-1234", loaded.getVehicle().getPlate());
+        assertEquals(2021, loaded.getVehicle().getYear());
+        assertEquals("UBER_X", loaded.getVehicle().getCategory());
+        assertEquals("perto do mercado", loaded.getCurrentLocation().getDescription());
+        assertEquals(-2.5, loaded.getCurrentLocation().getLongitude());
+        assertEquals(4.0, loaded.getAverageRating());
+
+        User loadedPassenger = reopened.findByEmail("test@email.com");
+        assertTrue(loadedPassenger instanceof Passenger);
+        assertEquals(passenger.getId(), loadedPassenger.getId());
+        assertEquals(1, loadedPassenger.getTotalRatings());
+    }
+
+    @Test
+    public void testMigratesSerializedUsersDb() throws IOException {
+        File dir = new File("target/test-data/users-migration");
+        File db = resetDir(dir);
+        writeSerialized(db);
+
+        UserRepository repo = new UserRepository(db);
+        assertEquals(passenger.getId(), repo.findByEmail("test@email.com").getId());
+        try (DataInputStream in = new DataInputStream(new FileInputStream(db))) {
+            assertEquals(0x55425531, in.readInt());
+        }
+    }
+
+    @Test
+    public void testMigratesLegacyUsersDate() throws IOException {
+        File dir = new File("target/test-data/users-legacy");
+        File db = resetDir(dir);
+        writeSerialized(new File(dir, "users.date"));
+
+        UserRepository repo = new UserRepository(db);
+        assertNotNull(repo.findByEmail("test@email.com"));
+        assertTrue(db.exists());
+        assertNotNull(new UserRepository(db).findByEmail("test@email.com"));
+    }
+
+    @Test
+    public void testSecondaryIndexesFollowAddUpdateAndLoad() throws IOException {
+        File dir = new File("target/test-data/users-index");
+        File db = resetDir(dir);
+
+        Driver driver = new Driver("Motorista", "m@m.com", "12345", "senha123", "cnh", null);
+        UserRepository repo = new UserRepository(db);
+        repo.add(passenger);
+        repo.add(driver);
+
+        assertSame(driver, repo.findById(driver.getId()));
+        assertEquals(2, repo.findByPhone("12345").size());
+        assertEquals(1, repo.findByRole(Driver.ROLE).size());
+        assertEquals(1, repo.findByRole("passenger").size());
+        List<User> samePhone = repo.findByPhone("12345");
+
+        Passenger replacement = new Passenger("Outro", "test@email.com", "777", "pass");
+        repo.update(replacement);
+        // a consulta anterior é uma cópia: não muda com a atualização
+        assertEquals(2, samePhone.size());
+        assertNull(repo.findById(passenger.getId()));
+        assertSame(replacement, repo.findById(replacement.getId()));
+        assertEquals(1, repo.findByPhone("12345").size());
+        assertEquals(1, repo.findByPhone("777").size());
+        assertEquals(1, repo.findByRole(Passenger.ROLE).size());
+
+        UserRepository reopened = new UserRepository(db);
+        assertEquals("m@m.com", reopened.findById(driver.getId()).getEmail());
+        assertEquals(1, reopened.findByPhone("777").size());
+        assertTrue(reopened.findByPhone("000").isEmpty());
+    }
+
+    @Test
+    public void testAvailableDriverPoolFollowsDriverChanges() throws IOException {
+        File dir = new File("target/test-data/users-pool");
+        File db = resetDir(dir);
+
+        Driver driver = new Driver("Motorista", "m@m.com", "999", "senha123", "cnh", null);
+        UserRepository repo = new UserRepository(db);
+        repo.add(driver);
+        assertTrue(repo.findAvailableDrivers(VehicleCategory.UBER_X).isEmpty());
+
+        Vehicle vehicle = new Vehicle("QWE-1234", "Onix", 2021, "Prata");
+        vehicle.setCategory("UberX");
+        driver.addVehicle(vehicle);
+        assertTrue(repo.findAvailableDrivers(VehicleCategory.UBER_X).contains(driver));
+
+        driver.setAvailable(false);
+        assertTrue(repo.findAvailableDrivers(VehicleCategory.UBER_X).isEmpty());
+        driver.setAvailable(true);
+
+        vehicle.setCategory("UBER_BLACK");
+        repo.update(driver);
+        assertTrue(repo.findAvailableDrivers(VehicleCategory.UBER_X).isEmpty());
+        assertTrue(repo.findAvailableDrivers(VehicleCategory.UBER_BLACK).contains(driver));
+
+        UserRepository reopened = new UserRepository(db);
+        assertEquals(1, reopened.findAvailableDrivers(VehicleCategory.UBER_BLACK).size());
+        assertTrue(reopened.findAvailableDrivers(VehicleCategory.UBER_X).isEmpty());
+    }
+
+    private File resetDir(File dir) {
+        dir.mkdirs();
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        return new File(dir, "users.db");
+    }
+
+    private void writeSerialized(File target) throws IOException {
+        Map<String, User> users = new HashMap<>();
+        users.put(passenger.getEmail(), passenger);
+        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(target))) {
+            oos.writeObject(users);
+        }
+    }
+}